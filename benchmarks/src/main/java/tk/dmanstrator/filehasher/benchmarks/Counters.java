@@ -0,0 +1,51 @@
+package tk.dmanstrator.filehasher.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary Results of the Benchmarks. JMH reports them as Rates, i.e. Bytes per Second and Files per Second.
+ * 
+ * @author DManstrator
+ *
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Counters {
+    
+    /**
+     * Amount of hashed Bytes.
+     */
+    public long bytes;
+    
+    /**
+     * Amount of hashed Files.
+     */
+    public long files;
+    
+    /**
+     * Resets the Counters before every Iteration.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        files = 0;
+    }
+    
+    /**
+     * Adds the Work of one Operation.
+     * 
+     * @param bytes
+     *            Amount of hashed Bytes
+     * @param files
+     *            Amount of hashed Files
+     */
+    public void add(long bytes, long files) {
+        this.bytes += bytes;
+        this.files += files;
+    }
+    
+}
@@ -0,0 +1,139 @@
+package tk.dmanstrator.filehasher.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tk.dmanstrator.filehasher.HashResult;
+import tk.dmanstrator.filehasher.Hasher;
+import tk.dmanstrator.filehasher.benchmarks.TreeGenerator.Shape;
+
+/**
+ * Benchmarks the Folder Entry Points of the {@link Hasher} on generated Trees. Besides the Operations per Second
+ * the {@link Counters} report the Throughput in Bytes and Files per Second. Run with <code>-prof gc</code> to get
+ * the Allocation Rate, <code>gc.alloc.rate.norm</code> divided by the Files of the Tree is the Allocation per File.
+ * 
+ * @author DManstrator
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class HasherBenchmark {
+    
+    /**
+     * Shape of the Tree to hash.
+     */
+    @Param({ "TINY_FILES", "HUGE_FILES", "DEEP_NESTING" })
+    public Shape shape;
+    
+    /**
+     * Amount of Worker Threads of the Hasher.
+     */
+    @Param({ "1", "4" })
+    public int threads;
+    
+    /**
+     * Root of the generated Tree.
+     */
+    private Path root;
+    
+    /**
+     * Hasher under Test.
+     */
+    private Hasher hasher;
+    
+    /**
+     * Generates the Tree.
+     * 
+     * @throws IOException
+     *             When the Tree couldn't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = TreeGenerator.generate(shape);
+        hasher = new Hasher();
+        hasher.setThreads(threads);
+    }
+    
+    /**
+     * Deletes the Tree.
+     * 
+     * @throws IOException
+     *             When the Tree couldn't be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        hasher.shutdown();
+        TreeGenerator.delete(root);
+    }
+    
+    /**
+     * Measures {@link Hasher#getHashResultsOfFiles(File)}.
+     * 
+     * @param counters
+     *            Counts the hashed Bytes and Files
+     * @return the Results, consumed by JMH
+     */
+    @Benchmark
+    public Map<File, HashResult> getHashResultsOfFiles(Counters counters) {
+        Map<File, HashResult> results = hasher.getHashResultsOfFiles(root.toFile());
+        counters.add(shape.getBytes(), shape.getFiles());
+        return results;
+    }
+    
+    /**
+     * Measures {@link Hasher#hash(String)} including writing the Output File.
+     * 
+     * @param counters
+     *            Counts the hashed Bytes and Files
+     * @return the Path of the Output File, consumed by JMH
+     * @throws IOException
+     *             When the Output File couldn't be written or deleted
+     */
+    @Benchmark
+    public String hash(Counters counters) throws IOException {
+        String outputFile = hasher.hash(root.toString());
+        Files.delete(Paths.get(outputFile));
+        counters.add(shape.getBytes(), shape.getFiles());
+        return outputFile;
+    }
+    
+    /**
+     * Measures {@link Hasher#getDuplicates(File)}. The generated Files are all different, so this
+     * mostly shows what the Size and partial Hash Stages cost.
+     * 
+     * @param counters
+     *            Counts the searched Bytes and Files
+     * @return the Duplicates, consumed by JMH
+     */
+    @Benchmark
+    public Map<String, List<File>> getDuplicates(Counters counters) {
+        Map<String, List<File>> duplicates = hasher.getDuplicates(root.toFile());
+        counters.add(shape.getBytes(), shape.getFiles());
+        return duplicates;
+    }
+    
+}
@@ -0,0 +1,107 @@
+package tk.dmanstrator.filehasher.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tk.dmanstrator.filehasher.HashResult;
+import tk.dmanstrator.filehasher.Hasher;
+import tk.dmanstrator.filehasher.ReadMode;
+
+/**
+ * Benchmarks {@link Hasher#getHashResultOfFile(File)} for every {@link ReadMode} on Files of different Sizes,
+ * which shows which Mode wins on which File Size. For tiny Files the Hex Encoding dominates.
+ * 
+ * @author DManstrator
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReadModeBenchmark {
+    
+    /**
+     * Size of the File in Bytes.
+     */
+    @Param({ "1024", "262144", "4194304", "67108864", "536870912" })
+    public long size;
+    
+    /**
+     * Strategy to read the File.
+     */
+    @Param({ "STREAM", "DIRECT", "MAPPED", "AUTO" })
+    public ReadMode readMode;
+    
+    /**
+     * File to hash.
+     */
+    private File file;
+    
+    /**
+     * Hasher under Test.
+     */
+    private Hasher hasher;
+    
+    /**
+     * Writes the File.
+     * 
+     * @throws IOException
+     *             When the File couldn't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path path = Files.createTempFile("file-hasher-benchmark", ".bin");
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(size).nextBytes(chunk);
+        TreeGenerator.writeFile(path, chunk, size);
+        file = path.toFile();
+        hasher = new Hasher();
+        hasher.setReadMode(readMode);
+    }
+    
+    /**
+     * Deletes the File.
+     * 
+     * @throws IOException
+     *             When the File couldn't be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(file.toPath());
+    }
+    
+    /**
+     * Measures {@link Hasher#getHashResultOfFile(File)}.
+     * 
+     * @param counters
+     *            Counts the hashed Bytes and Files
+     * @return the Result, consumed by JMH
+     */
+    @Benchmark
+    public HashResult getHashResultOfFile(Counters counters) {
+        HashResult result = hasher.getHashResultOfFile(file);
+        counters.add(size, 1);
+        return result;
+    }
+    
+}
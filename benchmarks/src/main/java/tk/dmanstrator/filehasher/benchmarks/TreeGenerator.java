@@ -0,0 +1,174 @@
+package tk.dmanstrator.filehasher.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * Generates synthetic Directory Trees for the Benchmarks. The Content is random but reproducible.
+ * 
+ * @author DManstrator
+ *
+ */
+public final class TreeGenerator {
+    
+    /**
+     * Shapes of the generated Trees.
+     */
+    public enum Shape {
+        
+        /**
+         * Many tiny Files in a flat Hierarchy, stresses the Walk and the per-File Overhead.
+         */
+        TINY_FILES(100, 200, 1024, 1),
+        
+        /**
+         * Few huge Files, stresses the Read Path and the Digest.
+         */
+        HUGE_FILES(1, 4, 256L * 1024 * 1024, 1),
+        
+        /**
+         * Small Files in deeply nested Directories, stresses the Walk.
+         */
+        DEEP_NESTING(8, 4, 16 * 1024, 64);
+        
+        /**
+         * Amount of Directory Chains below the Root.
+         */
+        private final int directories;
+        
+        /**
+         * Amount of Files per Directory.
+         */
+        private final int filesPerDirectory;
+        
+        /**
+         * Size of every File in Bytes.
+         */
+        private final long fileSize;
+        
+        /**
+         * Depth of every Directory Chain.
+         */
+        private final int depth;
+        
+        /**
+         * Creates a new Shape.
+         * 
+         * @param directories
+         *            Amount of Directory Chains below the Root
+         * @param filesPerDirectory
+         *            Amount of Files per Directory
+         * @param fileSize
+         *            Size of every File in Bytes
+         * @param depth
+         *            Depth of every Directory Chain
+         */
+        Shape(int directories, int filesPerDirectory, long fileSize, int depth) {
+            this.directories = directories;
+            this.filesPerDirectory = filesPerDirectory;
+            this.fileSize = fileSize;
+            this.depth = depth;
+        }
+        
+        /**
+         * Returns the Amount of Files of the Tree.
+         * 
+         * @return the Amount of Files
+         */
+        public long getFiles() {
+            return (long) directories * depth * filesPerDirectory;
+        }
+        
+        /**
+         * Returns the Amount of Bytes of all Files of the Tree.
+         * 
+         * @return the Amount of Bytes
+         */
+        public long getBytes() {
+            return getFiles() * fileSize;
+        }
+        
+    }
+    
+    private TreeGenerator() {
+        // Utility Class
+    }
+    
+    /**
+     * Generates a Tree in a new temporary Directory.
+     * 
+     * @param shape
+     *            Shape of the Tree
+     * @return the Root of the generated Tree
+     * @throws IOException
+     *             When the Tree couldn't be written
+     */
+    public static Path generate(Shape shape) throws IOException {
+        Path root = Files.createTempDirectory("file-hasher-" + shape.name().toLowerCase());
+        Random random = new Random(shape.ordinal());
+        byte[] chunk = new byte[(int) Math.min(shape.fileSize, 1024 * 1024)];
+        for (int i = 0; i < shape.directories; i++)  {
+            Path directory = root.resolve("dir" + i);
+            for (int level = 0; level < shape.depth; level++)  {
+                Files.createDirectories(directory);
+                for (int j = 0; j < shape.filesPerDirectory; j++)  {
+                    random.nextBytes(chunk);
+                    writeFile(directory.resolve("file" + j + ".bin"), chunk, shape.fileSize);
+                }
+                directory = directory.resolve("level" + (level + 1));
+            }
+        }
+        return root;
+    }
+    
+    /**
+     * Writes a File by repeating the given Chunk.
+     * 
+     * @param path
+     *            File to write
+     * @param chunk
+     *            Content to repeat
+     * @param size
+     *            Size of the File in Bytes
+     * @throws IOException
+     *             When the File couldn't be written
+     */
+    public static void writeFile(Path path, byte[] chunk, long size) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path))  {
+            for (long written = 0; written < size; written += chunk.length)  {
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+    }
+    
+    /**
+     * Deletes a generated Tree.
+     * 
+     * @param root
+     *            Root of the Tree
+     * @throws IOException
+     *             When the Tree couldn't be deleted
+     */
+    public static void delete(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+}
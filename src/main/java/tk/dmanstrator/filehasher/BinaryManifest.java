@@ -0,0 +1,584 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only View of a binary Manifest, the indexed Counterpart of an Output File of {@link Hasher#hash(String)}.
+ * The Header names the scanned Folder and the Algorithms and points to a Table of fixed-width Records sorted by the
+ * UTF-8 Bytes of their Paths, every Record holds the raw Digests of a File and the Position of its Path. The File is
+ * mapped into Memory, so looking up a Path is a binary Search over the Records without reading or parsing the whole File.
+ * 
+ * @author DManstrator
+ *
+ */
+public final class BinaryManifest {
+    
+    /**
+     * Identifies a binary Manifest.
+     */
+    static final int MAGIC = 0x46484D31;  // "FHM1"
+    
+    /**
+     * Version of the Format.
+     */
+    static final int VERSION = 1;
+    
+    /**
+     * Size of the fixed Part of a Record: Position of the Path, Length of the Path and Length of the Error Message.
+     */
+    static final int RECORD_HEADER_SIZE = Long.BYTES + 2 * Integer.BYTES;
+    
+    /**
+     * Size of a mapped Segment, big Manifests are mapped in several Segments.
+     */
+    private static final int SEGMENT_SIZE = 1 << 30;
+    
+    /**
+     * The binary Manifest.
+     */
+    private final File file;
+    
+    /**
+     * Scanned Folder as written in the Header.
+     */
+    private final String mainFolderName;
+    
+    /**
+     * Algorithms of the Digests of every Record.
+     */
+    private final List<String> algorithms;
+    
+    /**
+     * Offset of every Digest within a Record in the Order of the Algorithms.
+     */
+    private final int[] digestOffsets;
+    
+    /**
+     * Length of every Digest in Bytes in the Order of the Algorithms.
+     */
+    private final int[] digestLengths;
+    
+    /**
+     * Amount of Records.
+     */
+    private final int size;
+    
+    /**
+     * Width of a Record in Bytes.
+     */
+    private final int recordWidth;
+    
+    /**
+     * Position of the first Record in the File.
+     */
+    private final long recordsOffset;
+    
+    /**
+     * Position of the Paths and Error Messages in the File.
+     */
+    private final long dataOffset;
+    
+    /**
+     * Mapped Segments of the File.
+     */
+    private final MappedByteBuffer[] segments;
+    
+    private BinaryManifest(File file, String mainFolderName, List<String> algorithms, int[] digestLengths, int size, int recordWidth,
+            long recordsOffset, long dataOffset, MappedByteBuffer[] segments) {
+        this.file = file;
+        this.mainFolderName = mainFolderName;
+        this.algorithms = algorithms;
+        this.digestLengths = digestLengths;
+        this.digestOffsets = new int[digestLengths.length];
+        int offset = RECORD_HEADER_SIZE;
+        for (int i = 0; i < digestLengths.length; i++)  {
+            digestOffsets[i] = offset;
+            offset += digestLengths[i];
+        }
+        this.size = size;
+        this.recordWidth = recordWidth;
+        this.recordsOffset = recordsOffset;
+        this.dataOffset = dataOffset;
+        this.segments = segments;
+    }
+    
+    /**
+     * Opens a binary Manifest and maps it into Memory.
+     * 
+     * @param file
+     *            binary Manifest to open
+     * @return the opened Manifest
+     * @throws IOException
+     *             When the File couldn't be read
+     * @throws IllegalArgumentException
+     *             When the File is not a binary Manifest
+     */
+    public static BinaryManifest open(File file) throws IOException, IllegalArgumentException {
+        String mainFolderName;
+        List<String> algorithms = new ArrayList<>();
+        int[] digestLengths;
+        int size;
+        int recordWidth;
+        long recordsOffset;
+        long dataOffset;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath())))  {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)  {
+                throw new IllegalArgumentException(String.format("Given File '%s' is not a binary manifest of the File-Hasher, re-check that!", file));
+            }
+            mainFolderName = in.readUTF();
+            digestLengths = new int[in.readUnsignedByte()];
+            for (int i = 0; i < digestLengths.length; i++)  {
+                algorithms.add(in.readUTF());
+                digestLengths[i] = in.readUnsignedShort();
+            }
+            size = in.readInt();
+            recordWidth = in.readInt();
+            recordsOffset = in.readLong();
+            dataOffset = in.readLong();
+        }
+        
+        MappedByteBuffer[] segments;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))  {
+            long length = channel.size();
+            if (dataOffset < recordsOffset || length < dataOffset || (dataOffset - recordsOffset) != (long) size * recordWidth)  {
+                throw new IOException(String.format("Binary manifest '%s' is truncated!", file));
+            }
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++)  {
+                long start = (long) i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+        }
+        return new BinaryManifest(file, mainFolderName, Collections.unmodifiableList(algorithms), digestLengths, size, recordWidth,
+                recordsOffset, dataOffset, segments);
+    }
+    
+    /**
+     * Converts an Output File of {@link Hasher#hash(String)} into a binary Manifest and opens it.
+     * 
+     * @param textManifest
+     *            Output File to convert
+     * @param binaryManifest
+     *            binary Manifest to create, an existing File gets replaced
+     * @return the opened binary Manifest
+     * @throws IOException
+     *             When a File couldn't be read or written or a Line is malformed
+     * @throws IllegalArgumentException
+     *             When the File is not an Output File of the Hasher
+     */
+    public static BinaryManifest fromText(File textManifest, File binaryManifest) throws IOException, IllegalArgumentException {
+        BinaryManifestWriter.convert(textManifest.toPath(), binaryManifest.toPath());
+        return open(binaryManifest);
+    }
+    
+    /**
+     * Checks if a File is a binary Manifest.
+     * 
+     * @param file
+     *            File to check
+     * @return <code>true</code> if the File starts like a binary Manifest
+     */
+    public static boolean isBinaryManifest(File file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath())))  {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Returns the binary Manifest.
+     * 
+     * @return the File
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Returns the scanned Folder as written in the Header.
+     * 
+     * @return the scanned Folder
+     */
+    public String getMainFolderName() {
+        return mainFolderName;
+    }
+    
+    /**
+     * Returns the Algorithms of the Digests.
+     * 
+     * @return the Names of the Algorithms, the first one is the primary Algorithm
+     */
+    public List<String> getAlgorithms() {
+        return algorithms;
+    }
+    
+    /**
+     * Returns the Amount of Entries.
+     * 
+     * @return the Amount of Entries, including the ones which couldn't be hashed
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the Path of an Entry.
+     * 
+     * @param index
+     *            Index of the Entry, the Entries are sorted by the UTF-8 Bytes of their Paths
+     * @return the Path as written in an Output File, e.g. <code>folder1/Testfile.txt</code>
+     * @throws IndexOutOfBoundsException
+     *             When the Index is out of Range
+     */
+    public String getPath(int index) throws IndexOutOfBoundsException {
+        long record = getRecord(index);
+        return getString(dataOffset + getLong(record), getInt(record + Long.BYTES));
+    }
+    
+    /**
+     * Checks if the File of an Entry got hashed successfully.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @return <code>true</code> if the Entry holds Digests
+     * @throws IndexOutOfBoundsException
+     *             When the Index is out of Range
+     */
+    public boolean isSuccessful(int index) throws IndexOutOfBoundsException {
+        return getInt(getRecord(index) + Long.BYTES + Integer.BYTES) < 0;
+    }
+    
+    /**
+     * Returns the Error Message of an Entry.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @return the Error Message or <code>null</code> if the File got hashed successfully
+     * @throws IndexOutOfBoundsException
+     *             When the Index is out of Range
+     */
+    public String getError(int index) throws IndexOutOfBoundsException {
+        long record = getRecord(index);
+        int errorLength = getInt(record + Long.BYTES + Integer.BYTES);
+        if (errorLength < 0)  {
+            return null;
+        }
+        return getString(dataOffset + getLong(record) + getInt(record + Long.BYTES), errorLength);
+    }
+    
+    /**
+     * Returns a raw Digest of an Entry.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @param algorithm
+     *            Index of the Algorithm
+     * @return a Copy of the Digest or <code>null</code> if the File couldn't be hashed
+     * @throws IndexOutOfBoundsException
+     *             When an Index is out of Range
+     */
+    public byte[] getDigest(int index, int algorithm) throws IndexOutOfBoundsException {
+        if (algorithm < 0 || algorithm >= digestLengths.length)  {
+            throw new IndexOutOfBoundsException(String.format("Algorithm %d of %d", algorithm, digestLengths.length));
+        }
+        if (!isSuccessful(index))  {
+            return null;
+        }
+        byte[] digest = new byte[digestLengths[algorithm]];
+        long position = getRecord(index) + digestOffsets[algorithm];
+        for (int i = 0; i < digest.length; i++)  {
+            digest[i] = getByte(position + i);
+        }
+        return digest;
+    }
+    
+    /**
+     * Returns the Hash of an Entry with the primary Algorithm.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @return the hexadecimal Hash or <code>null</code> if the File couldn't be hashed
+     * @throws IndexOutOfBoundsException
+     *             When the Index is out of Range
+     */
+    public String getHash(int index) throws IndexOutOfBoundsException {
+        byte[] digest = getDigest(index, 0);
+        return digest != null ? Hex.encode(digest) : null;
+    }
+    
+    /**
+     * Finds the Entry of a Path with a binary Search.
+     * 
+     * @param path
+     *            Path as written in an Output File, e.g. <code>folder1/Testfile.txt</code>, <code>/</code> is accepted as Separator
+     * @return the Index of the Entry or <code>-1</code> if the Path is unknown
+     */
+    public int indexOf(String path) {
+        byte[] key = path.replace('/', File.separatorChar).getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)  {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(middle, key);
+            if (comparison < 0)  {
+                low = middle + 1;
+            }  else if (comparison > 0)  {
+                high = middle - 1;
+            }  else  {
+                return middle;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Looks up the Hash of a Path with the primary Algorithm.
+     * 
+     * @param path
+     *            Path as written in an Output File, e.g. <code>folder1/Testfile.txt</code>
+     * @return the hexadecimal Hash or <code>null</code> if the Path is unknown or couldn't be hashed
+     */
+    public String getHash(String path) {
+        int index = indexOf(path);
+        return index != -1 ? getHash(index) : null;
+    }
+    
+    /**
+     * Looks up the Hash of a Path with the given Algorithm.
+     * 
+     * @param path
+     *            Path as written in an Output File, e.g. <code>folder1/Testfile.txt</code>
+     * @param algorithm
+     *            Name of the Algorithm, e.g. <code>SHA-256</code>
+     * @return the hexadecimal Hash or <code>null</code> if the Path is unknown, couldn't be hashed or the Algorithm wasn't used
+     */
+    public String getHash(String path, String algorithm) {
+        int algorithmIndex = algorithms.indexOf(algorithm);
+        int index = indexOf(path);
+        if (algorithmIndex == -1 || index == -1)  {
+            return null;
+        }
+        byte[] digest = getDigest(index, algorithmIndex);
+        return digest != null ? Hex.encode(digest) : null;
+    }
+    
+    /**
+     * Writes the Entries as an Output File in the Format of {@link Hasher#hash(String)}, sorted by Path.
+     * 
+     * @param textManifest
+     *            Output File to write
+     * @throws IOException
+     *             When the Output File couldn't be written
+     */
+    public void writeText(File textManifest) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(textManifest.toPath(), StandardCharsets.UTF_8))  {
+            writer.write(ManifestWriter.HEADER_PREFIX + mainFolderName);
+            if (algorithms.size() != 1 || !algorithms.get(0).equals(Hasher.DEFAULT_ALGORITHM))  {
+                writer.write(System.lineSeparator());
+                writer.write(ManifestWriter.ALGORITHMS_PREFIX + String.join(", ", algorithms));
+            }
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < size; i++)  {
+                line.setLength(0);
+                line.append(getPath(i)).append(ManifestWriter.SEPARATOR);
+                if (isSuccessful(i))  {
+                    for (int algorithm = 0; algorithm < algorithms.size(); algorithm++)  {
+                        if (algorithm > 0)  {
+                            line.append(' ');
+                        }
+                        byte[] digest = getDigest(i, algorithm);
+                        Hex.append(digest, 0, digest.length, line);
+                    }
+                }  else  {
+                    line.append(ManifestWriter.ERROR_PREFIX).append(getError(i)).append(')');
+                }
+                writer.write(System.lineSeparator());
+                writer.append(line);
+            }
+        }
+    }
+    
+    /**
+     * Writes the Hashes of the given Algorithm in the Format of the GNU Coreutils, e.g. <code>sha512sum</code>, so they can be checked
+     * with <code>sha512sum -c</code> from the Parent of the scanned Folder. Entries which couldn't be hashed are left out.
+     * 
+     * @param checksumFile
+     *            File to write
+     * @param algorithm
+     *            Name of the Algorithm, e.g. <code>SHA-512</code>
+     * @return the Amount of written Lines
+     * @throws IOException
+     *             When the File couldn't be written
+     * @throws IllegalArgumentException
+     *             When the Manifest has no Hashes of the Algorithm
+     */
+    public int writeChecksums(File checksumFile, String algorithm) throws IOException, IllegalArgumentException {
+        int algorithmIndex = algorithms.indexOf(algorithm);
+        if (algorithmIndex == -1)  {
+            throw new IllegalArgumentException(String.format("Binary manifest '%s' has no %s hashes!", file, algorithm));
+        }
+        int written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(checksumFile.toPath(), StandardCharsets.UTF_8))  {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < size; i++)  {
+                byte[] digest = getDigest(i, algorithmIndex);
+                if (digest != null)  {
+                    line.setLength(0);
+                    appendChecksumLine(line, digest, getPath(i));
+                    writer.append(line);
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+    
+    /**
+     * Writes the SHA-512 Hashes in the Format of <code>sha512sum</code>.
+     * 
+     * @param checksumFile
+     *            File to write
+     * @return the Amount of written Lines
+     * @throws IOException
+     *             When the File couldn't be written
+     * @throws IllegalArgumentException
+     *             When the Manifest has no SHA-512 Hashes
+     * @see #writeChecksums(File, String)
+     */
+    public int writeSha512sum(File checksumFile) throws IOException, IllegalArgumentException {
+        return writeChecksums(checksumFile, Hasher.DEFAULT_ALGORITHM);
+    }
+    
+    /**
+     * Appends a Line in the Format of the GNU Coreutils. Paths with a Backslash or a Line Break get escaped
+     * and the Line gets prefixed with a Backslash then, like <code>sha512sum</code> does it.
+     * 
+     * @param target
+     *            Builder to append to
+     * @param digest
+     *            Digest of the File
+     * @param path
+     *            Path of the File
+     */
+    static void appendChecksumLine(StringBuilder target, byte[] digest, String path) {
+        String unixPath = path.replace(File.separatorChar, '/');
+        boolean escaped = unixPath.indexOf('\\') != -1 || unixPath.indexOf('\n') != -1;
+        if (escaped)  {
+            target.append('\\');
+            unixPath = unixPath.replace("\\", "\\\\").replace("\n", "\\n");
+        }
+        Hex.append(digest, 0, digest.length, target);
+        target.append("  ").append(unixPath).append('\n');
+    }
+    
+    /**
+     * Compares the Path of an Entry with a Key by their unsigned Bytes.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @param key
+     *            UTF-8 Bytes of the Path to look up
+     * @return a negative Number, zero or a positive Number if the Path of the Entry is lower, equal or greater than the Key
+     */
+    private int compare(int index, byte[] key) {
+        long record = getRecord(index);
+        long position = dataOffset + getLong(record);
+        int length = getInt(record + Long.BYTES);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++)  {
+            int difference = (getByte(position + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0)  {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+    
+    /**
+     * Returns the Position of a Record.
+     * 
+     * @param index
+     *            Index of the Record
+     * @return the Position in the File
+     * @throws IndexOutOfBoundsException
+     *             When the Index is out of Range
+     */
+    private long getRecord(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size)  {
+            throw new IndexOutOfBoundsException(String.format("Index %d of %d", index, size));
+        }
+        return recordsOffset + (long) index * recordWidth;
+    }
+    
+    /**
+     * Reads a Byte of the mapped File.
+     * 
+     * @param position
+     *            Position in the File
+     * @return the Byte
+     */
+    private byte getByte(long position) {
+        return segments[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE));
+    }
+    
+    /**
+     * Reads a big-endian Integer of the mapped File.
+     * 
+     * @param position
+     *            Position in the File
+     * @return the Integer
+     */
+    private int getInt(long position) {
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++)  {
+            value = (value << 8) | (getByte(position + i) & 0xFF);
+        }
+        return value;
+    }
+    
+    /**
+     * Reads a big-endian Long of the mapped File.
+     * 
+     * @param position
+     *            Position in the File
+     * @return the Long
+     */
+    private long getLong(long position) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++)  {
+            value = (value << 8) | (getByte(position + i) & 0xFF);
+        }
+        return value;
+    }
+    
+    /**
+     * Reads an UTF-8 String of the mapped File.
+     * 
+     * @param position
+     *            Position in the File
+     * @param length
+     *            Length in Bytes
+     * @return the String
+     */
+    private String getString(long position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)  {
+            bytes[i] = getByte(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+}
@@ -0,0 +1,278 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes a {@link BinaryManifest}. The Entries are sorted by the UTF-8 Bytes of their Path with an {@link ExternalSorter},
+ * so the Memory needed doesn't depend on the Amount of Entries. Afterwards the fixed-width Records and the Paths are
+ * written at their final Positions, the File is written under a temporary Name and renamed when it is complete.
+ * 
+ * @author DManstrator
+ *
+ */
+final class BinaryManifestWriter implements AutoCloseable {
+    
+    /**
+     * Size of the Buffers for the Records and the Paths.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * Scanned Folder as written in the Header.
+     */
+    private final String mainFolderName;
+    
+    /**
+     * Algorithms of the Digests of every Record.
+     */
+    private final List<String> algorithms;
+    
+    /**
+     * Sorts the Entries as Lines of an Output File by their Path.
+     */
+    private final ExternalSorter sorter = new ExternalSorter();
+    
+    /**
+     * Length of the Digests in Bytes in the Order of the Algorithms, <code>null</code> until a successful Entry got added.
+     */
+    private int[] digestLengths;
+    
+    /**
+     * Amount of added Entries.
+     */
+    private int count = 0;
+    
+    /**
+     * Creates a new Writer.
+     * 
+     * @param mainFolderName
+     *            Scanned Folder as written in the Header
+     * @param algorithms
+     *            Algorithms of the Digests
+     */
+    BinaryManifestWriter(String mainFolderName, List<String> algorithms) {
+        this.mainFolderName = mainFolderName;
+        this.algorithms = algorithms;
+    }
+    
+    /**
+     * Converts an Output File into a binary Manifest.
+     * 
+     * @param textManifest
+     *            Output File to convert
+     * @param binaryManifest
+     *            binary Manifest to create
+     * @throws IOException
+     *             When a File couldn't be read or written or a Line is malformed
+     * @throws IllegalArgumentException
+     *             When the File is not an Output File of the Hasher
+     */
+    static void convert(Path textManifest, Path binaryManifest) throws IOException, IllegalArgumentException {
+        try (ManifestReader reader = new ManifestReader(textManifest);
+                BinaryManifestWriter writer = new BinaryManifestWriter(reader.getMainFolderName(), reader.getAlgorithms()))  {
+            ManifestReader.Entry entry;
+            while ((entry = reader.next()) != null)  {
+                writer.add(entry.getPath(), entry.getHashes(), entry.getError());
+            }
+            writer.write(binaryManifest);
+        }
+    }
+    
+    /**
+     * Adds an Entry.
+     * 
+     * @param path
+     *            Path of the File as written in an Output File, e.g. <code>folder1/Testfile.txt</code>
+     * @param hashes
+     *            Hashes in the Order of the Algorithms, <code>null</code> if hashing failed
+     * @param error
+     *            Error Message, <code>null</code> if hashing succeeded
+     * @throws IOException
+     *             When the Hashes don't fit the Algorithms or the Entry couldn't be spilled
+     */
+    void add(String path, String[] hashes, String error) throws IOException {
+        StringBuilder line = new StringBuilder(path).append(ManifestWriter.SEPARATOR);
+        if (hashes != null)  {
+            if (hashes.length != algorithms.size())  {
+                throw new IOException(String.format("Expected %d hashes for '%s' but found %d!", algorithms.size(), path, hashes.length));
+            }
+            if (digestLengths == null)  {
+                digestLengths = new int[hashes.length];
+                for (int i = 0; i < hashes.length; i++)  {
+                    digestLengths[i] = hashes[i].length() / 2;
+                }
+            }
+            for (int i = 0; i < hashes.length; i++)  {
+                if (hashes[i].length() != digestLengths[i] * 2)  {
+                    throw new IOException(String.format("Hash of '%s' has an unexpected length!", path));
+                }
+            }
+            line.append(String.join(" ", hashes));
+        }  else  {
+            line.append(ManifestWriter.ERROR_PREFIX).append(error).append(')');
+        }
+        // the Latin-1 View of the UTF-8 Bytes sorts like the Bytes themselves, which is the Order of the Lookup
+        sorter.add(new String(path.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1), line.toString());
+        count++;
+    }
+    
+    /**
+     * Writes all added Entries into the binary Manifest.
+     * 
+     * @param target
+     *            binary Manifest to create
+     * @throws IOException
+     *             When the File couldn't be written
+     */
+    void write(Path target) throws IOException {
+        int[] lengths = digestLengths != null ? digestLengths : new int[algorithms.size()];
+        int digestsWidth = Arrays.stream(lengths).sum();
+        int recordWidth = BinaryManifest.RECORD_HEADER_SIZE + digestsWidth;
+        
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(BinaryManifest.MAGIC);
+        header.writeInt(BinaryManifest.VERSION);
+        header.writeUTF(mainFolderName);
+        header.writeByte(algorithms.size());
+        for (int i = 0; i < algorithms.size(); i++)  {
+            header.writeUTF(algorithms.get(i));
+            header.writeShort(lengths[i]);
+        }
+        header.writeInt(count);
+        header.writeInt(recordWidth);
+        long recordsOffset = headerBytes.size() + 2 * Long.BYTES;
+        long dataOffset = recordsOffset + (long) count * recordWidth;
+        header.writeLong(recordsOffset);
+        header.writeLong(dataOffset);
+        header.flush();
+        
+        Path partFile = target.resolveSibling(target.getFileName() + Hasher.PART_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE))  {
+                writeFully(channel, ByteBuffer.wrap(headerBytes.toByteArray()), 0);
+                ByteBuffer records = ByteBuffer.allocate(Math.max(BUFFER_SIZE, recordWidth));
+                ByteBuffer data = ByteBuffer.allocate(BUFFER_SIZE);
+                long[] positions = { recordsOffset, dataOffset };  // next Record, next Path
+                long[] dataLength = { 0 };
+                sorter.merge(text ->  {
+                    ManifestReader.Entry entry = ManifestReader.parse(text);
+                    byte[] path = entry.getPath().getBytes(StandardCharsets.UTF_8);
+                    byte[] error = entry.isSuccessful() ? null : entry.getError().getBytes(StandardCharsets.UTF_8);
+                    if (records.remaining() < recordWidth)  {
+                        positions[0] += flush(channel, records, positions[0]);
+                    }
+                    records.putLong(dataLength[0]);
+                    records.putInt(path.length);
+                    records.putInt(error != null ? error.length : -1);
+                    if (error == null)  {
+                        for (String hash : entry.getHashes())  {
+                            records.put(Hex.decode(hash));
+                        }
+                    }  else  {  // the Buffer gets reused, so the missing Digests are zeroed explicitly
+                        for (int i = 0; i < digestsWidth; i++)  {
+                            records.put((byte) 0);
+                        }
+                    }
+                    positions[1] += append(channel, data, path, positions[1]);
+                    dataLength[0] += path.length;
+                    if (error != null)  {
+                        positions[1] += append(channel, data, error, positions[1]);
+                        dataLength[0] += error.length;
+                    }
+                });
+                flush(channel, records, positions[0]);
+                flush(channel, data, positions[1]);
+            }
+            Hasher.replace(partFile, target);
+        } finally {
+            Files.deleteIfExists(partFile);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        sorter.close();
+    }
+    
+    /**
+     * Appends Bytes to the buffered Region of the Paths.
+     * 
+     * @param channel
+     *            Channel of the binary Manifest
+     * @param buffer
+     *            Buffer of the Region
+     * @param bytes
+     *            Bytes to append
+     * @param position
+     *            Position of the Buffer in the File
+     * @return the Amount of Bytes written to the File, the Buffer is continued behind them
+     * @throws IOException
+     *             When the Bytes couldn't be written
+     */
+    private static int append(FileChannel channel, ByteBuffer buffer, byte[] bytes, long position) throws IOException {
+        if (buffer.remaining() >= bytes.length)  {
+            buffer.put(bytes);
+            return 0;
+        }
+        int written = flush(channel, buffer, position);
+        if (bytes.length > buffer.capacity())  {  // too big for the Buffer, written directly
+            return written + writeFully(channel, ByteBuffer.wrap(bytes), position + written);
+        }
+        buffer.put(bytes);
+        return written;
+    }
+    
+    /**
+     * Writes the filled Part of a Buffer at a Position and clears the Buffer.
+     * 
+     * @param channel
+     *            Channel to write to
+     * @param buffer
+     *            Buffer which got filled
+     * @param position
+     *            Position in the File
+     * @return the Amount of written Bytes
+     * @throws IOException
+     *             When the Buffer couldn't be written
+     */
+    private static int flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int written = writeFully(channel, buffer, position);
+        buffer.clear();
+        return written;
+    }
+    
+    /**
+     * Writes the remaining Bytes of a Buffer at a Position.
+     * 
+     * @param channel
+     *            Channel to write to
+     * @param buffer
+     *            Buffer to write
+     * @param position
+     *            Position in the File
+     * @return the Amount of written Bytes
+     * @throws IOException
+     *             When the Buffer couldn't be written
+     */
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining())  {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+    
+}
@@ -0,0 +1,153 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+
+/**
+ * Hashes of a File which got hashed in fixed-size Blocks. Every Block has its own Hash and the Top Hash is the
+ * Hash of all Block Digests in their Order, so a single corrupted Block can be found without reading the whole File again.
+ * 
+ * @author DManstrator
+ *
+ * @see Hasher#getChunkedHash(File, int)
+ */
+public final class ChunkedHash {
+    
+    /**
+     * File which got hashed.
+     */
+    private final File file;
+    
+    /**
+     * Algorithm the Hashes were computed with.
+     */
+    private final String algorithm;
+    
+    /**
+     * Size of the File in Bytes.
+     */
+    private final long size;
+    
+    /**
+     * Size of every Block but the last one in Bytes.
+     */
+    private final int blockSize;
+    
+    /**
+     * Digests of the Blocks in their Order.
+     */
+    private final byte[][] blockDigests;
+    
+    /**
+     * Digest of all Block Digests.
+     */
+    private final byte[] topDigest;
+    
+    /**
+     * Creates new chunked Hashes.
+     * 
+     * @param file
+     *            File which got hashed
+     * @param algorithm
+     *            Algorithm the Hashes were computed with
+     * @param size
+     *            Size of the File in Bytes
+     * @param blockSize
+     *            Size of every Block but the last one in Bytes
+     * @param blockDigests
+     *            Digests of the Blocks in their Order, not copied
+     * @param topDigest
+     *            Digest of all Block Digests
+     */
+    ChunkedHash(File file, String algorithm, long size, int blockSize, byte[][] blockDigests, byte[] topDigest) {
+        this.file = file;
+        this.algorithm = algorithm;
+        this.size = size;
+        this.blockSize = blockSize;
+        this.blockDigests = blockDigests;
+        this.topDigest = topDigest;
+    }
+    
+    /**
+     * Returns the File which got hashed.
+     * 
+     * @return the File
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Returns the Algorithm the Hashes were computed with.
+     * 
+     * @return the Name of the Algorithm
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+    
+    /**
+     * Returns the Size of the File.
+     * 
+     * @return the Size in Bytes
+     */
+    public long getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns the Size of every Block but the last one.
+     * 
+     * @return the Block Size in Bytes
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+    
+    /**
+     * Returns the Amount of Blocks.
+     * 
+     * @return the Amount of Blocks, <code>0</code> for an empty File
+     */
+    public int getBlockCount() {
+        return blockDigests.length;
+    }
+    
+    /**
+     * Returns the Hash of a Block.
+     * 
+     * @param index
+     *            Index of the Block
+     * @return the Hash of the Block
+     * @throws IndexOutOfBoundsException
+     *             When there is no Block with the Index
+     */
+    public String getBlockHash(int index) throws IndexOutOfBoundsException {
+        return Hex.encode(blockDigests[index]);
+    }
+    
+    /**
+     * Returns the Top Hash computed from all Block Digests.
+     * 
+     * @return the Top Hash
+     */
+    public String getTopHash() {
+        return Hex.encode(topDigest);
+    }
+    
+    /**
+     * Returns the Digest of a Block without copying it.
+     * 
+     * @param index
+     *            Index of the Block
+     * @return the Digest, must not be modified
+     */
+    byte[] getBlockDigest(int index) {
+        return blockDigests[index];
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s: %s (%d blocks of %d bytes)", file.getPath(), getTopHash(), blockDigests.length, blockSize);
+    }
+    
+}
@@ -0,0 +1,229 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Hashes the Blocks of a single File in parallel. A sequential Hash like SHA-512 only uses one Core per File,
+ * hashing fixed-size Blocks independently lets a single huge File use every Worker.
+ * 
+ * @author DManstrator
+ *
+ */
+final class ChunkedHasher {
+    
+    /**
+     * Default Size of a Block in Bytes.
+     */
+    static final int DEFAULT_BLOCK_SIZE = 16 * 1024 * 1024;
+    
+    /**
+     * Reads the Blocks into the Digests.
+     */
+    private final DigestReader reader;
+    
+    /**
+     * Pool to hash the Blocks in, <code>null</code> to hash them on the calling Thread.
+     */
+    private final ExecutorService pool;
+    
+    /**
+     * Returns a reset Digest of the current Thread.
+     */
+    private final Supplier<MessageDigest> digests;
+    
+    /**
+     * Creates a new chunked Hasher.
+     * 
+     * @param reader
+     *            Reads the Blocks into the Digests
+     * @param pool
+     *            Pool to hash the Blocks in, <code>null</code> to hash them on the calling Thread
+     * @param digests
+     *            Returns a reset Digest of the current Thread
+     */
+    ChunkedHasher(DigestReader reader, ExecutorService pool, Supplier<MessageDigest> digests) {
+        this.reader = reader;
+        this.pool = pool;
+        this.digests = digests;
+    }
+    
+    /**
+     * Hashes every Block of a File.
+     * 
+     * @param file
+     *            File to hash
+     * @param blockSize
+     *            Size of a Block in Bytes
+     * @return the Hashes of the Blocks and the Top Hash
+     * @throws IOException
+     *             When the File couldn't be read
+     * @throws IllegalArgumentException
+     *             When the File has too many Blocks of the given Size
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     */
+    ChunkedHash hash(File file, int blockSize) throws IOException, IllegalArgumentException, CancellationException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))  {
+            long size = channel.size();
+            long blockCount = (size + blockSize - 1) / blockSize;
+            if (blockCount > Integer.MAX_VALUE)  {
+                throw new IllegalArgumentException(String.format("A block size of %d bytes is too small for '%s'!", blockSize, file));
+            }
+            int blocks = (int) blockCount;
+            byte[][] blockDigests = hashBlocks(channel, size, blockSize, allBlocks(blocks));
+            MessageDigest md = digests.get();
+            for (byte[] digest : blockDigests)  {
+                md.update(digest);
+            }
+            return new ChunkedHash(file, md.getAlgorithm(), size, blockSize, blockDigests, md.digest());
+        }
+    }
+    
+    /**
+     * Hashes the given Blocks of a File again and returns those which don't match anymore. If the Size of the File
+     * changed, the Blocks which got cut off are corrupt without being read, and if it grew, the last Block is corrupt since
+     * it doesn't end the File anymore (Block <code>0</code> for a File which was empty).
+     * 
+     * @param file
+     *            File to check
+     * @param expected
+     *            Hashes to check against
+     * @param blocks
+     *            Indices of the Blocks to check
+     * @return the Indices of the corrupted Blocks in ascending Order
+     * @throws IOException
+     *             When the File couldn't be read
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     */
+    List<Integer> findCorruptBlocks(File file, ChunkedHash expected, int[] blocks) throws IOException, CancellationException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))  {
+            long size = channel.size();
+            long expectedSize = expected.getSize();
+            int blockSize = expected.getBlockSize();
+            int lastBlock = expected.getBlockCount() - 1;
+            List<Integer> corrupt = new ArrayList<>();
+            if (size > expectedSize && lastBlock < 0)  {
+                corrupt.add(0);
+            }
+            int[] readable = Arrays.stream(blocks).filter(block ->  {
+                boolean cutOff = Math.min((long) (block + 1) * blockSize, expectedSize) > size;
+                boolean extended = size > expectedSize && block == lastBlock;
+                if (cutOff || extended)  {
+                    corrupt.add(block);
+                    return false;
+                }
+                return true;
+            }).toArray();
+            byte[][] actual = hashBlocks(channel, expectedSize, blockSize, readable);
+            for (int i = 0; i < readable.length; i++)  {
+                if (!Arrays.equals(actual[i], expected.getBlockDigest(readable[i])))  {
+                    corrupt.add(readable[i]);
+                }
+            }
+            corrupt.sort(null);
+            return corrupt;
+        }
+    }
+    
+    /**
+     * Hashes the given Blocks of a Channel.
+     * 
+     * @param channel
+     *            Channel of the File
+     * @param size
+     *            Size of the File
+     * @param blockSize
+     *            Size of a Block in Bytes
+     * @param blocks
+     *            Indices of the Blocks to hash
+     * @return the Digests in the Order of the given Indices
+     * @throws IOException
+     *             When a Block couldn't be read
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     */
+    private byte[][] hashBlocks(FileChannel channel, long size, int blockSize, int[] blocks) throws IOException, CancellationException {
+        byte[][] blockDigests = new byte[blocks.length][];
+        if (pool == null)  {
+            for (int i = 0; i < blocks.length; i++)  {
+                blockDigests[i] = hashBlock(channel, size, blockSize, blocks[i]);
+            }
+            return blockDigests;
+        }
+        
+        List<Future<byte[]>> futures = new ArrayList<>(blocks.length);
+        for (int block : blocks)  {
+            futures.add(pool.submit(() -> hashBlock(channel, size, blockSize, block)));
+        }
+        try {
+            for (int i = 0; i < blocks.length; i++)  {
+                blockDigests[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Hashing the blocks got cancelled!");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof IOException)  {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("A Worker failed unexpectedly!", e.getCause());
+        }
+        return blockDigests;
+    }
+    
+    /**
+     * Hashes a single Block.
+     * 
+     * @param channel
+     *            Channel of the File
+     * @param size
+     *            Size of the File
+     * @param blockSize
+     *            Size of a Block in Bytes
+     * @param block
+     *            Index of the Block
+     * @return the Digest of the Block
+     * @throws IOException
+     *             When the Block couldn't be read
+     */
+    private byte[] hashBlock(FileChannel channel, long size, int blockSize, int block) throws IOException {
+        MessageDigest md = digests.get();
+        long position = (long) block * blockSize;
+        try {
+            reader.readRange(channel, position, Math.min(blockSize, size - position), new MessageDigest[] { md });
+        } catch (IOException | RuntimeException e) {
+            md.reset();
+            throw e;
+        }
+        return md.digest();
+    }
+    
+    /**
+     * Returns the Indices of all Blocks.
+     * 
+     * @param blocks
+     *            Amount of Blocks
+     * @return the Indices in ascending Order
+     */
+    private static int[] allBlocks(int blocks) {
+        int[] indices = new int[blocks];
+        Arrays.setAll(indices, i -> i);
+        return indices;
+    }
+    
+}
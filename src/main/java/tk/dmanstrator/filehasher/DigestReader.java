@@ -0,0 +1,691 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feeds the Content of a File into one or more Message Digests using one of the {@link ReadMode Read Modes}.
+ * Every Digest gets updated from the same Buffers, so the File is only read once.
+ * Buffers are kept per Thread and reused for every File, so the Memory per File stays constant.
+ * 
+ * @author DManstrator
+ *
+ */
+final class DigestReader {
+    
+    /**
+     * Default Size of the Read Buffers in Bytes.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * Default Size from which on {@link ReadMode#AUTO} maps a File instead of reading it.
+     */
+    static final long DEFAULT_MAPPING_THRESHOLD = 4L * 1024 * 1024;
+    
+    /**
+     * Size of a mapped Window in Bytes.
+     */
+    static final long MAPPING_WINDOW_SIZE = 64L * 1024 * 1024;
+    
+    /**
+     * Amount of Buffers a Reader fills ahead of the Digest Worker.
+     */
+    static final int HANDOFF_BUFFERS = 4;
+    
+    /**
+     * Amount of loaded Windows a Reader of a mapped File keeps ahead of the Digest Worker.
+     */
+    static final int HANDOFF_WINDOWS = 2;
+    
+    /**
+     * Size of the Read Buffers in Bytes.
+     */
+    private volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+    
+    /**
+     * Strategy to read the Files.
+     */
+    private volatile ReadMode readMode = ReadMode.STREAM;
+    
+    /**
+     * Size from which on {@link ReadMode#AUTO} maps a File.
+     */
+    private volatile long mappingThreshold = DEFAULT_MAPPING_THRESHOLD;
+    
+    /**
+     * Heap Buffer per Thread.
+     */
+    private final ThreadLocal<byte[]> heapBuffers = new ThreadLocal<>();
+    
+    /**
+     * Direct Buffer per Thread.
+     */
+    private final ThreadLocal<ByteBuffer> directBuffers = new ThreadLocal<>();
+    
+    /**
+     * Buffers per Thread handed to the Digest Workers.
+     */
+    private final ThreadLocal<ByteBuffer[]> handoffBuffers = new ThreadLocal<>();
+    
+    /**
+     * Sets the Size of the Read Buffers.
+     * 
+     * @param bufferSize
+     *            Size in Bytes
+     */
+    void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+    
+    /**
+     * Returns the Size of the Read Buffers.
+     * 
+     * @return the Size in Bytes
+     */
+    int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /**
+     * Sets the Strategy to read the Files.
+     * 
+     * @param readMode
+     *            Strategy to read the Files
+     */
+    void setReadMode(ReadMode readMode) {
+        this.readMode = readMode;
+    }
+    
+    /**
+     * Returns the Strategy to read the Files.
+     * 
+     * @return the Strategy to read the Files
+     */
+    ReadMode getReadMode() {
+        return readMode;
+    }
+    
+    /**
+     * Sets the Size from which on {@link ReadMode#AUTO} maps a File.
+     * 
+     * @param mappingThreshold
+     *            Size in Bytes
+     */
+    void setMappingThreshold(long mappingThreshold) {
+        this.mappingThreshold = mappingThreshold;
+    }
+    
+    /**
+     * Returns the Size from which on {@link ReadMode#AUTO} maps a File.
+     * 
+     * @return the Size in Bytes
+     */
+    long getMappingThreshold() {
+        return mappingThreshold;
+    }
+    
+    /**
+     * Reads the whole File into the given Digests.
+     * 
+     * @param path
+     *            File to read
+     * @param mds
+     *            Digests to update
+     * @throws IOException
+     *             When the File couldn't be read
+     */
+    void read(Path path, MessageDigest[] mds) throws IOException {
+        ReadMode mode = readMode;
+        if (mode == ReadMode.STREAM)  {
+            readStream(path, mds);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))  {
+            if (mode == ReadMode.MAPPED || (mode == ReadMode.AUTO && channel.size() >= mappingThreshold))  {
+                readMapped(channel, mds);
+            }  else  {
+                readDirect(channel, mds);
+            }
+        }
+    }
+    
+    /**
+     * Reads the whole File and hands the filled Buffers to a Digest Worker, so the File is read while the Digests of
+     * its previous Buffers still get updated. Mapped Windows are loaded from the Disk before they are handed over.
+     * Once the last Byte got read, the Caller gets notified, e.g. to let the next File of the same Disk be read, and
+     * afterwards waits until the Digests are done. Only a File which fits into one Buffer is digested by the calling Thread.
+     * 
+     * @param path
+     *            File to read
+     * @param mds
+     *            Digests to update
+     * @param digester
+     *            Runs the Digest Workers and limits how many Files are digested at once, if it rejects a Digest
+     *            Worker the calling Thread updates the Digests itself
+     * @param afterRead
+     *            Gets called once the whole File got read, not if reading failed
+     * @throws IOException
+     *             When the File couldn't be read, got truncated while it was read or the Thread got interrupted
+     */
+    void read(Path path, MessageDigest[] mds, Executor digester, Runnable afterRead) throws IOException {
+        ReadMode mode = readMode;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))  {
+            if (mode == ReadMode.MAPPED || (mode == ReadMode.AUTO && channel.size() >= mappingThreshold))  {
+                handOffMapped(channel, mds, digester, afterRead);
+                return;
+            }
+            ByteBuffer[] buffers = getHandoffBuffers(mode != ReadMode.STREAM);
+            ByteBuffer buffer = buffers[0];
+            buffer.clear();
+            if (!fill(channel, buffer))  {  // nothing to hand off
+                afterRead.run();
+                buffer.flip();
+                update(buffer, mds);
+                return;
+            }
+            
+            Handoff handoff = Handoff.start(mds, Arrays.asList(buffers).subList(1, buffers.length), digester);
+            try {
+                do {
+                    buffer.flip();
+                    handoff.hand(buffer);
+                    buffer = handoff.nextBuffer();
+                    buffer.clear();
+                } while (fill(channel, buffer));
+                buffer.flip();
+                handoff.hand(buffer);
+            } catch (IOException | RuntimeException e) {
+                handoff.finish(false);
+                throw e;
+            }
+            afterRead.run();
+            handoff.finish(true);
+        }
+    }
+    
+    /**
+     * Maps the File Window by Window, loads every Window from the Disk and hands it to a Digest Worker.
+     * 
+     * @param channel
+     *            Channel of the File to read
+     * @param mds
+     *            Digests to update
+     * @param digester
+     *            Runs the Digest Workers
+     * @param afterRead
+     *            Gets called once every Window got loaded
+     * @throws IOException
+     *             When the File couldn't be mapped, got truncated while it was read or the Thread got interrupted
+     */
+    private void handOffMapped(FileChannel channel, MessageDigest[] mds, Executor digester, Runnable afterRead) throws IOException {
+        long size = channel.size();
+        // the Windows aren't reused, so the Queue of free Buffers only limits the loaded Windows waiting to be digested
+        Handoff handoff = Handoff.start(mds, Collections.nCopies(HANDOFF_WINDOWS, ByteBuffer.allocate(0)), digester);
+        try {
+            for (long position = 0; position < size; position += MAPPING_WINDOW_SIZE)  {
+                handoff.nextBuffer();
+                MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, Math.min(MAPPING_WINDOW_SIZE, size - position));
+                try {
+                    window.load();
+                } catch (InternalError e) {
+                    throw truncated(position, e);
+                }
+                handoff.hand(window);
+            }
+        } catch (IOException | RuntimeException e) {
+            handoff.finish(false);
+            throw e;
+        }
+        afterRead.run();
+        handoff.finish(true);
+    }
+    
+    /**
+     * Streams the File through the Heap Buffer of the current Thread.
+     * 
+     * @param path
+     *            File to read
+     * @param mds
+     *            Digests to update
+     * @throws IOException
+     *             When the File couldn't be read or the Thread got interrupted
+     */
+    private void readStream(Path path, MessageDigest[] mds) throws IOException {
+        byte[] buffer = getHeapBuffer();
+        try (InputStream in = Files.newInputStream(path))  {
+            int read;
+            while ((read = in.read(buffer)) != -1)  {
+                checkInterrupted();
+                for (MessageDigest md : mds)  {
+                    md.update(buffer, 0, read);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reads the File through the Direct Buffer of the current Thread.
+     * 
+     * @param channel
+     *            Channel of the File to read
+     * @param mds
+     *            Digests to update
+     * @throws IOException
+     *             When the File couldn't be read
+     */
+    private void readDirect(FileChannel channel, MessageDigest[] mds) throws IOException {
+        ByteBuffer buffer = getDirectBuffer();
+        buffer.clear();
+        while (channel.read(buffer) != -1)  {
+            buffer.flip();
+            update(buffer, mds);
+            buffer.clear();
+        }
+    }
+    
+    /**
+     * Maps the File Window by Window and feeds every Window to the Digest.
+     * 
+     * @param channel
+     *            Channel of the File to read
+     * @param mds
+     *            Digests to update
+     * @throws IOException
+     *             When the File couldn't be mapped, got truncated while it was read or the Thread got interrupted
+     */
+    private void readMapped(FileChannel channel, MessageDigest[] mds) throws IOException {
+        long size = channel.size();
+        for (long position = 0; position < size; position += MAPPING_WINDOW_SIZE)  {
+            checkInterrupted();
+            MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, Math.min(MAPPING_WINDOW_SIZE, size - position));
+            try {
+                update(window, mds);
+            } catch (InternalError e) {
+                throw truncated(position, e);
+            }
+        }
+    }
+    
+    /**
+     * Reads a Range of a File through the Direct Buffer of the current Thread. Uses positional Reads,
+     * so several Threads can read different Ranges of the same Channel at the same Time.
+     * 
+     * @param channel
+     *            Channel of the File to read
+     * @param position
+     *            Start of the Range
+     * @param length
+     *            Length of the Range in Bytes
+     * @param mds
+     *            Digests to update
+     * @throws IOException
+     *             When the Range couldn't be read, e.g. because the File got shorter
+     */
+    void readRange(FileChannel channel, long position, long length, MessageDigest[] mds) throws IOException {
+        ByteBuffer buffer = getDirectBuffer();
+        long end = position + length;
+        while (position < end)  {
+            buffer.clear();
+            if (end - position < buffer.capacity())  {
+                buffer.limit((int) (end - position));
+            }
+            int read = channel.read(buffer, position);
+            if (read == -1)  {
+                throw new EOFException(String.format("The file ended at %d instead of %d!", position, end));
+            }
+            position += read;
+            buffer.flip();
+            update(buffer, mds);
+        }
+    }
+    
+    /**
+     * Reads from a Channel until the Buffer is full or the File ended.
+     * 
+     * @param channel
+     *            Channel of the File to read
+     * @param buffer
+     *            Buffer to fill
+     * @return <code>true</code> if the Buffer got filled, <code>false</code> if the File ended before
+     * @throws IOException
+     *             When the File couldn't be read
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())  {
+            if (channel.read(buffer) == -1)  {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Turns the Error of reading a mapped Page behind the End of the File into an Exception. The JVM throws it on the
+     * SIGBUS of such a Page, e.g. because the File got truncated while it was mapped.
+     * 
+     * @param position
+     *            Start of the mapped Window
+     * @param error
+     *            Error thrown by the JVM
+     * @return the Exception to throw
+     */
+    private static IOException truncated(long position, InternalError error) {
+        return new IOException(String.format("The file got truncated while it was read at %d!", position), error);
+    }
+    
+    /**
+     * Stops reading a File as soon as the Thread got interrupted, e.g. because the Run got cancelled.
+     * Reading through a File Channel stops on its own.
+     * 
+     * @throws InterruptedIOException
+     *             When the current Thread got interrupted
+     */
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted())  {
+            throw new InterruptedIOException("Reading got interrupted!");
+        }
+    }
+    
+    /**
+     * Feeds the remaining Bytes of a Buffer into every Digest.
+     * 
+     * @param buffer
+     *            Buffer to consume
+     * @param mds
+     *            Digests to update
+     */
+    private static void update(ByteBuffer buffer, MessageDigest[] mds) {
+        int start = buffer.position();
+        for (MessageDigest md : mds)  {
+            buffer.position(start);
+            md.update(buffer);
+        }
+    }
+    
+    /**
+     * Returns the Heap Buffer of the current Thread. Gets re-created if the Buffer Size changed.
+     * 
+     * @return the Heap Buffer of the current Thread
+     */
+    private byte[] getHeapBuffer() {
+        byte[] buffer = heapBuffers.get();
+        int size = bufferSize;
+        if (buffer == null || buffer.length != size)  {
+            buffer = new byte[size];
+            heapBuffers.set(buffer);
+        }
+        return buffer;
+    }
+    
+    /**
+     * Returns the Direct Buffer of the current Thread. Gets re-created if the Buffer Size changed.
+     * 
+     * @return the Direct Buffer of the current Thread
+     */
+    private ByteBuffer getDirectBuffer() {
+        ByteBuffer buffer = directBuffers.get();
+        int size = bufferSize;
+        if (buffer == null || buffer.capacity() != size)  {
+            buffer = ByteBuffer.allocateDirect(size);
+            directBuffers.set(buffer);
+        }
+        return buffer;
+    }
+    
+    /**
+     * Returns the Buffers of the current Thread to hand to a Digest Worker. Get re-created if the Buffer Size or
+     * the Kind of the Buffers changed.
+     * 
+     * @param direct
+     *            Whether Direct Buffers are needed
+     * @return the Buffers of the current Thread
+     */
+    private ByteBuffer[] getHandoffBuffers(boolean direct) {
+        ByteBuffer[] buffers = handoffBuffers.get();
+        int size = bufferSize;
+        if (buffers == null || buffers[0].capacity() != size || buffers[0].isDirect() != direct)  {
+            buffers = new ByteBuffer[HANDOFF_BUFFERS];
+            for (int i = 0; i < buffers.length; i++)  {
+                buffers[i] = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+            }
+            handoffBuffers.set(buffers);
+        }
+        return buffers;
+    }
+    
+    /**
+     * Passes the Buffers of one File from the Reader to a Digest Worker and back. The Reader only digests the Buffers
+     * itself if the Digest Worker got rejected, so no more Files are digested at once than the Digester allows.
+     */
+    private static final class Handoff implements Runnable {
+        
+        /**
+         * Marks the End of the File for the Digest Worker.
+         */
+        private static final ByteBuffer END_OF_FILE = ByteBuffer.allocate(0);
+        
+        /**
+         * Time in Milliseconds the Reader waits for a free Buffer before checking the Digest Worker again.
+         */
+        private static final long POLL_TIMEOUT = 100;
+        
+        /**
+         * Digests to update.
+         */
+        private final MessageDigest[] mds;
+        
+        /**
+         * Buffers waiting to be digested.
+         */
+        private final BlockingQueue<ByteBuffer> filled;
+        
+        /**
+         * Buffers waiting to be filled.
+         */
+        private final BlockingQueue<ByteBuffer> free;
+        
+        /**
+         * Whether the Digest Worker started or the Reader took over, so a Digest Worker starting afterwards does nothing.
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        
+        /**
+         * Released once the Digest Worker stopped.
+         */
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        
+        /**
+         * Whether the Digest Worker digested the whole File.
+         */
+        private volatile boolean complete = false;
+        
+        /**
+         * Error of the Digest Worker, e.g. because the File got truncated while it was mapped.
+         */
+        private volatile IOException failure;
+        
+        /**
+         * Whether the Reader digests the Buffers itself. Only used by the Reader.
+         */
+        private boolean inline = false;
+        
+        /**
+         * Creates a new Handoff.
+         * 
+         * @param mds
+         *            Digests to update
+         * @param free
+         *            Buffers to fill, besides the one the Reader already holds
+         */
+        private Handoff(MessageDigest[] mds, Collection<ByteBuffer> free) {
+            this.mds = mds;
+            this.filled = new ArrayBlockingQueue<>(free.size() + 2);
+            this.free = new ArrayBlockingQueue<>(free.size() + 1, false, free);
+        }
+        
+        /**
+         * Creates a new Handoff and starts its Digest Worker.
+         * 
+         * @param mds
+         *            Digests to update
+         * @param free
+         *            Buffers to fill, besides the one the Reader already holds
+         * @param digester
+         *            Runs the Digest Worker
+         * @return the Handoff
+         */
+        private static Handoff start(MessageDigest[] mds, Collection<ByteBuffer> free, Executor digester) {
+            Handoff handoff = new Handoff(mds, free);
+            try {
+                digester.execute(handoff);
+            } catch (RejectedExecutionException e) {  // e.g. shut down, so nobody else is left to digest
+                handoff.claimed.set(true);
+                handoff.inline = true;
+            }
+            return handoff;
+        }
+        
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true))  {  // the Reader gave up before
+                return;
+            }
+            try {
+                ByteBuffer buffer;
+                while ((buffer = filled.take()) != END_OF_FILE)  {
+                    digest(buffer);
+                    free.add(buffer);
+                }
+                complete = true;
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stopped.countDown();
+            }
+        }
+        
+        /**
+         * Hands a filled Buffer to the Digest Worker.
+         * 
+         * @param buffer
+         *            Buffer to digest, positioned at its first Byte
+         */
+        private void hand(ByteBuffer buffer) {
+            filled.add(buffer);
+        }
+        
+        /**
+         * Returns a Buffer to fill. Blocks until the Digest Worker freed one.
+         * 
+         * @return the Buffer
+         * @throws IOException
+         *             When the Reader or the Digest Worker got interrupted or the Digest Worker failed
+         */
+        private ByteBuffer nextBuffer() throws IOException {
+            ByteBuffer buffer = free.poll();
+            if (buffer == null && inline)  {
+                digestFilled();
+                buffer = free.poll();
+            }
+            try {
+                while (buffer == null)  {
+                    if (stopped.getCount() == 0)  {
+                        throw failure != null ? failure : new InterruptedIOException("Digesting got interrupted!");
+                    }
+                    buffer = free.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Reading got interrupted!");
+            }
+            return buffer;
+        }
+        
+        /**
+         * Marks the End of the File and waits until the Digest Worker stopped, so the Buffers and Digests can be reused.
+         * 
+         * @param read
+         *            Whether the whole File got handed, else the remaining Buffers don't have to be digested
+         * @throws IOException
+         *             When the Digest Worker got interrupted or failed before it digested the whole File
+         */
+        private void finish(boolean read) throws IOException {
+            filled.add(END_OF_FILE);
+            if (inline || claimed.compareAndSet(false, true))  {  // the Digest Worker never started
+                if (read)  {
+                    digestFilled();
+                }
+                return;
+            }
+            boolean interrupted = false;
+            while (stopped.getCount() > 0)  {
+                try {
+                    stopped.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;  // the Digest Worker stops soon, the Buffers can't be reused before
+                }
+            }
+            if (interrupted)  {
+                Thread.currentThread().interrupt();
+            }
+            if (read && !complete)  {
+                throw failure != null ? failure : new InterruptedIOException("Digesting got interrupted!");
+            }
+        }
+        
+        /**
+         * Digests every filled Buffer on the Reader Thread.
+         * 
+         * @throws IOException
+         *             When a mapped Window couldn't be read
+         */
+        private void digestFilled() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = filled.poll()) != null && buffer != END_OF_FILE)  {
+                digest(buffer);
+                free.add(buffer);
+            }
+        }
+        
+        /**
+         * Feeds a Buffer into every Digest.
+         * 
+         * @param buffer
+         *            Buffer to consume
+         * @throws IOException
+         *             When a mapped Window couldn't be read
+         */
+        private void digest(ByteBuffer buffer) throws IOException {
+            try {
+                update(buffer, mds);
+            } catch (InternalError e) {
+                throw new IOException("The file got truncated while it was read!", e);
+            }
+        }
+        
+    }
+    
+}
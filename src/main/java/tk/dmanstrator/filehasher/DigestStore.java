@@ -0,0 +1,417 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Compact Store for the Digests of many Files. Instead of one File Object and one hexadecimal String per File,
+ * the raw Digests are kept back to back in a single Byte Array and the Paths relative to the hashed Folder
+ * are kept as UTF-8 Bytes in another one. Hashes are only encoded when they are requested.
+ * 
+ * @author DManstrator
+ *
+ * @see Hasher#getDigestStore(File)
+ */
+public final class DigestStore {
+    
+    /**
+     * Initial Amount of Entries the Arrays are sized for.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    /**
+     * Maximum Size of an Array.
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    
+    /**
+     * Folder the Paths are relative to.
+     */
+    private final Path root;
+    
+    /**
+     * Algorithm the Digests were computed with.
+     */
+    private final String algorithm;
+    
+    /**
+     * Length of every Digest in Bytes.
+     */
+    private final int digestLength;
+    
+    /**
+     * Digests back to back, the Digest of Entry <code>i</code> starts at <code>i * digestLength</code>.
+     */
+    private byte[] digests;
+    
+    /**
+     * Relative Paths as UTF-8 Bytes back to back.
+     */
+    private byte[] paths;
+    
+    /**
+     * Start of every Path within {@link #paths}, the Entry behind the last one marks the End of the last Path.
+     */
+    private int[] pathOffsets;
+    
+    /**
+     * Amount of Entries.
+     */
+    private int size;
+    
+    /**
+     * Amount of Files which couldn't be hashed.
+     */
+    private int failed;
+    
+    /**
+     * Open-addressed Hash Table of the Paths holding the Index of an Entry plus one, built on the first Lookup.
+     */
+    private int[] lookupTable;
+    
+    /**
+     * Creates an empty Store.
+     * 
+     * @param root
+     *            Folder the Paths are relative to
+     * @param algorithm
+     *            Algorithm the Digests are computed with
+     * @param digestLength
+     *            Length of every Digest in Bytes
+     */
+    DigestStore(Path root, String algorithm, int digestLength) {
+        this.root = root;
+        this.algorithm = algorithm;
+        this.digestLength = digestLength;
+        this.digests = new byte[INITIAL_CAPACITY * digestLength];
+        this.paths = new byte[INITIAL_CAPACITY * 32];
+        this.pathOffsets = new int[INITIAL_CAPACITY + 1];
+    }
+    
+    /**
+     * Adds the Digest of a File.
+     * 
+     * @param file
+     *            File below the Root
+     * @param digest
+     *            Digest of the File
+     * @throws IllegalArgumentException
+     *             When the Digest has the wrong Length
+     * @throws IllegalStateException
+     *             When the Store can't grow anymore
+     */
+    synchronized void add(File file, byte[] digest) throws IllegalArgumentException, IllegalStateException {
+        if (digest.length != digestLength)  {
+            throw new IllegalArgumentException(String.format("Digest must have %d bytes but had %d!", digestLength, digest.length));
+        }
+        byte[] path = root.relativize(file.toPath()).toString().getBytes(StandardCharsets.UTF_8);
+        if (size + 1 >= pathOffsets.length)  {
+            int capacity = grow(pathOffsets.length, size + 2, MAX_ARRAY_SIZE / digestLength);
+            pathOffsets = Arrays.copyOf(pathOffsets, capacity);
+            digests = Arrays.copyOf(digests, capacity * digestLength);
+        }
+        int start = pathOffsets[size];
+        if ((long) start + path.length > paths.length)  {
+            paths = Arrays.copyOf(paths, grow(paths.length, (long) start + path.length, MAX_ARRAY_SIZE));
+        }
+        System.arraycopy(path, 0, paths, start, path.length);
+        System.arraycopy(digest, 0, digests, size * digestLength, digestLength);
+        pathOffsets[++size] = start + path.length;
+        lookupTable = null;
+    }
+    
+    /**
+     * Counts a File which couldn't be hashed.
+     */
+    synchronized void addFailure() {
+        failed++;
+    }
+    
+    /**
+     * Releases the unused Capacity of the Arrays once every File is added.
+     */
+    synchronized void trim() {
+        digests = Arrays.copyOf(digests, size * digestLength);
+        paths = Arrays.copyOf(paths, pathOffsets[size]);
+        pathOffsets = Arrays.copyOf(pathOffsets, size + 1);
+    }
+    
+    /**
+     * Returns the Folder the Paths are relative to.
+     * 
+     * @return the hashed Folder
+     */
+    public Path getRoot() {
+        return root;
+    }
+    
+    /**
+     * Returns the Algorithm the Digests were computed with.
+     * 
+     * @return the Name of the Algorithm
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+    
+    /**
+     * Returns the Length of every Digest.
+     * 
+     * @return the Length in Bytes
+     */
+    public int getDigestLength() {
+        return digestLength;
+    }
+    
+    /**
+     * Returns the Amount of hashed Files.
+     * 
+     * @return the Amount of Entries
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the Amount of Files which couldn't be hashed and aren't part of the Store.
+     * 
+     * @return the Amount of failed Files
+     */
+    public synchronized int getFailedCount() {
+        return failed;
+    }
+    
+    /**
+     * Returns the Path of an Entry relative to the Root.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @return the relative Path
+     * @throws IndexOutOfBoundsException
+     *             When there is no Entry with the Index
+     */
+    public synchronized String getPath(int index) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        return new String(paths, pathOffsets[index], pathOffsets[index + 1] - pathOffsets[index], StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Returns the File of an Entry.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @return the File below the Root
+     * @throws IndexOutOfBoundsException
+     *             When there is no Entry with the Index
+     */
+    public File getFile(int index) throws IndexOutOfBoundsException {
+        return root.resolve(getPath(index)).toFile();
+    }
+    
+    /**
+     * Returns the Digest of an Entry.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @return a Copy of the Digest
+     * @throws IndexOutOfBoundsException
+     *             When there is no Entry with the Index
+     */
+    public byte[] getDigest(int index) throws IndexOutOfBoundsException {
+        byte[] digest = new byte[digestLength];
+        copyDigest(index, digest, 0);
+        return digest;
+    }
+    
+    /**
+     * Copies the Digest of an Entry into an Array without allocating anything.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @param target
+     *            Receives the Digest
+     * @param offset
+     *            Index within the Target the Digest starts at
+     * @throws IndexOutOfBoundsException
+     *             When there is no Entry with the Index or the Target is too small
+     */
+    public synchronized void copyDigest(int index, byte[] target, int offset) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        System.arraycopy(digests, index * digestLength, target, offset, digestLength);
+    }
+    
+    /**
+     * Returns the Hash of an Entry.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @return the Digest as a lowercase hexadecimal String
+     * @throws IndexOutOfBoundsException
+     *             When there is no Entry with the Index
+     */
+    public String getHash(int index) throws IndexOutOfBoundsException {
+        char[] chars = new char[digestLength * 2];
+        copyHash(index, chars, 0);
+        return new String(chars);
+    }
+    
+    /**
+     * Writes the Hash of an Entry into an Array without allocating anything.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @param target
+     *            Receives two Characters per Byte of the Digest
+     * @param offset
+     *            Index within the Target the Hash starts at
+     * @throws IndexOutOfBoundsException
+     *             When there is no Entry with the Index or the Target is too small
+     */
+    public synchronized void copyHash(int index, char[] target, int offset) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        if (offset < 0 || offset + digestLength * 2 > target.length)  {
+            throw new IndexOutOfBoundsException(String.format("Target has no room for %d characters at %d!", digestLength * 2, offset));
+        }
+        Hex.encode(digests, index * digestLength, digestLength, target, offset);
+    }
+    
+    /**
+     * Finds the Entry of a Path.
+     * 
+     * @param relativePath
+     *            Path relative to the Root
+     * @return the Index of the Entry or <code>-1</code> if the Path isn't part of the Store
+     */
+    public synchronized int indexOf(String relativePath) {
+        byte[] path = relativePath.getBytes(StandardCharsets.UTF_8);
+        int[] table = getLookupTable();
+        int mask = table.length - 1;
+        for (int slot = hash(path, 0, path.length) & mask; table[slot] != 0; slot = (slot + 1) & mask)  {
+            int index = table[slot] - 1;
+            int start = pathOffsets[index];
+            int length = pathOffsets[index + 1] - start;
+            if (length == path.length && rangeEquals(paths, start, path, length))  {
+                return index;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the Hash of a File.
+     * 
+     * @param file
+     *            File below the Root
+     * @return the Hash or <code>null</code> if the File isn't part of the Store
+     */
+    public String getHash(File file) {
+        int index = indexOf(root.relativize(file.toPath()).toString());
+        return index != -1 ? getHash(index) : null;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("%d digests (%s) of %s, %d failed", size, algorithm, root, failed);
+    }
+    
+    /**
+     * Returns the Hash Table of the Paths and builds it if necessary.
+     * 
+     * @return the Hash Table
+     */
+    private int[] getLookupTable() {
+        if (lookupTable == null)  {
+            int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;  // at most half full
+            int[] table = new int[capacity];
+            int mask = capacity - 1;
+            for (int index = 0; index < size; index++)  {
+                int start = pathOffsets[index];
+                int slot = hash(paths, start, pathOffsets[index + 1] - start) & mask;
+                while (table[slot] != 0)  {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = index + 1;
+            }
+            lookupTable = table;
+        }
+        return lookupTable;
+    }
+    
+    /**
+     * Checks whether an Entry exists.
+     * 
+     * @param index
+     *            Index of the Entry
+     * @throws IndexOutOfBoundsException
+     *             When there is no Entry with the Index
+     */
+    private void checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size)  {
+            throw new IndexOutOfBoundsException(String.format("Index %d is out of bounds for %d entries!", index, size));
+        }
+    }
+    
+    /**
+     * Computes a new Capacity for an Array.
+     * 
+     * @param current
+     *            Current Capacity
+     * @param needed
+     *            Needed Capacity
+     * @param max
+     *            Maximum Capacity
+     * @return the new Capacity
+     * @throws IllegalStateException
+     *             When the needed Capacity exceeds the Maximum
+     */
+    private static int grow(int current, long needed, int max) throws IllegalStateException {
+        if (needed > max)  {
+            throw new IllegalStateException("Too many files for a single digest store!");
+        }
+        return (int) Math.min(max, Math.max(needed, current * 2L));
+    }
+    
+    /**
+     * Computes the Hash Code of a Range of Bytes.
+     * 
+     * @param bytes
+     *            Array containing the Range
+     * @param offset
+     *            Start of the Range
+     * @param length
+     *            Length of the Range
+     * @return the Hash Code, spread over all Bits
+     */
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++)  {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+    
+    /**
+     * Compares a Range of Bytes with the Start of another Array.
+     * 
+     * @param bytes
+     *            Array containing the Range
+     * @param offset
+     *            Start of the Range
+     * @param other
+     *            Array to compare with
+     * @param length
+     *            Length of the Range
+     * @return <code>true</code> if both are equal
+     */
+    private static boolean rangeEquals(byte[] bytes, int offset, byte[] other, int length) {
+        for (int i = 0; i < length; i++)  {
+            if (bytes[offset + i] != other[i])  {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+}
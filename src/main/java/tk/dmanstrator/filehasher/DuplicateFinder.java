@@ -0,0 +1,215 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Finds Files with the same Content in stages, so only few Files have to be hashed completely:
+ * <ol>
+ * <li>Files are grouped by their Size, Files with a unique Size can't have a Duplicate.</li>
+ * <li>Big Files of the same Size are compared by a cheap CRC32 of their first and last Block.</li>
+ * <li>Only the remaining Candidates get a full Hash.</li>
+ * </ol>
+ * 
+ * @author DManstrator
+ *
+ */
+final class DuplicateFinder {
+    
+    /**
+     * Size of the first and the last Block which are used for the partial Hash.
+     */
+    static final int PARTIAL_BLOCK_SIZE = 4096;
+    
+    /**
+     * Computes the full Hash of a File, the first Hash is used.
+     */
+    private final Function<File, HashResult> hashFunction;
+    
+    /**
+     * Pool to compute the Hashes in, <code>null</code> to compute them on the calling Thread.
+     */
+    private final ExecutorService pool;
+    
+    /**
+     * Selects the Files to compare and the Folders to enter.
+     */
+    private final HashFilter filter;
+    
+    /**
+     * Creates a new Duplicate Finder.
+     * 
+     * @param hashFunction
+     *            Computes the full Hash of a File
+     * @param pool
+     *            Pool to compute the Hashes in, <code>null</code> to compute them on the calling Thread
+     * @param filter
+     *            Selects the Files to compare and the Folders to enter
+     */
+    DuplicateFinder(Function<File, HashResult> hashFunction, ExecutorService pool, HashFilter filter) {
+        this.hashFunction = hashFunction;
+        this.pool = pool;
+        this.filter = filter;
+    }
+    
+    /**
+     * Finds all Files below the given Directory which have the same Content. Files which couldn't be read are left out.
+     * 
+     * @param root
+     *            Directory to search
+     * @return the Groups of Files with the same Content by their full Hash, biggest Files first
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     * @throws IllegalStateException
+     *             When a Worker failed unexpectedly
+     */
+    Map<String, List<File>> find(Path root) throws CancellationException, IllegalStateException {
+        // Stage 1: Size, biggest first so the Result lists the Groups wasting the most Space first
+        Map<Long, List<File>> bySize = new TreeMap<>(Collections.reverseOrder());
+        HashPipeline.walk(root, filter, (file, attrs) ->  {
+            bySize.computeIfAbsent(attrs.size(), size -> new ArrayList<>()).add(file);
+            return true;
+        }, failure ->  { });
+        if (Thread.currentThread().isInterrupted())  {  // the Walk stopped early, so the Groups would be incomplete
+            throw new CancellationException("Finding duplicates got cancelled!");
+        }
+        
+        Map<String, List<File>> duplicates = new LinkedHashMap<>();
+        for (Map.Entry<Long, List<File>> sizeGroup : bySize.entrySet())  {
+            List<File> files = sizeGroup.getValue();
+            if (files.size() < 2)  {
+                continue;
+            }
+            
+            // Stage 2: partial Hash, only worth it if the File is bigger than the partial Blocks
+            List<List<File>> candidates = new ArrayList<>();
+            if (sizeGroup.getKey() > 2L * PARTIAL_BLOCK_SIZE)  {
+                candidates.addAll(group(files, DuplicateFinder::getPartialHash).values());
+            }  else  {
+                candidates.add(files);
+            }
+            
+            // Stage 3: full Hash for the remaining Candidates
+            for (List<File> candidate : candidates)  {
+                if (candidate.size() < 2)  {
+                    continue;
+                }
+                Map<String, List<File>> byHash = group(candidate, file ->  {
+                    HashResult result = hashFunction.apply(file);
+                    return result.isSuccessful() ? result.getHash() : null;
+                });
+                byHash.forEach((hash, group) ->  {
+                    if (group.size() > 1)  {
+                        duplicates.put(hash, group);
+                    }
+                });
+            }
+        }
+        return duplicates;
+    }
+    
+    /**
+     * Groups Files by a computed Key. The Keys are computed in the Pool if one is available.
+     * 
+     * @param files
+     *            Files to group
+     * @param keyFunction
+     *            Computes the Key of a File, returns <code>null</code> if the File should be left out
+     * @return the Files grouped by their Key in the Order they were given
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     * @throws IllegalStateException
+     *             When a Worker failed unexpectedly
+     */
+    private <T> Map<T, List<File>> group(List<File> files, Function<File, T> keyFunction) throws CancellationException, IllegalStateException {
+        List<T> keys = new ArrayList<>(files.size());
+        if (pool == null)  {
+            files.forEach(file -> keys.add(keyFunction.apply(file)));
+            if (Thread.currentThread().isInterrupted())  {  // the Files after the Interrupt couldn't be read
+                throw new CancellationException("Finding duplicates got cancelled!");
+            }
+        }  else  {
+            List<Callable<T>> tasks = new ArrayList<>(files.size());
+            files.forEach(file -> tasks.add(() -> keyFunction.apply(file)));
+            try {
+                for (Future<T> future : pool.invokeAll(tasks))  {
+                    keys.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Finding duplicates got cancelled!");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A Worker failed unexpectedly!", e.getCause());
+            }
+        }
+        
+        Map<T, List<File>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++)  {
+            T key = keys.get(i);
+            if (key != null)  {
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(files.get(i));
+            }
+        }
+        return groups;
+    }
+    
+    /**
+     * Computes a cheap CRC32 of the first and the last Block of a File.
+     * 
+     * @param file
+     *            File to get the partial Hash from
+     * @return the partial Hash or <code>null</code> if the File couldn't be read
+     */
+    private static Long getPartialHash(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))  {
+            ByteBuffer buffer = ByteBuffer.allocate(PARTIAL_BLOCK_SIZE);
+            CRC32 crc = new CRC32();
+            readBlock(channel, 0, buffer);
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.clear();
+            readBlock(channel, channel.size() - PARTIAL_BLOCK_SIZE, buffer);
+            crc.update(buffer.array(), 0, buffer.position());
+            return crc.getValue();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Reads a Block of a File until the Buffer is full or the File ends.
+     * 
+     * @param channel
+     *            Channel of the File
+     * @param position
+     *            Position of the Block
+     * @param buffer
+     *            Buffer to fill
+     * @throws IOException
+     *             When the Block couldn't be read
+     */
+    private static void readBlock(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())  {
+            if (channel.read(buffer, position + buffer.position()) <= 0)  {
+                break;
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,339 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts Lines by a Key without keeping all of them in Memory. Lines are collected up to a fixed
+ * Amount, sorted and spilled into temporary Files, which are merged at the End.
+ * 
+ * @author DManstrator
+ *
+ */
+final class ExternalSorter implements AutoCloseable {
+    
+    /**
+     * Default Amount of Lines kept in Memory before they are spilled to Disk.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 100_000;
+    
+    /**
+     * Orders the Entries by their Key.
+     */
+    private static final Comparator<Entry> ORDER = Comparator.comparing((Entry entry) -> entry.key);
+    
+    /**
+     * Amount of Lines kept in Memory before they are spilled to Disk.
+     */
+    private final int chunkSize;
+    
+    /**
+     * Lines which aren't spilled yet.
+     */
+    private final List<Entry> chunk = new ArrayList<>();
+    
+    /**
+     * Spilled and sorted Chunks.
+     */
+    private final List<Path> spills = new ArrayList<>();
+    
+    /**
+     * Creates a new Sorter which spills every {@value #DEFAULT_CHUNK_SIZE} Lines.
+     */
+    ExternalSorter() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+    
+    /**
+     * Creates a new Sorter.
+     * 
+     * @param chunkSize
+     *            Amount of Lines kept in Memory before they are spilled to Disk
+     */
+    ExternalSorter(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Adds a Line.
+     * 
+     * @param key
+     *            Key to sort the Line by
+     * @param line
+     *            Line to add
+     * @throws IOException
+     *             When the Chunk couldn't be spilled
+     */
+    void add(String key, String line) throws IOException {
+        chunk.add(new Entry(key, line));
+        if (chunk.size() >= chunkSize)  {
+            spill();
+        }
+    }
+    
+    /**
+     * Passes all added Lines in sorted Order to the given Consumer.
+     * 
+     * @param consumer
+     *            Receives the sorted Lines
+     * @throws IOException
+     *             When a spilled Chunk couldn't be read or the Consumer failed
+     */
+    void merge(LineConsumer consumer) throws IOException {
+        try (Cursor cursor = open())  {
+            String line;
+            while ((line = cursor.next()) != null)  {
+                consumer.accept(line);
+            }
+        }
+    }
+    
+    /**
+     * Opens a Cursor over all added Lines in sorted Order, so several sorted Inputs can be read side by side.
+     * No further Lines may be added afterwards.
+     * 
+     * @return the Cursor, has to be closed
+     * @throws IOException
+     *             When a spilled Chunk couldn't be read
+     */
+    Cursor open() throws IOException {
+        if (spills.isEmpty())  {  // everything fits into Memory
+            chunk.sort(ORDER);
+            return new Cursor(chunk, Collections.emptyList());
+        }
+        if (!chunk.isEmpty())  {
+            spill();
+        }
+        
+        List<DataInputStream> inputs = new ArrayList<>(spills.size());
+        try {
+            for (Path spill : spills)  {
+                inputs.add(new DataInputStream(new BufferedInputStream(Files.newInputStream(spill))));
+            }
+            return new Cursor(Collections.emptyList(), inputs);
+        } catch (IOException e) {
+            for (DataInputStream in : inputs)  {
+                in.close();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Deletes all spilled Chunks.
+     */
+    @Override
+    public void close() throws IOException {
+        chunk.clear();
+        for (Path spill : spills)  {
+            Files.deleteIfExists(spill);
+        }
+        spills.clear();
+    }
+    
+    /**
+     * Sorts the current Chunk and writes it into a temporary File.
+     * 
+     * @throws IOException
+     *             When the temporary File couldn't be written
+     */
+    private void spill() throws IOException {
+        chunk.sort(ORDER);
+        Path spill = Files.createTempFile("file-hasher-sort", ".tmp");
+        spills.add(spill);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spill))))  {
+            for (Entry entry : chunk)  {
+                out.writeUTF(entry.key);
+                out.writeUTF(entry.line);
+            }
+        }
+        chunk.clear();
+    }
+    
+    /**
+     * Reads the next Entry of a spilled Chunk.
+     * 
+     * @param in
+     *            Spilled Chunk
+     * @return the next Entry or <code>null</code> if the Chunk is exhausted
+     * @throws IOException
+     *             When the Chunk couldn't be read
+     */
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        String key;
+        try {
+            key = in.readUTF();
+        } catch (EOFException e) {
+            return null;
+        }
+        return new Entry(key, in.readUTF());
+    }
+    
+    /**
+     * Receives the sorted Lines.
+     */
+    @FunctionalInterface
+    interface LineConsumer {
+        
+        /**
+         * Receives a Line.
+         * 
+         * @param line
+         *            the Line
+         * @throws IOException
+         *             When the Line couldn't be processed
+         */
+        void accept(String line) throws IOException;
+        
+    }
+    
+    /**
+     * Reads the sorted Lines one by one, either from Memory or merged from the spilled Chunks.
+     */
+    static final class Cursor implements AutoCloseable {
+        
+        /**
+         * Sorted Lines kept in Memory.
+         */
+        private final List<Entry> entries;
+        
+        /**
+         * Index of the next Line kept in Memory.
+         */
+        private int index = 0;
+        
+        /**
+         * Opened spilled Chunks.
+         */
+        private final List<DataInputStream> inputs;
+        
+        /**
+         * Current first Entries of the spilled Chunks, <code>null</code> until the first Line is read.
+         */
+        private PriorityQueue<Head> heads;
+        
+        /**
+         * Creates a new Cursor.
+         * 
+         * @param entries
+         *            Sorted Lines kept in Memory
+         * @param inputs
+         *            Opened spilled Chunks
+         */
+        private Cursor(List<Entry> entries, List<DataInputStream> inputs) {
+            this.entries = entries;
+            this.inputs = inputs;
+        }
+        
+        /**
+         * Reads the next Line.
+         * 
+         * @return the next Line in sorted Order or <code>null</code> if all Lines are read
+         * @throws IOException
+         *             When a spilled Chunk couldn't be read
+         */
+        String next() throws IOException {
+            if (index < entries.size())  {
+                return entries.get(index++).line;
+            }
+            if (heads == null)  {
+                heads = new PriorityQueue<>(Math.max(inputs.size(), 1), Comparator.comparing((Head head) -> head.entry, ORDER));
+                for (DataInputStream in : inputs)  {
+                    Entry entry = readEntry(in);
+                    if (entry != null)  {
+                        heads.add(new Head(entry, in));
+                    }
+                }
+            }
+            Head head = heads.poll();
+            if (head == null)  {
+                return null;
+            }
+            Entry next = readEntry(head.input);
+            if (next != null)  {
+                heads.add(new Head(next, head.input));
+            }
+            return head.entry.line;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            for (DataInputStream in : inputs)  {
+                in.close();
+            }
+        }
+        
+    }
+    
+    /**
+     * Line with its Sort Key.
+     */
+    private static final class Entry {
+        
+        /**
+         * Key to sort by.
+         */
+        private final String key;
+        
+        /**
+         * The Line itself.
+         */
+        private final String line;
+        
+        /**
+         * Creates a new Entry.
+         * 
+         * @param key
+         *            Key to sort by
+         * @param line
+         *            The Line itself
+         */
+        private Entry(String key, String line) {
+            this.key = key;
+            this.line = line;
+        }
+        
+    }
+    
+    /**
+     * Current first Entry of a spilled Chunk while merging.
+     */
+    private static final class Head {
+        
+        /**
+         * Current first Entry.
+         */
+        private final Entry entry;
+        
+        /**
+         * Chunk the Entry comes from.
+         */
+        private final DataInputStream input;
+        
+        /**
+         * Creates a new Head.
+         * 
+         * @param entry
+         *            Current first Entry
+         * @param input
+         *            Chunk the Entry comes from
+         */
+        private Head(Entry entry, DataInputStream input) {
+            this.entry = entry;
+            this.input = input;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,285 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent Cache of computed Hashes. An Entry is keyed by the Path of the File and remembers its Size,
+ * Modification Time and File Key (e.g. the Inode). As long as these don't change, the cached Hash gets
+ * used and the File doesn't have to be read again. Only Entries of Files seen during the current Run
+ * are saved, so Entries of deleted Files get evicted automatically.
+ * 
+ * @author DManstrator
+ *
+ */
+final class HashCache {
+    
+    /**
+     * Identifies a Cache File.
+     */
+    private static final int MAGIC = 0x46484331;  // "FHC1"
+    
+    /**
+     * Version of the Cache Format.
+     */
+    private static final int VERSION = 2;
+    
+    /**
+     * Location of the Cache File.
+     */
+    private final Path cacheFile;
+    
+    /**
+     * Describes what the cached Hashes were computed with, e.g. the Root and the Algorithms.
+     * A Cache File with another Description is ignored.
+     */
+    private final String description;
+    
+    /**
+     * Entries loaded from the Cache File.
+     */
+    private final Map<String, Entry> previous;
+    
+    /**
+     * Entries of the current Run, these are saved.
+     */
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    
+    /**
+     * Creates a Cache and loads the existing Entries. A missing, foreign or broken Cache File results in an empty Cache.
+     * 
+     * @param cacheFile
+     *            Location of the Cache File
+     * @param description
+     *            Describes what the cached Hashes were computed with
+     */
+    HashCache(Path cacheFile, String description) {
+        this.cacheFile = cacheFile;
+        this.description = description;
+        this.previous = load();
+    }
+    
+    /**
+     * Returns the Location of the Cache File.
+     * 
+     * @return the Cache File
+     */
+    Path getFile() {
+        return cacheFile;
+    }
+    
+    /**
+     * Returns the Location the Cache File is written to before it replaces the old one.
+     * 
+     * @return the temporary Cache File
+     */
+    Path getPartFile() {
+        return cacheFile.resolveSibling(cacheFile.getFileName() + Hasher.PART_SUFFIX);
+    }
+    
+    /**
+     * Returns the cached Hashes of a File if its Metadata didn't change.
+     * 
+     * @param file
+     *            File to look up
+     * @param attrs
+     *            Current Attributes of the File
+     * @return the cached Hashes in the Order of the Algorithms or <code>null</code> if the File is unknown or changed
+     */
+    String[] lookup(File file, BasicFileAttributes attrs) {
+        String key = file.getPath();
+        Entry entry = previous.get(key);
+        if (entry == null || !entry.matches(attrs))  {
+            return null;
+        }
+        current.put(key, entry);
+        return entry.hashes.clone();
+    }
+    
+    /**
+     * Stores the computed Hashes of a File.
+     * 
+     * @param file
+     *            Hashed File
+     * @param attrs
+     *            Attributes of the File at the Time it got hashed
+     * @param hashes
+     *            Computed Hashes in the Order of the Algorithms
+     */
+    void store(File file, BasicFileAttributes attrs, String[] hashes) {
+        current.put(file.getPath(), new Entry(attrs.size(), getModificationTime(attrs), getFileKey(attrs), hashes.clone()));
+    }
+    
+    /**
+     * Evicts the Entry of a deleted File or the Entries of everything below a deleted Folder.
+     * 
+     * @param file
+     *            Deleted File or Folder
+     */
+    void evict(File file) {
+        String key = file.getPath();
+        if (current.remove(key) == null)  {  // maybe a Folder
+            String prefix = key.isEmpty() || key.endsWith(File.separator) ? key : key + File.separator;
+            current.keySet().removeIf(path -> path.startsWith(prefix));
+        }
+    }
+    
+    /**
+     * Writes the Entries of the current Run into the Cache File. The File gets replaced atomically,
+     * so an interrupted Save never leaves a broken Cache behind.
+     * 
+     * @throws IOException
+     *             When the Cache File couldn't be written
+     */
+    void save() throws IOException {
+        Path tmpFile = getPartFile();  // a fixed Name, so a Walk of the Folder containing it can skip it
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile))))  {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(description);
+                out.writeInt(current.size());
+                for (Map.Entry<String, Entry> mapEntry : current.entrySet())  {
+                    Entry entry = mapEntry.getValue();
+                    out.writeUTF(mapEntry.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modificationTime);
+                    out.writeUTF(entry.fileKey != null ? entry.fileKey : "");
+                    out.writeByte(entry.hashes.length);
+                    for (String hash : entry.hashes)  {
+                        out.writeUTF(hash);
+                    }
+                }
+            }
+            Hasher.replace(tmpFile, cacheFile);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+    
+    /**
+     * Loads the Entries of the Cache File.
+     * 
+     * @return the loaded Entries, empty if the Cache File is missing, foreign or broken
+     */
+    private Map<String, Entry> load() {
+        Map<String, Entry> entries = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile))))  {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !description.equals(in.readUTF()))  {
+                return entries;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)  {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modificationTime = in.readLong();
+                String fileKey = in.readUTF();
+                String[] hashes = new String[in.readUnsignedByte()];
+                for (int j = 0; j < hashes.length; j++)  {
+                    hashes[j] = in.readUTF();
+                }
+                entries.put(path, new Entry(size, modificationTime, fileKey.isEmpty() ? null : fileKey, hashes));
+            }
+        } catch (NoSuchFileException e) {
+            // first Run, nothing cached yet
+        } catch (IOException e) {
+            entries.clear();  // broken Cache, everything gets hashed again
+        }
+        return entries;
+    }
+    
+    /**
+     * Returns the Modification Time of a File as precise as the File System offers it.
+     * 
+     * @param attrs
+     *            Attributes of the File
+     * @return the Modification Time in Nanoseconds since the Epoch
+     */
+    private static long getModificationTime(BasicFileAttributes attrs) {
+        return attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Returns the File Key (e.g. Device and Inode) of a File.
+     * 
+     * @param attrs
+     *            Attributes of the File
+     * @return the File Key or <code>null</code> if the File System doesn't offer one
+     */
+    private static String getFileKey(BasicFileAttributes attrs) {
+        Object fileKey = attrs.fileKey();
+        return fileKey != null ? fileKey.toString() : null;
+    }
+    
+    /**
+     * Cached Metadata and Hash of a File.
+     */
+    private static final class Entry {
+        
+        /**
+         * Size of the File in Bytes.
+         */
+        private final long size;
+        
+        /**
+         * Modification Time in Nanoseconds since the Epoch.
+         */
+        private final long modificationTime;
+        
+        /**
+         * File Key or <code>null</code> if the File System doesn't offer one.
+         */
+        private final String fileKey;
+        
+        /**
+         * Hashes of the File in the Order of the Algorithms.
+         */
+        private final String[] hashes;
+        
+        /**
+         * Creates a new Entry.
+         * 
+         * @param size
+         *            Size of the File in Bytes
+         * @param modificationTime
+         *            Modification Time in Nanoseconds since the Epoch
+         * @param fileKey
+         *            File Key or <code>null</code>
+         * @param hashes
+         *            Hashes of the File in the Order of the Algorithms
+         */
+        private Entry(long size, long modificationTime, String fileKey, String[] hashes) {
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.fileKey = fileKey;
+            this.hashes = hashes;
+        }
+        
+        /**
+         * Checks if the Entry still describes the File with the given Attributes.
+         * 
+         * @param attrs
+         *            Current Attributes of the File
+         * @return <code>true</code> if Size, Modification Time and File Key are unchanged
+         */
+        private boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && modificationTime == getModificationTime(attrs)
+                    && Objects.equals(fileKey, getFileKey(attrs));
+        }
+        
+    }
+    
+}
@@ -0,0 +1,461 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects the Files of a Folder which get hashed. Excluded Folders are pruned before they are entered, so nothing below them
+ * gets listed or even looked at. Patterns are matched against the Path relative to the hashed Folder and against the Name of
+ * the File or Folder, e.g. <code>node_modules</code>, <code>*.tmp</code> or <code>regex:.*\.(bak|swp)</code>. Without a
+ * Prefix a Pattern is a Glob, the Syntax is the one of {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+ * 
+ * @author DManstrator
+ *
+ */
+public final class HashFilter {
+    
+    /**
+     * Prefix of Glob Patterns.
+     */
+    private static final String GLOB_PREFIX = "glob:";
+    
+    /**
+     * Prefix of Regex Patterns.
+     */
+    private static final String REGEX_PREFIX = "regex:";
+    
+    /**
+     * Patterns a File has to match at least one of, none to include every File.
+     */
+    private final List<String> includes = new ArrayList<>();
+    
+    /**
+     * Matchers of the Include Patterns.
+     */
+    private final List<PathMatcher> includeMatchers = new ArrayList<>();
+    
+    /**
+     * Patterns of excluded Files and pruned Folders.
+     */
+    private final List<String> excludes = new ArrayList<>();
+    
+    /**
+     * Matchers of the Exclude Patterns.
+     */
+    private final List<PathMatcher> excludeMatchers = new ArrayList<>();
+    
+    /**
+     * Minimum Size of a File in Bytes.
+     */
+    private long minSize = 0;
+    
+    /**
+     * Maximum Size of a File in Bytes.
+     */
+    private long maxSize = Long.MAX_VALUE;
+    
+    /**
+     * Whether hidden Files and Folders are skipped.
+     */
+    private boolean skipHidden = false;
+    
+    /**
+     * Whether symbolic Links are followed, else they are skipped.
+     */
+    private boolean followLinks = true;
+    
+    /**
+     * Maximum Depth of a File below the hashed Folder, <code>1</code> for the Files directly inside.
+     */
+    private int maxDepth = Integer.MAX_VALUE;
+    
+    /**
+     * Absolute Paths of Files which never get hashed, e.g. the Output File being written inside the hashed Folder.
+     */
+    private final Set<Path> ignored = new HashSet<>();
+    
+    /**
+     * Creates a Filter which selects every File.
+     */
+    public HashFilter() {
+    }
+    
+    /**
+     * Creates a Copy of a Filter.
+     * 
+     * @param other
+     *            Filter to copy
+     */
+    public HashFilter(HashFilter other) {
+        includes.addAll(other.includes);
+        includeMatchers.addAll(other.includeMatchers);
+        excludes.addAll(other.excludes);
+        excludeMatchers.addAll(other.excludeMatchers);
+        minSize = other.minSize;
+        maxSize = other.maxSize;
+        skipHidden = other.skipHidden;
+        followLinks = other.followLinks;
+        maxDepth = other.maxDepth;
+        ignored.addAll(other.ignored);
+    }
+    
+    /**
+     * Adds a Pattern of Files to include. Once a Pattern is added, only Files matching at least one of them get hashed.
+     * Folders are always entered unless they are excluded.
+     * 
+     * @param pattern
+     *            Glob, or Regex with the Prefix <code>regex:</code>
+     * @throws IllegalArgumentException
+     *             When the Pattern is invalid
+     */
+    public void addInclude(String pattern) throws IllegalArgumentException {
+        includeMatchers.add(createMatcher(pattern));
+        includes.add(pattern);
+    }
+    
+    /**
+     * Returns the Patterns of included Files.
+     * 
+     * @return the Patterns, empty if every File is included
+     */
+    public List<String> getIncludes() {
+        return Collections.unmodifiableList(new ArrayList<>(includes));
+    }
+    
+    /**
+     * Adds a Pattern of Files and Folders to exclude. An excluded Folder is skipped with everything below it.
+     * 
+     * @param pattern
+     *            Glob, or Regex with the Prefix <code>regex:</code>
+     * @throws IllegalArgumentException
+     *             When the Pattern is invalid
+     */
+    public void addExclude(String pattern) throws IllegalArgumentException {
+        excludeMatchers.add(createMatcher(pattern));
+        excludes.add(pattern);
+    }
+    
+    /**
+     * Returns the Patterns of excluded Files and Folders.
+     * 
+     * @return the Patterns
+     */
+    public List<String> getExcludes() {
+        return Collections.unmodifiableList(new ArrayList<>(excludes));
+    }
+    
+    /**
+     * Sets the Size Range of the hashed Files.
+     * 
+     * @param minSize
+     *            Minimum Size in Bytes, <code>0</code> for no Limit
+     * @param maxSize
+     *            Maximum Size in Bytes, {@link Long#MAX_VALUE} for no Limit
+     * @throws IllegalArgumentException
+     *             When the Minimum is negative or bigger than the Maximum
+     */
+    public void setSizeRange(long minSize, long maxSize) throws IllegalArgumentException {
+        if (minSize < 0 || minSize > maxSize)  {
+            throw new IllegalArgumentException(String.format("Invalid size range from %d to %d bytes!", minSize, maxSize));
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+    
+    /**
+     * Returns the Minimum Size of the hashed Files.
+     * 
+     * @return the Minimum Size in Bytes
+     */
+    public long getMinSize() {
+        return minSize;
+    }
+    
+    /**
+     * Returns the Maximum Size of the hashed Files.
+     * 
+     * @return the Maximum Size in Bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Sets whether hidden Files and Folders are skipped, e.g. <code>.git</code> on Unix.
+     * 
+     * @param skipHidden
+     *            <code>true</code> to skip hidden Files and Folders
+     */
+    public void setSkipHidden(boolean skipHidden) {
+        this.skipHidden = skipHidden;
+    }
+    
+    /**
+     * Checks whether hidden Files and Folders are skipped.
+     * 
+     * @return <code>true</code> if hidden Files and Folders are skipped
+     */
+    public boolean isSkipHidden() {
+        return skipHidden;
+    }
+    
+    /**
+     * Sets whether symbolic Links are followed. Links which aren't followed are skipped.
+     * 
+     * @param followLinks
+     *            <code>true</code> to follow symbolic Links, the Default
+     */
+    public void setFollowLinks(boolean followLinks) {
+        this.followLinks = followLinks;
+    }
+    
+    /**
+     * Checks whether symbolic Links are followed.
+     * 
+     * @return <code>true</code> if symbolic Links are followed
+     */
+    public boolean isFollowLinks() {
+        return followLinks;
+    }
+    
+    /**
+     * Sets how deep the Files below the hashed Folder may be. Folders at the Maximum Depth aren't entered.
+     * 
+     * @param maxDepth
+     *            Maximum Depth, <code>1</code> for the Files directly inside the Folder
+     * @throws IllegalArgumentException
+     *             When the Depth is not positive
+     */
+    public void setMaxDepth(int maxDepth) throws IllegalArgumentException {
+        if (maxDepth <= 0)  {
+            throw new IllegalArgumentException(String.format("Max depth must be positive but was %d!", maxDepth));
+        }
+        this.maxDepth = maxDepth;
+    }
+    
+    /**
+     * Returns how deep the Files below the hashed Folder may be.
+     * 
+     * @return the Maximum Depth, {@link Integer#MAX_VALUE} for no Limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    /**
+     * Removes the Options of a Filter from Program Arguments: <code>--include &lt;pattern&gt;</code>,
+     * <code>--exclude &lt;pattern&gt;</code>, <code>--min-size &lt;bytes&gt;</code>, <code>--max-size &lt;bytes&gt;</code>,
+     * <code>--max-depth &lt;depth&gt;</code>, <code>--skip-hidden</code> and <code>--no-follow-links</code>.
+     * 
+     * @param args
+     *            Program Arguments, the Filter Options get removed
+     * @return the Filter described by the Options
+     * @throws IllegalArgumentException
+     *             When a Value is missing or invalid
+     */
+    static HashFilter removeOptions(List<String> args) throws IllegalArgumentException {
+        HashFilter filter = new HashFilter();
+        filter.setSkipHidden(args.remove("--skip-hidden"));
+        filter.setFollowLinks(!args.remove("--no-follow-links"));
+        long minSize = 0;
+        long maxSize = Long.MAX_VALUE;
+        for (int i = 0; i < args.size(); )  {
+            String option = args.get(i);
+            if (!Arrays.asList("--include", "--exclude", "--min-size", "--max-size", "--max-depth").contains(option))  {
+                i++;
+                continue;
+            }
+            if (i + 1 >= args.size())  {
+                throw new IllegalArgumentException(String.format("Option '%s' needs a value!", option));
+            }
+            String value = args.remove(i + 1);
+            args.remove(i);
+            try {
+                if (option.equals("--include"))  {
+                    filter.addInclude(value);
+                }  else if (option.equals("--exclude"))  {
+                    filter.addExclude(value);
+                }  else if (option.equals("--min-size"))  {
+                    minSize = Long.parseLong(value);
+                }  else if (option.equals("--max-size"))  {
+                    maxSize = Long.parseLong(value);
+                }  else  {
+                    filter.setMaxDepth(Integer.parseInt(value));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Value '%s' of option '%s' is not a number!", value, option), e);
+            }
+        }
+        filter.setSizeRange(minSize, maxSize);
+        return filter;
+    }
+    
+    /**
+     * Creates a Copy of this Filter which additionally skips the given Files.
+     * 
+     * @param files
+     *            Files to skip, e.g. the Output File and the Cache File of the Run
+     * @return the new Filter
+     */
+    HashFilter ignoring(Path... files) {
+        HashFilter copy = new HashFilter(this);
+        for (Path file : files)  {
+            copy.ignored.add(file.toAbsolutePath().normalize());
+        }
+        return copy;
+    }
+    
+    /**
+     * Checks whether a File is one of the skipped Files.
+     * 
+     * @param file
+     *            File to check
+     * @return <code>true</code> if the File never gets hashed
+     * @see #ignoring(Path...)
+     */
+    boolean isIgnored(Path file) {
+        return !ignored.isEmpty() && ignored.contains(file.toAbsolutePath().normalize());
+    }
+    
+    /**
+     * Returns the Options to walk a Folder with.
+     * 
+     * @return the Options of {@link Files#walkFileTree(Path, Set, int, java.nio.file.FileVisitor)}
+     */
+    Set<FileVisitOption> getVisitOptions() {
+        return followLinks ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+    }
+    
+    /**
+     * Returns the Options to read the Attributes of a single File with, so a Link is seen like the Walk sees it.
+     * 
+     * @return the Options of {@link Files#readAttributes(Path, Class, LinkOption...)}
+     */
+    LinkOption[] getLinkOptions() {
+        return followLinks ? new LinkOption[0] : new LinkOption[] { LinkOption.NOFOLLOW_LINKS };
+    }
+    
+    /**
+     * Checks whether a Folder gets entered. The hashed Folder itself is always entered.
+     * 
+     * @param root
+     *            Hashed Folder
+     * @param dir
+     *            Folder found by the Walk
+     * @return <code>true</code> to enter the Folder, <code>false</code> to prune it
+     */
+    boolean acceptsDirectory(Path root, Path dir) {
+        if (dir.equals(root))  {
+            return true;
+        }
+        if (skipHidden && isHidden(dir))  {
+            return false;
+        }
+        if (excludeMatchers.isEmpty() && maxDepth == Integer.MAX_VALUE)  {  // the Path is only needed for Patterns and the Depth
+            return true;
+        }
+        Path relative = root.relativize(dir);
+        return relative.getNameCount() < maxDepth && !matches(excludeMatchers, relative);
+    }
+    
+    /**
+     * Checks whether a File gets hashed.
+     * 
+     * @param root
+     *            Hashed Folder
+     * @param file
+     *            File found by the Walk
+     * @param attrs
+     *            Attributes of the File
+     * @return <code>true</code> to hash the File
+     */
+    boolean acceptsFile(Path root, Path file, BasicFileAttributes attrs) {
+        if ((!followLinks && attrs.isSymbolicLink()) || isIgnored(file))  {
+            return false;
+        }
+        if (attrs.size() < minSize || attrs.size() > maxSize)  {
+            return false;
+        }
+        if (skipHidden && isHidden(file))  {
+            return false;
+        }
+        if (excludeMatchers.isEmpty() && includeMatchers.isEmpty() && maxDepth == Integer.MAX_VALUE)  {
+            return true;
+        }
+        Path relative = root.relativize(file);
+        return relative.getNameCount() <= maxDepth && !matches(excludeMatchers, relative)
+                && (includeMatchers.isEmpty() || matches(includeMatchers, relative));
+    }
+    
+    /**
+     * Checks whether one of the Matchers matches the relative Path or the Name.
+     * 
+     * @param matchers
+     *            Matchers to check
+     * @param relative
+     *            Path relative to the hashed Folder
+     * @return <code>true</code> if one of the Matchers matches
+     */
+    private static boolean matches(List<PathMatcher> matchers, Path relative) {
+        Path name = relative.getFileName();
+        for (PathMatcher matcher : matchers)  {
+            if (matcher.matches(relative) || (name != null && matcher.matches(name)))  {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Checks whether a File or Folder is hidden.
+     * 
+     * @param path
+     *            File or Folder
+     * @return <code>true</code> if it is hidden, <code>false</code> if it isn't or that couldn't be checked
+     */
+    private static boolean isHidden(Path path) {
+        try {
+            return Files.isHidden(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Creates the Matcher of a Pattern.
+     * 
+     * @param pattern
+     *            Glob, or Regex with the Prefix <code>regex:</code>
+     * @return the Matcher
+     * @throws IllegalArgumentException
+     *             When the Pattern is invalid
+     */
+    private static PathMatcher createMatcher(String pattern) throws IllegalArgumentException {
+        String syntaxAndPattern = pattern.startsWith(GLOB_PREFIX) || pattern.startsWith(REGEX_PREFIX) ? pattern : GLOB_PREFIX + pattern;
+        try {
+            return FileSystems.getDefault().getPathMatcher(syntaxAndPattern);
+        } catch (RuntimeException e) {  // PatternSyntaxException or UnsupportedOperationException
+            throw new IllegalArgumentException(String.format("Given Pattern '%s' is invalid, re-check that!", pattern), e);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("HashFilter[includes=%s, excludes=%s, size=%d..%d, skipHidden=%b, followLinks=%b, maxDepth=%d]",
+                includes, excludes, minSize, maxSize, skipHidden, followLinks, maxDepth);
+    }
+    
+}
@@ -0,0 +1,79 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+
+/**
+ * Receives the Progress of a Run of the {@link Hasher}. Every Method has an empty Default, so a Listener
+ * only needs to override the Events it is interested in. The Methods get called from the Walk and the
+ * Worker Threads, so an Implementation has to be thread-safe and should return quickly.
+ * 
+ * @author DManstrator
+ *
+ * @see Hasher#addListener(HashListener)
+ * @see HashMetrics
+ */
+public interface HashListener {
+    
+    /**
+     * Called when a Run starts.
+     * 
+     * @param mainFolder
+     *            Folder which gets hashed
+     */
+    default void runStarted(File mainFolder) {
+    }
+    
+    /**
+     * Called when the Walk found a File to hash.
+     * 
+     * @param file
+     *            Found File
+     * @param size
+     *            Size of the File in Bytes
+     */
+    default void fileFound(File file, long size) {
+    }
+    
+    /**
+     * Called when the Walk is done. Files may still be hashed afterwards.
+     * 
+     * @param nanos
+     *            Duration of the Walk in Nanoseconds
+     */
+    default void walkFinished(long nanos) {
+    }
+    
+    /**
+     * Called when a File got hashed or couldn't be hashed.
+     * 
+     * @param result
+     *            Result of hashing the File
+     * @param bytesRead
+     *            Bytes read to compute the Result, <code>0</code> if it was served from the Cache
+     * @param nanos
+     *            Time spent on the File in Nanoseconds
+     */
+    default void fileHashed(HashResult result, long bytesRead, long nanos) {
+    }
+    
+    /**
+     * Called when the Result of a File got written into the Output File.
+     * 
+     * @param result
+     *            Written Result
+     * @param nanos
+     *            Time spent on writing in Nanoseconds
+     */
+    default void resultWritten(HashResult result, long nanos) {
+    }
+    
+    /**
+     * Called when a Run is done, also if it failed or got interrupted.
+     * 
+     * @param nanos
+     *            Duration of the whole Run in Nanoseconds
+     */
+    default void runFinished(long nanos) {
+    }
+    
+}
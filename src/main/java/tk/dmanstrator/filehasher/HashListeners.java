@@ -0,0 +1,70 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Passes every Event to all registered Listeners. Listeners can be added and removed while a Run is going on.
+ * 
+ * @author DManstrator
+ *
+ */
+final class HashListeners implements HashListener {
+    
+    /**
+     * Registered Listeners.
+     */
+    private final List<HashListener> listeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Registers a Listener.
+     * 
+     * @param listener
+     *            Listener to register
+     */
+    void add(HashListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregisters a Listener.
+     * 
+     * @param listener
+     *            Listener to unregister
+     */
+    void remove(HashListener listener) {
+        listeners.remove(listener);
+    }
+    
+    @Override
+    public void runStarted(File mainFolder) {
+        listeners.forEach(listener -> listener.runStarted(mainFolder));
+    }
+    
+    @Override
+    public void fileFound(File file, long size) {
+        listeners.forEach(listener -> listener.fileFound(file, size));
+    }
+    
+    @Override
+    public void walkFinished(long nanos) {
+        listeners.forEach(listener -> listener.walkFinished(nanos));
+    }
+    
+    @Override
+    public void fileHashed(HashResult result, long bytesRead, long nanos) {
+        listeners.forEach(listener -> listener.fileHashed(result, bytesRead, nanos));
+    }
+    
+    @Override
+    public void resultWritten(HashResult result, long nanos) {
+        listeners.forEach(listener -> listener.resultWritten(result, nanos));
+    }
+    
+    @Override
+    public void runFinished(long nanos) {
+        listeners.forEach(listener -> listener.runFinished(nanos));
+    }
+    
+}
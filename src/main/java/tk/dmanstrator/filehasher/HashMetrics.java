@@ -0,0 +1,570 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener which collects the Throughput of a Run: found, hashed and failed Files, read Bytes, the Time spent
+ * per Phase and the slowest Files. Can be read at any Time while the Run is going on and exported as JSON afterwards.
+ * The Counters add up over all Runs the Metrics are registered for, so use a new Instance per Run.
+ * 
+ * @author DManstrator
+ *
+ */
+public class HashMetrics implements HashListener {
+    
+    /**
+     * Default Amount of slowest Files which are kept.
+     */
+    public static final int DEFAULT_SLOWEST_FILES = 10;
+    
+    /**
+     * Length of the Window the current Rates are computed over in Seconds.
+     */
+    private static final int RATE_WINDOW = 5;
+    
+    /**
+     * Bytes in a Megabyte.
+     */
+    private static final double MEGABYTE = 1024 * 1024;
+    
+    /**
+     * Amount of slowest Files which are kept.
+     */
+    private final int slowestLimit;
+    
+    /**
+     * Slowest Files, the fastest of them first.
+     */
+    private final PriorityQueue<FileTiming> slowest = new PriorityQueue<>(Comparator.comparingLong(FileTiming::getNanos));
+    
+    /**
+     * Amount of Files found by the Walk.
+     */
+    private final LongAdder filesFound = new LongAdder();
+    
+    /**
+     * Amount of successfully hashed Files.
+     */
+    private final LongAdder filesHashed = new LongAdder();
+    
+    /**
+     * Amount of Files which couldn't be hashed.
+     */
+    private final LongAdder filesFailed = new LongAdder();
+    
+    /**
+     * Total Size of the found Files in Bytes.
+     */
+    private final LongAdder bytesFound = new LongAdder();
+    
+    /**
+     * Bytes read to compute the Hashes.
+     */
+    private final LongAdder bytesRead = new LongAdder();
+    
+    /**
+     * Time spent on hashing in Nanoseconds, summed up over all Workers.
+     */
+    private final LongAdder hashNanos = new LongAdder();
+    
+    /**
+     * Time spent on writing the Output File in Nanoseconds, summed up over all Workers.
+     */
+    private final LongAdder writeNanos = new LongAdder();
+    
+    /**
+     * Hashed Files per Second of the last Seconds, indexed by the Second modulo the Length of the Arrays.
+     */
+    private final long[] windowFiles = new long[RATE_WINDOW + 2];
+    
+    /**
+     * Read Bytes per Second of the last Seconds, indexed like {@link #windowFiles}.
+     */
+    private final long[] windowBytes = new long[RATE_WINDOW + 2];
+    
+    /**
+     * Second every Slot of the Window belongs to.
+     */
+    private final long[] windowSeconds = new long[RATE_WINDOW + 2];
+    
+    /**
+     * Folder of the current or last Run.
+     */
+    private volatile File mainFolder;
+    
+    /**
+     * Start of the Run as returned by {@link System#nanoTime()}.
+     */
+    private volatile long startNanos;
+    
+    /**
+     * Duration of the Walk in Nanoseconds, <code>-1</code> while it is going on.
+     */
+    private volatile long walkNanos = -1;
+    
+    /**
+     * Duration of the Run in Nanoseconds, <code>-1</code> while it is going on.
+     */
+    private volatile long runNanos = -1;
+    
+    /**
+     * Creates new Metrics which keep the {@value #DEFAULT_SLOWEST_FILES} slowest Files.
+     */
+    public HashMetrics() {
+        this(DEFAULT_SLOWEST_FILES);
+    }
+    
+    /**
+     * Creates new Metrics.
+     * 
+     * @param slowestLimit
+     *            Amount of slowest Files which are kept
+     * @throws IllegalArgumentException
+     *             When the Amount is negative
+     */
+    public HashMetrics(int slowestLimit) throws IllegalArgumentException {
+        if (slowestLimit < 0)  {
+            throw new IllegalArgumentException(String.format("Amount of slowest Files must not be negative but was %d!", slowestLimit));
+        }
+        this.slowestLimit = slowestLimit;
+    }
+    
+    @Override
+    public void runStarted(File mainFolder) {
+        this.mainFolder = mainFolder;
+        this.startNanos = System.nanoTime();
+    }
+    
+    @Override
+    public void fileFound(File file, long size) {
+        filesFound.increment();
+        bytesFound.add(size);
+    }
+    
+    @Override
+    public void walkFinished(long nanos) {
+        walkNanos = nanos;
+    }
+    
+    @Override
+    public void fileHashed(HashResult result, long bytesRead, long nanos) {
+        if (result.isSuccessful())  {
+            filesHashed.increment();
+        }  else  {
+            filesFailed.increment();
+        }
+        this.bytesRead.add(bytesRead);
+        hashNanos.add(nanos);
+        
+        long second = System.nanoTime() / 1_000_000_000L;
+        int slot = (int) Math.floorMod(second, (long) windowSeconds.length);
+        synchronized (windowSeconds)  {
+            if (windowSeconds[slot] != second)  {
+                windowSeconds[slot] = second;
+                windowFiles[slot] = 0;
+                windowBytes[slot] = 0;
+            }
+            windowFiles[slot]++;
+            windowBytes[slot] += bytesRead;
+        }
+        
+        if (slowestLimit > 0)  {
+            synchronized (slowest)  {
+                if (slowest.size() < slowestLimit || slowest.peek().getNanos() < nanos)  {
+                    slowest.add(new FileTiming(result.getFile(), bytesRead, nanos));
+                    if (slowest.size() > slowestLimit)  {
+                        slowest.poll();
+                    }
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void resultWritten(HashResult result, long nanos) {
+        writeNanos.add(nanos);
+    }
+    
+    @Override
+    public void runFinished(long nanos) {
+        runNanos = nanos;
+    }
+    
+    /**
+     * Returns the Folder of the current or last Run.
+     * 
+     * @return the Folder or <code>null</code> if no Run started yet
+     */
+    public File getMainFolder() {
+        return mainFolder;
+    }
+    
+    /**
+     * Returns the Amount of Files found by the Walk.
+     * 
+     * @return the Amount of found Files
+     */
+    public long getFilesFound() {
+        return filesFound.sum();
+    }
+    
+    /**
+     * Returns the total Size of all Files found by the Walk.
+     * 
+     * @return the Size in Bytes
+     */
+    public long getBytesFound() {
+        return bytesFound.sum();
+    }
+    
+    /**
+     * Returns the Amount of successfully hashed Files.
+     * 
+     * @return the Amount of hashed Files
+     */
+    public long getFilesHashed() {
+        return filesHashed.sum();
+    }
+    
+    /**
+     * Returns the Amount of Files which couldn't be hashed.
+     * 
+     * @return the Amount of failed Files
+     */
+    public long getFilesFailed() {
+        return filesFailed.sum();
+    }
+    
+    /**
+     * Returns the Amount of Bytes read to compute the Hashes. Files served from the Cache aren't read.
+     * 
+     * @return the Amount of read Bytes
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+    
+    /**
+     * Returns the Time since the Run started, or the Duration of the Run if it is done.
+     * 
+     * @return the elapsed Time in Nanoseconds, <code>0</code> if no Run started yet
+     */
+    public long getElapsedNanos() {
+        if (runNanos >= 0)  {
+            return runNanos;
+        }
+        return startNanos != 0 ? System.nanoTime() - startNanos : 0;
+    }
+    
+    /**
+     * Returns the Duration of the Walk.
+     * 
+     * @return the Duration in Nanoseconds, <code>-1</code> while the Walk is going on
+     */
+    public long getWalkNanos() {
+        return walkNanos;
+    }
+    
+    /**
+     * Returns the Time spent on hashing summed up over all Workers, so it can exceed the elapsed Time.
+     * 
+     * @return the Time in Nanoseconds
+     */
+    public long getHashNanos() {
+        return hashNanos.sum();
+    }
+    
+    /**
+     * Returns the Time spent on writing the Output File summed up over all Workers.
+     * 
+     * @return the Time in Nanoseconds
+     */
+    public long getWriteNanos() {
+        return writeNanos.sum();
+    }
+    
+    /**
+     * Checks whether the Run is done.
+     * 
+     * @return <code>true</code> if the Run is done
+     */
+    public boolean isFinished() {
+        return runNanos >= 0;
+    }
+    
+    /**
+     * Returns the average Amount of Files hashed per Second since the Run started.
+     * 
+     * @return the Files per Second
+     */
+    public double getFilesPerSecond() {
+        return perSecond(getFilesHashed() + getFilesFailed(), getElapsedNanos());
+    }
+    
+    /**
+     * Returns the average Amount of Megabytes read per Second since the Run started.
+     * 
+     * @return the Megabytes per Second
+     */
+    public double getMegabytesPerSecond() {
+        return perSecond(getBytesRead(), getElapsedNanos()) / MEGABYTE;
+    }
+    
+    /**
+     * Returns the Amount of Files hashed per Second during the last {@value #RATE_WINDOW} Seconds.
+     * 
+     * @return the current Files per Second
+     */
+    public double getCurrentFilesPerSecond() {
+        return currentRate(windowFiles);
+    }
+    
+    /**
+     * Returns the Amount of Megabytes read per Second during the last {@value #RATE_WINDOW} Seconds.
+     * 
+     * @return the current Megabytes per Second
+     */
+    public double getCurrentMegabytesPerSecond() {
+        return currentRate(windowBytes) / MEGABYTE;
+    }
+    
+    /**
+     * Returns the slowest Files, the slowest first.
+     * 
+     * @return the slowest Files
+     */
+    public List<FileTiming> getSlowestFiles() {
+        List<FileTiming> files;
+        synchronized (slowest)  {
+            files = new ArrayList<>(slowest);
+        }
+        files.sort(Comparator.comparingLong(FileTiming::getNanos).reversed());
+        return Collections.unmodifiableList(files);
+    }
+    
+    /**
+     * Returns the Metrics as a JSON Object.
+     * 
+     * @return the Metrics as JSON
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        String nl = System.lineSeparator();
+        sb.append('{').append(nl);
+        sb.append("  \"mainFolder\": ").append(mainFolder != null ? quote(mainFolder.getPath()) : "null").append(',').append(nl);
+        sb.append("  \"finished\": ").append(isFinished()).append(',').append(nl);
+        sb.append("  \"filesFound\": ").append(getFilesFound()).append(',').append(nl);
+        sb.append("  \"bytesFound\": ").append(getBytesFound()).append(',').append(nl);
+        sb.append("  \"filesHashed\": ").append(getFilesHashed()).append(',').append(nl);
+        sb.append("  \"filesFailed\": ").append(getFilesFailed()).append(',').append(nl);
+        sb.append("  \"bytesRead\": ").append(getBytesRead()).append(',').append(nl);
+        sb.append("  \"elapsedMillis\": ").append(millis(getElapsedNanos())).append(',').append(nl);
+        sb.append("  \"filesPerSecond\": ").append(decimal(getFilesPerSecond())).append(',').append(nl);
+        sb.append("  \"megabytesPerSecond\": ").append(decimal(getMegabytesPerSecond())).append(',').append(nl);
+        sb.append("  \"phases\": {").append(nl);
+        sb.append("    \"walkMillis\": ").append(walkNanos >= 0 ? millis(walkNanos) : "null").append(',').append(nl);
+        sb.append("    \"hashMillis\": ").append(millis(getHashNanos())).append(',').append(nl);
+        sb.append("    \"writeMillis\": ").append(millis(getWriteNanos())).append(nl);
+        sb.append("  },").append(nl);
+        sb.append("  \"slowestFiles\": [");
+        List<FileTiming> files = getSlowestFiles();
+        for (int i = 0; i < files.size(); i++)  {
+            FileTiming timing = files.get(i);
+            sb.append(i == 0 ? "" : ",").append(nl);
+            sb.append("    { \"path\": ").append(quote(timing.getFile().getPath()))
+                    .append(", \"bytes\": ").append(timing.getBytes())
+                    .append(", \"millis\": ").append(millis(timing.getNanos())).append(" }");
+        }
+        sb.append(files.isEmpty() ? "" : nl + "  ").append(']').append(nl);
+        sb.append('}');
+        return sb.toString();
+    }
+    
+    /**
+     * Writes the Metrics as JSON into a File.
+     * 
+     * @param file
+     *            File to write
+     * @throws IOException
+     *             When the File couldn't be written
+     */
+    public void writeJson(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))  {
+            writer.write(toJson());
+            writer.write(System.lineSeparator());
+        }
+    }
+    
+    @Override
+    public String toString() {
+        String counts = String.format(Locale.ROOT, "%d/%d files hashed, %d failed, %.1f MB read", getFilesHashed(),
+                getFilesFound(), getFilesFailed(), getBytesRead() / MEGABYTE);
+        if (isFinished())  {
+            return String.format(Locale.ROOT, "%s in %.1f s, %.1f MB/s, %.1f files/s", counts, getElapsedNanos() / 1e9,
+                    getMegabytesPerSecond(), getFilesPerSecond());
+        }
+        return String.format(Locale.ROOT, "%s, %.1f MB/s (avg %.1f MB/s), %.1f files/s", counts,
+                getCurrentMegabytesPerSecond(), getMegabytesPerSecond(), getCurrentFilesPerSecond());
+    }
+    
+    /**
+     * Computes the Rate of the last complete Seconds of the Window.
+     * 
+     * @param counts
+     *            Counts per Second
+     * @return the Rate per Second
+     */
+    private double currentRate(long[] counts) {
+        long now = System.nanoTime() / 1_000_000_000L;
+        long first = Math.max(now - RATE_WINDOW, startNanos / 1_000_000_000L);
+        long sum = 0;
+        synchronized (windowSeconds)  {
+            for (int i = 0; i < windowSeconds.length; i++)  {
+                if (windowSeconds[i] >= first && windowSeconds[i] < now)  {
+                    sum += counts[i];
+                }
+            }
+        }
+        return now > first ? (double) sum / (now - first) : 0;
+    }
+    
+    /**
+     * Computes a Rate per Second.
+     * 
+     * @param count
+     *            Count within the Time
+     * @param nanos
+     *            Time in Nanoseconds
+     * @return the Rate per Second
+     */
+    private static double perSecond(long count, long nanos) {
+        return nanos > 0 ? count * 1_000_000_000.0 / nanos : 0;
+    }
+    
+    /**
+     * Converts Nanoseconds into Milliseconds.
+     * 
+     * @param nanos
+     *            Time in Nanoseconds
+     * @return the Time in Milliseconds
+     */
+    private static long millis(long nanos) {
+        return nanos / 1_000_000L;
+    }
+    
+    /**
+     * Formats a Decimal for JSON.
+     * 
+     * @param value
+     *            Decimal to format
+     * @return the formatted Decimal
+     */
+    private static String decimal(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+    
+    /**
+     * Quotes and escapes a String for JSON.
+     * 
+     * @param value
+     *            String to quote
+     * @return the quoted String
+     */
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++)  {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')  {
+                sb.append('\\').append(c);
+            }  else if (c < 0x20)  {
+                sb.append(String.format("\\u%04x", (int) c));
+            }  else  {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+    
+    /**
+     * Time spent on a single File.
+     */
+    public static final class FileTiming {
+        
+        /**
+         * File which got hashed.
+         */
+        private final File file;
+        
+        /**
+         * Bytes read from the File.
+         */
+        private final long bytes;
+        
+        /**
+         * Time spent on the File in Nanoseconds.
+         */
+        private final long nanos;
+        
+        /**
+         * Creates a new Timing.
+         * 
+         * @param file
+         *            File which got hashed
+         * @param bytes
+         *            Bytes read from the File
+         * @param nanos
+         *            Time spent on the File in Nanoseconds
+         */
+        private FileTiming(File file, long bytes, long nanos) {
+            this.file = file;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+        
+        /**
+         * Returns the File which got hashed.
+         * 
+         * @return the File
+         */
+        public File getFile() {
+            return file;
+        }
+        
+        /**
+         * Returns the Bytes read from the File.
+         * 
+         * @return the read Bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+        
+        /**
+         * Returns the Time spent on the File.
+         * 
+         * @return the Time in Nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s (%d bytes, %d ms)", file.getPath(), bytes, millis(nanos));
+        }
+        
+    }
+    
+}
@@ -0,0 +1,386 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Walks a Directory Tree and hashes the found Files while the Walk is still running.
+ * The Walk feeds a bounded Queue which is consumed by the Workers, so neither the Time
+ * until the first File gets hashed nor the Memory needed depend on the Size of the Tree.
+ * 
+ * @author DManstrator
+ *
+ */
+final class HashPipeline {
+    
+    /**
+     * Maximum Amount of found Files waiting to be hashed.
+     */
+    static final int QUEUE_CAPACITY = 4096;
+    
+    /**
+     * Time in Milliseconds the Walk waits for free Space in the Queue before checking the Workers again.
+     */
+    private static final long OFFER_TIMEOUT = 100;
+    
+    /**
+     * Marks the End of the Walk for a Worker. Sorted behind every real File.
+     */
+    private static final QueuedFile END_OF_WALK = new QueuedFile(null, null);
+    
+    /**
+     * Computes the Result for a single File from the File and its Attributes found by the Walk.
+     */
+    private final HashFunction hashFunction;
+    
+    /**
+     * Pool the Workers run in.
+     */
+    private final ExecutorService pool;
+    
+    /**
+     * Amount of Workers consuming the Queue.
+     */
+    private final int workers;
+    
+    /**
+     * Receives the found Files and the Duration of the Walk.
+     */
+    private final HashListener listener;
+    
+    /**
+     * Limits the concurrent Reads per File Store, <code>null</code> to read the biggest Files first regardless of their File Store.
+     */
+    private final ReadScheduler scheduler;
+    
+    /**
+     * Selects the Files to hash and the Folders to enter.
+     */
+    private final HashFilter filter;
+    
+    /**
+     * Creates a new Pipeline.
+     * 
+     * @param hashFunction
+     *            Computes the Result for a single File from the File and its Attributes found by the Walk
+     * @param pool
+     *            Pool the Workers run in
+     * @param workers
+     *            Amount of Workers, with one Worker the Files get hashed on the calling Thread
+     * @param listener
+     *            Receives the found Files and the Duration of the Walk
+     * @param scheduler
+     *            Limits the concurrent Reads per File Store, <code>null</code> to read the biggest Files first regardless of their File Store
+     * @param filter
+     *            Selects the Files to hash and the Folders to enter
+     */
+    HashPipeline(HashFunction hashFunction, ExecutorService pool, int workers, HashListener listener,
+            ReadScheduler scheduler, HashFilter filter) {
+        this.hashFunction = hashFunction;
+        this.pool = pool;
+        this.workers = workers;
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.filter = filter;
+    }
+    
+    /**
+     * Hashes every File below the given Directory. The Consumer gets called from the Worker Threads, so it has to be thread-safe.
+     * 
+     * @param root
+     *            Directory to walk
+     * @param consumer
+     *            Receives the Result of every File as soon as it is computed
+     * @throws IllegalStateException
+     *             When a Worker failed unexpectedly
+     */
+    void run(Path root, Consumer<HashResult> consumer) throws IllegalStateException {
+        long walkStart = System.nanoTime();
+        if (workers <= 1)  {
+            walk(root, filter, (file, attrs) ->  {
+                listener.fileFound(file, attrs.size());
+                consumer.accept(hashFunction.apply(file, attrs, null));
+                return true;
+            }, consumer);
+            listener.walkFinished(System.nanoTime() - walkStart);
+            return;
+        }
+        if (scheduler != null)  {
+            runScheduled(root, consumer, walkStart);
+            return;
+        }
+        
+        // Bigger Files first within the Queue, so a huge File doesn't start last and keeps one Worker busy while the others idle
+        BlockingQueue<QueuedFile> queue = new PriorityBlockingQueue<>(QUEUE_CAPACITY,
+                Comparator.comparingLong((QueuedFile queued) -> queued.getSize()).reversed());
+        Semaphore capacity = new Semaphore(QUEUE_CAPACITY);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        
+        Runnable worker = () ->  {
+            try {
+                QueuedFile queued;
+                while ((queued = queue.take()) != END_OF_WALK)  {
+                    capacity.release();
+                    consumer.accept(hashFunction.apply(queued.file, queued.attrs, null));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            }
+        };
+        
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++)  {
+            futures.add(pool.submit(worker));
+        }
+        
+        walk(root, filter, (file, attrs) ->  {
+            listener.fileFound(file, attrs.size());
+            while (!capacity.tryAcquire(OFFER_TIMEOUT, TimeUnit.MILLISECONDS))  {
+                if (failure.get() != null)  {
+                    return false;
+                }
+            }
+            queue.add(new QueuedFile(file, attrs));
+            return true;
+        }, consumer);
+        listener.walkFinished(System.nanoTime() - walkStart);
+        
+        for (int i = 0; i < workers; i++)  {
+            queue.add(END_OF_WALK);
+        }
+        awaitAll(futures);
+    }
+    
+    /**
+     * Hashes every File below the given Directory with the Workers taking the Files from the Scheduler.
+     * 
+     * @param root
+     *            Directory to walk
+     * @param consumer
+     *            Receives the Result of every File as soon as it is computed
+     * @param walkStart
+     *            Start of the Walk as returned by {@link System#nanoTime()}
+     * @throws IllegalStateException
+     *             When a Worker failed unexpectedly
+     */
+    private void runScheduled(Path root, Consumer<HashResult> consumer, long walkStart) throws IllegalStateException {
+        Semaphore capacity = new Semaphore(QUEUE_CAPACITY);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        
+        Runnable worker = () ->  {
+            try {
+                ReadScheduler.Read read;
+                while ((read = scheduler.take()) != null)  {
+                    capacity.release();
+                    ReadScheduler.Read taken = read;
+                    try {
+                        consumer.accept(hashFunction.apply(read.getFile(), read.getAttrs(), () -> scheduler.done(taken)));
+                    } finally {
+                        scheduler.done(read);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+                scheduler.finish();
+                throw e;
+            }
+        };
+        
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++)  {
+            futures.add(pool.submit(worker));
+        }
+        
+        try {
+            walk(root, filter, (file, attrs) ->  {
+                listener.fileFound(file, attrs.size());
+                while (!capacity.tryAcquire(OFFER_TIMEOUT, TimeUnit.MILLISECONDS))  {
+                    if (failure.get() != null)  {
+                        return false;
+                    }
+                }
+                scheduler.add(file, attrs);
+                return true;
+            }, consumer);
+            listener.walkFinished(System.nanoTime() - walkStart);
+        } finally {
+            scheduler.finish();
+        }
+        awaitAll(futures);
+    }
+    
+    /**
+     * Walks the Directory Tree and passes every found File the Filter accepts to the Target. Folders the Filter rejects are
+     * pruned before they are entered.
+     * 
+     * @param root
+     *            Directory to walk
+     * @param filter
+     *            Selects the Files to pass and the Folders to enter
+     * @param target
+     *            Receives every found File
+     * @param consumer
+     *            Receives a failed Result for every Entry which couldn't be visited
+     */
+    static void walk(Path root, HashFilter filter, FileTarget target, Consumer<HashResult> consumer) {
+        try {
+            Files.walkFileTree(root, filter.getVisitOptions(), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    return filter.acceptsDirectory(root, dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+                
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (Thread.currentThread().isInterrupted())  {  // cancelled
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (attrs.isDirectory() || attrs.isOther() || !filter.acceptsFile(root, file, attrs))  {  // e.g. Pipes would block the Reader forever
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        return target.accept(file.toFile(), attrs) ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return FileVisitResult.TERMINATE;
+                    }
+                }
+                
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    consumer.accept(HashResult.failure(file.toFile(), exc));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            consumer.accept(HashResult.failure(root.toFile(), e));
+        }
+    }
+    
+    /**
+     * Waits until all given Tasks are done. If the calling Thread gets interrupted, all Tasks get cancelled.
+     * 
+     * @param futures
+     *            Tasks to wait for
+     * @throws IllegalStateException
+     *             When a Task failed unexpectedly
+     */
+    private static void awaitAll(List<Future<?>> futures) throws IllegalStateException {
+        try {
+            for (Future<?> future : futures)  {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("A Worker failed unexpectedly!", e.getCause());
+        }
+    }
+    
+    /**
+     * Computes the Result for a single File.
+     */
+    @FunctionalInterface
+    interface HashFunction {
+        
+        /**
+         * Computes the Result for a single File.
+         * 
+         * @param file
+         *            File to hash
+         * @param attrs
+         *            Attributes of the File found by the Walk
+         * @param afterRead
+         *            Frees the Read of the File once it got read, so the next File of its File Store can be read while
+         *            this one still gets digested. <code>null</code> if the Reads aren't limited
+         * @return the Result containing either the Hash or the Error which occurred
+         */
+        HashResult apply(File file, BasicFileAttributes attrs, Runnable afterRead);
+        
+    }
+    
+    /**
+     * Receives the Files found by the Walk.
+     */
+    @FunctionalInterface
+    interface FileTarget {
+        
+        /**
+         * Receives a found File.
+         * 
+         * @param file
+         *            Found File
+         * @param attrs
+         *            Attributes of the File
+         * @return <code>true</code> to continue the Walk, <code>false</code> to stop it
+         * @throws InterruptedException
+         *             When the Walk got interrupted
+         */
+        boolean accept(File file, BasicFileAttributes attrs) throws InterruptedException;
+        
+    }
+    
+    /**
+     * File waiting in the Queue to be hashed.
+     */
+    private static final class QueuedFile {
+        
+        /**
+         * File to hash.
+         */
+        private final File file;
+        
+        /**
+         * Attributes of the File found by the Walk.
+         */
+        private final BasicFileAttributes attrs;
+        
+        /**
+         * Creates a new queued File.
+         * 
+         * @param file
+         *            File to hash
+         * @param attrs
+         *            Attributes of the File found by the Walk
+         */
+        private QueuedFile(File file, BasicFileAttributes attrs) {
+            this.file = file;
+            this.attrs = attrs;
+        }
+        
+        /**
+         * Returns the Size of the File.
+         * 
+         * @return the Size in Bytes, <code>-1</code> for the End of the Walk
+         */
+        private long getSize() {
+            return attrs != null ? attrs.size() : -1;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,232 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result of hashing a single File. Either holds the computed Hashes (one per Algorithm)
+ * or the Error which prevented the Hashes from being computed. Raw Digests are only
+ * encoded as hexadecimal Strings when they are requested.
+ * 
+ * @author DManstrator
+ *
+ */
+public final class HashResult {
+    
+    /**
+     * File which got hashed.
+     */
+    private final File file;
+    
+    /**
+     * Names of the Algorithms in the configured Order, empty if hashing failed.
+     */
+    private final String[] algorithms;
+    
+    /**
+     * Raw Digests in the Order of the Algorithms, <code>null</code> if the Result was created from hexadecimal Hashes.
+     */
+    private final byte[][] digests;
+    
+    /**
+     * Hashes by their Algorithm in the configured Order, encoded on first Use if the Result holds raw Digests.
+     */
+    private volatile Map<String, String> hashes;
+    
+    /**
+     * Error which occurred while hashing, <code>null</code> if hashing succeeded.
+     */
+    private final IOException error;
+    
+    private HashResult(File file, String[] algorithms, byte[][] digests, Map<String, String> hashes, IOException error) {
+        this.file = file;
+        this.algorithms = algorithms;
+        this.digests = digests;
+        this.hashes = hashes;
+        this.error = error;
+    }
+    
+    /**
+     * Creates a successful Result.
+     * 
+     * @param file
+     *            File which got hashed
+     * @param hashes
+     *            Computed Hashes of the File by their Algorithm, the first one is the primary Hash
+     * @return a successful Result
+     */
+    public static HashResult success(File file, Map<String, String> hashes) {
+        return new HashResult(file, hashes.keySet().toArray(new String[0]), null,
+                Collections.unmodifiableMap(new LinkedHashMap<>(hashes)), null);
+    }
+    
+    /**
+     * Creates a successful Result from raw Digests, which get encoded only when the Hashes are requested.
+     * 
+     * @param file
+     *            File which got hashed
+     * @param algorithms
+     *            Names of the Algorithms, the first one is the primary Algorithm
+     * @param digests
+     *            Raw Digests in the Order of the Algorithms, not copied
+     * @return a successful Result
+     */
+    static HashResult success(File file, String[] algorithms, byte[][] digests) {
+        return new HashResult(file, algorithms, digests, null, null);
+    }
+    
+    /**
+     * Creates a failed Result.
+     * 
+     * @param file
+     *            File which couldn't be hashed
+     * @param error
+     *            Reason why the File couldn't be hashed
+     * @return a failed Result
+     */
+    public static HashResult failure(File file, IOException error) {
+        return new HashResult(file, new String[0], null, Collections.emptyMap(), error);
+    }
+    
+    /**
+     * Returns the File which got hashed.
+     * 
+     * @return the File which got hashed
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Returns the computed Hash of the first configured Algorithm.
+     * 
+     * @return the computed Hash or <code>null</code> if hashing failed
+     */
+    public String getHash() {
+        if (algorithms.length == 0)  {
+            return null;
+        }
+        return digests != null ? Hex.encode(digests[0]) : hashes.get(algorithms[0]);
+    }
+    
+    /**
+     * Returns the computed Hash of the given Algorithm.
+     * 
+     * @param algorithm
+     *            Name of the Algorithm, e.g. <code>SHA-256</code>
+     * @return the computed Hash or <code>null</code> if hashing failed or the Algorithm wasn't used
+     */
+    public String getHash(String algorithm) {
+        return getHashes().get(algorithm);
+    }
+    
+    /**
+     * Returns all computed Hashes.
+     * 
+     * @return the computed Hashes by their Algorithm in the configured Order, empty if hashing failed
+     */
+    public Map<String, String> getHashes() {
+        Map<String, String> result = hashes;
+        if (result == null)  {
+            Map<String, String> encoded = new LinkedHashMap<>();
+            for (int i = 0; i < algorithms.length; i++)  {
+                encoded.put(algorithms[i], Hex.encode(digests[i]));
+            }
+            result = Collections.unmodifiableMap(encoded);
+            hashes = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the raw Digest of the first configured Algorithm.
+     * 
+     * @return a Copy of the Digest or <code>null</code> if hashing failed
+     */
+    public byte[] getDigest() {
+        byte[] digest = getDigest(0);
+        return digest != null && digests != null ? digest.clone() : digest;
+    }
+    
+    /**
+     * Returns the Amount of Algorithms the Result holds a Hash for.
+     * 
+     * @return the Amount of Algorithms, <code>0</code> if hashing failed
+     */
+    int getAlgorithmCount() {
+        return algorithms.length;
+    }
+    
+    /**
+     * Returns the raw Digest of an Algorithm without copying it.
+     * 
+     * @param index
+     *            Index of the Algorithm
+     * @return the Digest, must not be modified, or <code>null</code> if hashing failed
+     */
+    byte[] getDigest(int index) {
+        if (index >= algorithms.length)  {
+            return null;
+        }
+        return digests != null ? digests[index] : Hex.decode(hashes.get(algorithms[index]));
+    }
+    
+    /**
+     * Appends all Hashes separated by a Space to a Builder without creating intermediate Strings.
+     * 
+     * @param target
+     *            Builder to append to
+     */
+    void appendHashes(StringBuilder target) {
+        for (int i = 0; i < algorithms.length; i++)  {
+            if (i > 0)  {
+                target.append(' ');
+            }
+            if (digests != null)  {
+                Hex.append(digests[i], 0, digests[i].length, target);
+            }  else  {
+                target.append(hashes.get(algorithms[i]));
+            }
+        }
+    }
+    
+    /**
+     * Returns the Error which occurred while hashing.
+     * 
+     * @return the Error or <code>null</code> if hashing succeeded
+     */
+    public IOException getError() {
+        return error;
+    }
+    
+    /**
+     * Checks if the Hash was computed successfully.
+     * 
+     * @return <code>true</code> if the Hash was computed, else <code>false</code>
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+    
+    /**
+     * Returns a readable Error Message for a failed Result.
+     * 
+     * @return the Error Message or <code>null</code> if hashing succeeded
+     */
+    public String getErrorMessage() {
+        if (error == null)  {
+            return null;
+        }
+        String message = error.getMessage();
+        return String.format("%s: %s", error.getClass().getSimpleName(), message != null ? message : file.getPath());
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s: %s", file.getPath(), isSuccessful() ? String.join(" ", getHashes().values()) : getErrorMessage());
+    }
+    
+}
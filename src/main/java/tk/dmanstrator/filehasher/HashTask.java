@@ -0,0 +1,70 @@
+package tk.dmanstrator.filehasher;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Run of {@link Hasher#hashAsync(String)} on its own Thread. The Result is the Path to the Output File.
+ * Cancelling the Task interrupts the Run, which stops reading the Files promptly and deletes the incomplete Output File.
+ * 
+ * @author DManstrator
+ *
+ */
+public class HashTask extends FutureTask<String> {
+    
+    /**
+     * Metrics of the Run.
+     */
+    private final HashMetrics metrics;
+    
+    /**
+     * Creates a new Task.
+     * 
+     * @param run
+     *            Run to execute
+     * @param metrics
+     *            Metrics the Run reports to
+     */
+    HashTask(Callable<String> run, HashMetrics metrics) {
+        super(run);
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Returns the live Metrics of the Run.
+     * 
+     * @return the Metrics of the Run
+     */
+    public HashMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Returns the Progress of the Run. The Progress is unknown until the Walk found every File.
+     * 
+     * @return the Progress between <code>0</code> and <code>1</code>, <code>-1</code> while it is unknown
+     */
+    public double getProgress() {
+        if (isDone())  {
+            return 1;
+        }
+        long found = metrics.getFilesFound();
+        if (metrics.getWalkNanos() < 0)  {
+            return -1;
+        }
+        return found > 0 ? (double) (metrics.getFilesHashed() + metrics.getFilesFailed()) / found : 1;
+    }
+    
+    /**
+     * Cancels the Task. A running Task always gets interrupted, so it stops reading the Files promptly.
+     * 
+     * @param mayInterruptIfRunning
+     *            ignored, a running Task is always interrupted
+     * @return <code>false</code> if the Task couldn't be cancelled, e.g. because it is already done
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return super.cancel(true);
+    }
+    
+}
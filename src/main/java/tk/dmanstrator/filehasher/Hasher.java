@@ -3,23 +3,41 @@ package tk.dmanstrator.filehasher;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-
-import org.apache.commons.io.FileUtils;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Generates SHA-512 Hashes. Works for all files of a given Folder or for a given File.
+ * Further Algorithms (e.g. SHA-256 or MD5) can be computed in the same Pass over every File.
  * 
  * @author DManstrator
  *
@@ -27,12 +45,490 @@ import org.apache.commons.io.FileUtils;
 public class Hasher {
     
     /**
-     * Encoding for the File in case a filename or the Directory has Umlauts.
+     * Algorithm used to compute the Hashes if nothing else is configured.
+     */
+    public static final String DEFAULT_ALGORITHM = "SHA-512";
+    
+    /**
+     * Default Size of the Read Buffer in Bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = DigestReader.DEFAULT_BUFFER_SIZE;
+    
+    /**
+     * Default Amount of concurrent Reads of a network Mount, which hides the Latency of a single Read.
+     */
+    public static final int DEFAULT_REMOTE_READS = 16;
+    
+    /**
+     * Extension of the binary Manifest written next to the Output File.
+     */
+    static final String BINARY_SUFFIX = ".fhm";
+    
+    /**
+     * Suffix of the Output File while it is being written.
+     */
+    static final String PART_SUFFIX = ".part";
+    
+    /**
+     * Counts the started asynchronous Tasks to name their Threads.
+     */
+    private static final AtomicInteger TASK_COUNTER = new AtomicInteger();
+    
+    /**
+     * Reads the Files into the Digests.
+     */
+    private final DigestReader reader = new DigestReader();
+    
+    /**
+     * Algorithms used to compute the Hashes, the first one is the primary Algorithm.
+     */
+    private volatile String[] algorithms = { DEFAULT_ALGORITHM };
+    
+    /**
+     * Message Digests per Thread, one per Algorithm. Reset after every File.
+     */
+    private final ThreadLocal<MessageDigest[]> digests = new ThreadLocal<>();
+    
+    /**
+     * Message Digest per Thread for the Blocks of chunked Hashes.
+     */
+    private final ThreadLocal<MessageDigest> blockDigests = new ThreadLocal<>();
+    
+    /**
+     * Whether the Lines of the Output File are ordered by Path.
+     */
+    private volatile boolean sortedOutput = false;
+    
+    /**
+     * Whether {@link #hash(String)} also writes a binary Manifest next to the Output File.
+     */
+    private volatile boolean binaryManifest = false;
+    
+    /**
+     * Selects the Files which get hashed and the Folders which get entered.
+     */
+    private volatile HashFilter filter = new HashFilter();
+    
+    /**
+     * Whether {@link #hash(String)} keeps a Cache of the computed Hashes next to the Output File.
+     */
+    private volatile boolean cacheEnabled = false;
+    
+    /**
+     * Whether every File gets hashed again although a cached Hash is available.
+     */
+    private volatile boolean forceRehash = false;
+    
+    /**
+     * Amount of Worker Threads used to hash the Files of a Folder.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * Worker Pool, created on first use and shared by all Runs of this Hasher.
+     */
+    private ThreadPoolExecutor executor;
+    
+    /**
+     * Reader Pool for Runs with {@link #setStoreAwareReads(boolean) store-aware Reads}, created on first use.
+     */
+    private ExecutorService readExecutor;
+    
+    /**
+     * Whether the concurrent Reads get limited per File Store.
+     */
+    private volatile boolean storeAwareReads = false;
+    
+    /**
+     * Maximum concurrent Reads of a local File Store, <code>0</code> for the Amount of Worker Threads.
+     */
+    private volatile int readsPerStore = 0;
+    
+    /**
+     * Maximum concurrent Reads of a network Mount.
+     */
+    private volatile int remoteReadsPerStore = DEFAULT_REMOTE_READS;
+    
+    /**
+     * Whether the Files of a Directory are read in the Order of their File Keys.
      */
-    private static final String ENCODING = "UTF-8";
+    private volatile boolean fileKeyOrder = false;
     
     /**
-     * Hashing Method. Creates an Output File and returns the Path to it.
+     * Listeners which receive the Progress of every Run.
+     */
+    private final HashListeners listeners = new HashListeners();
+    
+    /**
+     * Sets the Size of the Read Buffer which is used to stream the Content of a File into the Digest.
+     * 
+     * @param bufferSize
+     *            Size of the Read Buffer in Bytes
+     * @throws IllegalArgumentException
+     *             When the Size is not positive
+     */
+    public void setBufferSize(int bufferSize) throws IllegalArgumentException {
+        if (bufferSize <= 0)  {
+            throw new IllegalArgumentException(String.format("Buffer Size must be positive but was %d!", bufferSize));
+        }
+        reader.setBufferSize(bufferSize);
+    }
+    
+    /**
+     * Returns the Size of the Read Buffer.
+     * 
+     * @return the Size of the Read Buffer in Bytes
+     */
+    public int getBufferSize() {
+        return reader.getBufferSize();
+    }
+    
+    /**
+     * Sets the Strategy used to read the Files. Defaults to {@link ReadMode#STREAM}.
+     * 
+     * @param readMode
+     *            Strategy to read the Files
+     * @throws IllegalArgumentException
+     *             When the Strategy is <code>null</code>
+     */
+    public void setReadMode(ReadMode readMode) throws IllegalArgumentException {
+        if (readMode == null)  {
+            throw new IllegalArgumentException("Read Mode must not be null!");
+        }
+        reader.setReadMode(readMode);
+    }
+    
+    /**
+     * Returns the Strategy used to read the Files.
+     * 
+     * @return the Strategy used to read the Files
+     */
+    public ReadMode getReadMode() {
+        return reader.getReadMode();
+    }
+    
+    /**
+     * Sets the Size from which on {@link ReadMode#AUTO} maps a File instead of reading it into a Direct Buffer.
+     * 
+     * @param mappingThreshold
+     *            Size in Bytes
+     * @throws IllegalArgumentException
+     *             When the Size is negative
+     */
+    public void setMappingThreshold(long mappingThreshold) throws IllegalArgumentException {
+        if (mappingThreshold < 0)  {
+            throw new IllegalArgumentException(String.format("Mapping Threshold must not be negative but was %d!", mappingThreshold));
+        }
+        reader.setMappingThreshold(mappingThreshold);
+    }
+    
+    /**
+     * Sets the Algorithms used to compute the Hashes. All Digests get updated from the same Read Buffers,
+     * so every File is only read once. The first Algorithm is the primary one returned by
+     * {@link #getHashOfFile(File)} and {@link #getHashesOfFiles(File)}.
+     * 
+     * @param algorithms
+     *            Names of the Algorithms, e.g. <code>SHA-512</code>, <code>SHA-256</code> and <code>MD5</code>
+     * @throws IllegalArgumentException
+     *             When no Algorithm is given or an Algorithm is not supported
+     */
+    public void setAlgorithms(String... algorithms) throws IllegalArgumentException {
+        String[] unique = Arrays.stream(algorithms).distinct().toArray(String[]::new);
+        if (unique.length == 0)  {
+            throw new IllegalArgumentException("At least one Algorithm is needed!");
+        }
+        for (String algorithm : unique)  {
+            try {
+                MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException | NullPointerException e) {
+                throw new IllegalArgumentException(String.format("The Algorithm '%s' is not supported!", algorithm), e);
+            }
+        }
+        this.algorithms = unique;
+    }
+    
+    /**
+     * Returns the Algorithms used to compute the Hashes.
+     * 
+     * @return the Names of the Algorithms, the first one is the primary Algorithm
+     */
+    public List<String> getAlgorithms() {
+        return Collections.unmodifiableList(Arrays.asList(algorithms.clone()));
+    }
+    
+    /**
+     * Sets whether the Lines of the Output File are ordered by Path. Sorting happens with
+     * temporary Files on Disk, so the Memory needed doesn't depend on the Amount of Files.
+     * 
+     * @param sortedOutput
+     *            <code>true</code> to order the Output by Path, <code>false</code> to write the
+     *            Lines in the Order the Files got hashed
+     */
+    public void setSortedOutput(boolean sortedOutput) {
+        this.sortedOutput = sortedOutput;
+    }
+    
+    /**
+     * Checks whether the Lines of the Output File are ordered by Path.
+     * 
+     * @return <code>true</code> if the Output is ordered by Path
+     */
+    public boolean isSortedOutput() {
+        return sortedOutput;
+    }
+    
+    /**
+     * Sets whether {@link #hash(String)} also writes a {@link BinaryManifest} with the same Name and the Extension
+     * <code>.fhm</code> next to the Output File, which allows looking up single Paths without parsing the Output File.
+     * 
+     * @param binaryManifest
+     *            <code>true</code> to write a binary Manifest as well
+     */
+    public void setBinaryManifest(boolean binaryManifest) {
+        this.binaryManifest = binaryManifest;
+    }
+    
+    /**
+     * Checks whether {@link #hash(String)} also writes a binary Manifest.
+     * 
+     * @return <code>true</code> if a binary Manifest is written as well
+     */
+    public boolean isBinaryManifest() {
+        return binaryManifest;
+    }
+    
+    /**
+     * Sets the Filter which selects the Files to hash. Folders the Filter excludes are skipped with everything below
+     * them before they are listed. The Filter is copied, so later Changes to it don't affect the Hasher.
+     * 
+     * @param filter
+     *            Filter to use, <code>null</code> to hash every File
+     */
+    public void setFilter(HashFilter filter) {
+        this.filter = filter != null ? new HashFilter(filter) : new HashFilter();
+    }
+    
+    /**
+     * Returns a Copy of the Filter which selects the Files to hash.
+     * 
+     * @return the Filter
+     */
+    public HashFilter getFilter() {
+        return new HashFilter(filter);
+    }
+    
+    /**
+     * Sets whether {@link #hash(String)} keeps a persistent Cache of the computed Hashes next to the Output File.
+     * Files whose Size, Modification Time and File Key didn't change since the last Run are served from the
+     * Cache without reading them. Entries of deleted Files are dropped when the Cache is saved.
+     * 
+     * @param cacheEnabled
+     *            <code>true</code> to use the Cache
+     */
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+    
+    /**
+     * Checks whether {@link #hash(String)} uses a persistent Cache.
+     * 
+     * @return <code>true</code> if the Cache is used
+     */
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+    
+    /**
+     * Sets whether every File gets hashed again although the Cache contains a Hash for it.
+     * The Cache gets refreshed with the new Hashes.
+     * 
+     * @param forceRehash
+     *            <code>true</code> to ignore the cached Hashes
+     */
+    public void setForceRehash(boolean forceRehash) {
+        this.forceRehash = forceRehash;
+    }
+    
+    /**
+     * Checks whether every File gets hashed again although the Cache contains a Hash for it.
+     * 
+     * @return <code>true</code> if the cached Hashes are ignored
+     */
+    public boolean isForceRehash() {
+        return forceRehash;
+    }
+    
+    /**
+     * Sets the Amount of Worker Threads used to hash the Files of a Folder.
+     * With one Thread the Files are hashed sequentially on the calling Thread. An existing Worker Pool gets resized
+     * instead of replaced, so a running Run keeps its Workers and finishes with the new Amount.
+     * 
+     * @param threads
+     *            Amount of Worker Threads
+     * @throws IllegalArgumentException
+     *             When the Amount is not positive
+     */
+    public synchronized void setThreads(int threads) throws IllegalArgumentException {
+        if (threads <= 0)  {
+            throw new IllegalArgumentException(String.format("Amount of Threads must be positive but was %d!", threads));
+        }
+        if (threads != this.threads && executor != null)  {
+            if (threads > executor.getMaximumPoolSize())  {  // the Core Size must never exceed the Maximum
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            }  else  {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+        this.threads = threads;
+    }
+    
+    /**
+     * Returns the Amount of Worker Threads.
+     * 
+     * @return the Amount of Worker Threads
+     */
+    public synchronized int getThreads() {
+        return threads;
+    }
+    
+    /**
+     * Stops the Worker Threads of this Hasher. They will be re-created if the Hasher gets used again.
+     */
+    public synchronized void shutdown() {
+        if (executor != null)  {
+            executor.shutdownNow();
+            executor = null;
+        }
+        if (readExecutor != null)  {
+            readExecutor.shutdownNow();
+            readExecutor = null;
+        }
+    }
+    
+    /**
+     * Sets whether the concurrent Reads of a Folder get limited per File Store. Every File Store gets its own Queue:
+     * spinning Disks are read one File at a Time, local Disks with up to {@link #setReadsPerStore(int)} and network Mounts
+     * (NFS, CIFS, ...) with up to {@link #setRemoteReadsPerStore(int)} concurrent Reads. The Readers run in their own Pool
+     * and always pick a File Store with a free Read, so a saturated Disk doesn't stall the others.
+     * Has no Effect with a single Worker Thread.
+     * 
+     * @param storeAwareReads
+     *            <code>true</code> to limit the Reads per File Store
+     */
+    public void setStoreAwareReads(boolean storeAwareReads) {
+        this.storeAwareReads = storeAwareReads;
+    }
+    
+    /**
+     * Checks whether the concurrent Reads get limited per File Store.
+     * 
+     * @return <code>true</code> if the Reads are limited per File Store
+     */
+    public boolean isStoreAwareReads() {
+        return storeAwareReads;
+    }
+    
+    /**
+     * Sets the Maximum of concurrent Reads of a local File Store which isn't a spinning Disk.
+     * 
+     * @param readsPerStore
+     *            Maximum concurrent Reads, <code>0</code> for the Amount of Worker Threads
+     * @throws IllegalArgumentException
+     *             When the Amount is negative
+     */
+    public void setReadsPerStore(int readsPerStore) throws IllegalArgumentException {
+        if (readsPerStore < 0)  {
+            throw new IllegalArgumentException(String.format("Reads per Store must not be negative but was %d!", readsPerStore));
+        }
+        this.readsPerStore = readsPerStore;
+    }
+    
+    /**
+     * Returns the Maximum of concurrent Reads of a local File Store.
+     * 
+     * @return the Maximum concurrent Reads, <code>0</code> for the Amount of Worker Threads
+     */
+    public int getReadsPerStore() {
+        return readsPerStore;
+    }
+    
+    /**
+     * Sets the Maximum of concurrent Reads of a network Mount. Can be higher than the Amount of Worker Threads,
+     * since the Readers mostly wait for the Network.
+     * 
+     * @param remoteReadsPerStore
+     *            Maximum concurrent Reads
+     * @throws IllegalArgumentException
+     *             When the Amount is not positive
+     */
+    public void setRemoteReadsPerStore(int remoteReadsPerStore) throws IllegalArgumentException {
+        if (remoteReadsPerStore <= 0)  {
+            throw new IllegalArgumentException(String.format("Remote Reads per Store must be positive but was %d!", remoteReadsPerStore));
+        }
+        this.remoteReadsPerStore = remoteReadsPerStore;
+    }
+    
+    /**
+     * Returns the Maximum of concurrent Reads of a network Mount.
+     * 
+     * @return the Maximum concurrent Reads
+     */
+    public int getRemoteReadsPerStore() {
+        return remoteReadsPerStore;
+    }
+    
+    /**
+     * Sets whether the Files of a Directory are read in the Order of their File Keys (e.g. Inodes) instead of the
+     * biggest first, which reduces Seeks on spinning Disks. Only used with {@link #setStoreAwareReads(boolean) store-aware Reads}.
+     * 
+     * @param fileKeyOrder
+     *            <code>true</code> to read in the Order of the File Keys
+     */
+    public void setFileKeyOrder(boolean fileKeyOrder) {
+        this.fileKeyOrder = fileKeyOrder;
+    }
+    
+    /**
+     * Checks whether the Files of a Directory are read in the Order of their File Keys.
+     * 
+     * @return <code>true</code> if the Files are read in the Order of their File Keys
+     */
+    public boolean isFileKeyOrder() {
+        return fileKeyOrder;
+    }
+    
+    /**
+     * Registers a Listener which receives the Progress of every following Run of {@link #hash(String)}
+     * and {@link #getHashResultsOfFiles(File)}.
+     * 
+     * @param listener
+     *            Listener to register, e.g. {@link HashMetrics}
+     * @throws IllegalArgumentException
+     *             When the Listener is <code>null</code>
+     */
+    public void addListener(HashListener listener) throws IllegalArgumentException {
+        if (listener == null)  {
+            throw new IllegalArgumentException("Listener must not be null!");
+        }
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregisters a Listener.
+     * 
+     * @param listener
+     *            Listener to unregister
+     */
+    public void removeListener(HashListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Hashing Method. Creates an Output File and returns the Path to it. The Output File is written under a
+     * temporary Name and renamed when it is complete, so a failed or cancelled Run never leaves a half-written Output File behind.
+     * Every Run gets a new Output File, an existing one is never overwritten.
      * 
      * @param mainFolderName
      *            Folder to hash
@@ -42,42 +538,350 @@ public class Hasher {
      *             When the Output File couldn't be created
      * @throws UnsupportedEncodingException
      *             When the Encoding for the Output File is Unsupported
+     * @throws UncheckedIOException
+     *             When the Output File couldn't be written
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     * @see #hashAsync(String)
      */
     public String hash(String mainFolderName) throws IllegalArgumentException, FileNotFoundException, UnsupportedEncodingException {
+        return hash(mainFolderName, listeners);
+    }
+    
+    /**
+     * Hashes a Folder on a new Thread. The returned Task reports the Progress and can be cancelled,
+     * which stops reading the Files promptly and deletes the incomplete Output File.
+     * 
+     * @param mainFolderName
+     *            Folder to hash
+     * @return the running Task, its Result is the Path to the Output File
+     * @throws IllegalArgumentException
+     *             When the Path is not a folder
+     */
+    public HashTask hashAsync(String mainFolderName) throws IllegalArgumentException {
+        if (!new File(mainFolderName).isDirectory())  {
+            throw new IllegalArgumentException(String.format("Given Folder '%s' is not a folder, re-check that!", mainFolderName));
+        }
+        HashMetrics metrics = new HashMetrics(0);
+        HashListeners runListeners = new HashListeners();
+        runListeners.add(listeners);
+        runListeners.add(metrics);
+        HashTask task = new HashTask(() -> hash(mainFolderName, runListeners), metrics);
+        Thread thread = new Thread(task, "FileHasher-Task-" + TASK_COUNTER.incrementAndGet());
+        thread.setDaemon(true);  // don't keep the JVM alive
+        thread.start();
+        return task;
+    }
+    
+    /**
+     * Hashes a Folder into a new Output File.
+     * 
+     * @param mainFolderName
+     *            Folder to hash
+     * @param listener
+     *            Receives the Progress of the Run
+     * @return the Path to the Output File
+     * @throws IllegalArgumentException
+     *             When the Path is not a folder
+     * @throws FileNotFoundException
+     *             When the Output File couldn't be created
+     * @throws UncheckedIOException
+     *             When the Output File couldn't be written
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     */
+    private String hash(String mainFolderName, HashListener listener) throws IllegalArgumentException, FileNotFoundException {
         File mainPath = new File(mainFolderName);
         if (!mainPath.isDirectory())  {
             throw new IllegalArgumentException(String.format("Given Folder '%s' is not a folder, re-check that!", mainFolderName));
         }
         
-        Map<File, String> filesWithHashes = getHashesOfFiles(mainFolderName);
-
-        String tmpFolderName = getFolderName(mainFolderName);  // tmp for using folderName in Stream#map
-        String folderName = tmpFolderName != null ? tmpFolderName : "null";
-        
-        StringBuilder builder = new StringBuilder("Path to scan: " + mainFolderName + System.lineSeparator());
-        String hashes = filesWithHashes.entrySet().stream()
-            .map(entry -> String.format("%s: %s", entry.getKey().getPath().substring(mainFolderName.length() - folderName.length()),
-                    entry.getValue()))
-            .collect(Collectors.joining(System.lineSeparator()));
-
-        String output = builder.append(hashes).toString();
+        Path root = mainPath.toPath().toAbsolutePath().normalize();
+        String folderName = root.getFileName() != null ? root.getFileName().toString() : "root";
         
-        String dateTime = getDateTime();
-        File outputFile = new File(String.format("%s-Hashes_%s.txt", folderName, dateTime));
+        File outputFile;
+        try {
+            outputFile = claimOutputFile(folderName, getDateTime());
+        } catch (IOException e) {
+            throw new FileNotFoundException(String.format("An error occured while creating the output file for '%s', "
+                    + "make sure the program has the rights to do so!", mainFolderName));
+        }
+        File partFile = new File(outputFile.getName() + PART_SUFFIX);
+        ManifestWriter writer;
         try {
-            PrintWriter writer = new PrintWriter(outputFile.getName(), ENCODING);
-            writer.write(output);
-            writer.flush();
-            writer.close();
-        } catch (FileNotFoundException e) {
+            writer = new ManifestWriter(partFile, mainFolderName, getAlgorithms(), sortedOutput);
+        } catch (IOException e) {
+            partFile.delete();
             throw new FileNotFoundException(String.format("An error occured while creating the output file '%s', "
                     + "make sure the program has the rights to do so!", outputFile.getAbsolutePath()));
-        } catch (UnsupportedEncodingException e) {
-            throw new UnsupportedEncodingException(String.format("An error occured because '%s' is an Unsupported Encoding!", ENCODING));
+        }
+        
+        HashCache cache = cacheEnabled ? createCache(mainPath) : null;
+        // the Output File and the Cache may lie inside the hashed Folder, but must not list themselves
+        HashFilter runFilter = cache != null ? filter.ignoring(outputFile.toPath(), partFile.toPath(), cache.getFile(), cache.getPartFile())
+                : filter.ignoring(outputFile.toPath(), partFile.toPath());
+        
+        // Results are written as soon as they are computed, the first Write Error stops the Run
+        AtomicReference<IOException> writeError = new AtomicReference<>();
+        boolean complete = false;
+        try {
+            hashFiles(mainPath, runFilter, cache, listener, result ->  {
+                try {
+                    long start = System.nanoTime();
+                    writer.write(result);
+                    listener.resultWritten(result, System.nanoTime() - start);
+                } catch (IOException e) {
+                    writeError.compareAndSet(null, e);
+                    throw new UncheckedIOException(e);
+                }
+            });
+            complete = !Thread.currentThread().isInterrupted();
+        } catch (RuntimeException e) {
+            if (writeError.get() == null)  {
+                discard(writer, partFile);
+                throw e;
+            }
+        } finally {
+            try {
+                if (complete && writeError.get() == null)  {
+                    writer.close();
+                }  else  {
+                    writer.discard();
+                }
+            } catch (IOException e) {
+                writeError.compareAndSet(null, e);
+            }
+        }
+        if (Thread.currentThread().isInterrupted())  {  // checked first, Workers which got cancelled may fail to write
+            discard(writer, partFile);
+            throw new CancellationException(String.format("Hashing of '%s' got cancelled!", mainFolderName));
+        }
+        if (writeError.get() != null)  {
+            discard(writer, partFile);
+            throw new UncheckedIOException(String.format("An error occured while writing the output file '%s'!",
+                    outputFile.getAbsolutePath()), writeError.get());
+        }
+        try {
+            replace(partFile.toPath(), outputFile.toPath());
+        } catch (IOException e) {
+            discard(writer, partFile);
+            throw new UncheckedIOException(String.format("An error occured while renaming the output file to '%s'!",
+                    outputFile.getAbsolutePath()), e);
+        }
+        if (cache != null)  {
+            try {
+                cache.save();
+            } catch (IOException e) {
+                throw new UncheckedIOException("An error occured while saving the cache next to the output file!", e);
+            }
+        }
+        if (binaryManifest)  {
+            File binaryFile = new File(outputFile.getName().replaceFirst("\\.txt$", BINARY_SUFFIX));
+            try {
+                BinaryManifestWriter.convert(outputFile.toPath(), binaryFile.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("An error occured while writing the binary manifest '%s'!",
+                        binaryFile.getAbsolutePath()), e);
+            }
         }
         return outputFile.getAbsolutePath();
     }
     
+    /**
+     * Watches a Folder and keeps its Output File <code>&lt;Folder&gt;-Hashes_watched.txt</code> up to date with the
+     * default Debounce Time and Flush Interval.
+     * 
+     * @param mainFolderName
+     *            Folder to watch
+     * @return the running Watcher, closing it stops watching and writes the Output File a last Time
+     * @throws IllegalArgumentException
+     *             When the Path is not a folder
+     * @throws IOException
+     *             When the Folder can't be watched
+     * @see #watch(String, File, long, long)
+     */
+    public ManifestWatcher watch(String mainFolderName) throws IllegalArgumentException, IOException {
+        String tmpFolderName = getFolderName(mainFolderName);
+        File outputFile = new File(String.format("%s-Hashes_watched.txt", tmpFolderName != null ? tmpFolderName : "null"));
+        return watch(mainFolderName, outputFile, ManifestWatcher.DEFAULT_DEBOUNCE, ManifestWatcher.DEFAULT_FLUSH_INTERVAL);
+    }
+    
+    /**
+     * Watches a Folder and keeps an Output File up to date instead of hashing the whole Folder again and again.
+     * The Folder gets hashed once on a new Thread, afterwards only created and modified Files get hashed again once no
+     * further Change arrived for them within the Debounce Time, and deleted Files are dropped. The Output File is rewritten
+     * atomically every Flush Interval if something changed. If the Cache is enabled, it is saved with every Write, so
+     * a restarted Watcher only reads the Files which changed in the meantime.
+     * 
+     * @param mainFolderName
+     *            Folder to watch
+     * @param outputFile
+     *            Output File to keep up to date
+     * @param debounce
+     *            Time in Milliseconds without further Changes before a changed File gets hashed
+     * @param flushInterval
+     *            Time in Milliseconds between two Writes of the Output File
+     * @return the running Watcher, closing it stops watching and writes the Output File a last Time
+     * @throws IllegalArgumentException
+     *             When the Path is not a folder or a Time is negative
+     * @throws IOException
+     *             When the Folder can't be watched
+     */
+    public ManifestWatcher watch(String mainFolderName, File outputFile, long debounce, long flushInterval) throws IllegalArgumentException, IOException {
+        File mainFolder = new File(mainFolderName);
+        if (!mainFolder.isDirectory())  {
+            throw new IllegalArgumentException(String.format("Given Folder '%s' is not a folder, re-check that!", mainFolderName));
+        }
+        if (debounce < 0 || flushInterval < 0)  {
+            throw new IllegalArgumentException(String.format("Debounce Time and Flush Interval must not be negative but were %d and %d!",
+                    debounce, flushInterval));
+        }
+        HashCache cache = cacheEnabled ? createCache(mainFolder) : null;
+        int workers = getThreads();
+        // the Output File and the Cache may lie inside the watched Folder, their Writes must neither be listed nor trigger Rehashes
+        Path partFile = new File(outputFile.getPath() + PART_SUFFIX).toPath();
+        HashFilter watchFilter = cache != null ? filter.ignoring(outputFile.toPath(), partFile, cache.getFile(), cache.getPartFile())
+                : filter.ignoring(outputFile.toPath(), partFile);
+        ManifestWatcher watcher = new ManifestWatcher(mainFolderName, outputFile, getAlgorithms(),
+                (file, attrs) -> getHashResultOfFile(file, attrs, null, cache, listeners), workers > 1 ? getExecutor() : null, workers,
+                cache, watchFilter, debounce, flushInterval);
+        watcher.start();
+        return watcher;
+    }
+    
+    /**
+     * Builds the Merkle Tree of a Folder: every File gets the Digest of its Content with the primary Algorithm and every
+     * Folder the Digest of the sorted Names and Digests of its Children. If the Cache is enabled, Files whose Size,
+     * Modification Time and File Key didn't change are served from the same Cache {@link #hash(String)} uses, so only
+     * changed Files are read and only the Folder Digests on their Path to the Root change.
+     * 
+     * @param mainFolder
+     *            Folder to hash
+     * @return the Tree of the Folder
+     * @throws IllegalArgumentException
+     *             When the Path is not a folder
+     * @throws UncheckedIOException
+     *             When the Cache couldn't be saved
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     * @see MerkleTree#compare(MerkleTree)
+     */
+    public MerkleTree getMerkleTree(File mainFolder) throws IllegalArgumentException {
+        if (!mainFolder.isDirectory())  {
+            throw new IllegalArgumentException(String.format("Given Folder '%s' is not a folder, re-check that!", mainFolder));
+        }
+        HashCache cache = cacheEnabled ? createCache(mainFolder) : null;
+        String algorithm = algorithms[0];
+        MerkleBuilder builder = new MerkleBuilder((file, attrs) -> getHashResultOfFile(file, attrs, null, cache, listeners),
+                getThreads() > 1 ? getExecutor() : null, () -> createDigest(algorithm), filter);
+        MerkleTree tree = builder.build(mainFolder.toPath());
+        if (cache != null)  {
+            try {
+                cache.save();
+            } catch (IOException e) {
+                throw new UncheckedIOException("An error occured while saving the cache!", e);
+            }
+        }
+        return tree;
+    }
+    
+    /**
+     * Claims a new Output File <code>&lt;Folder&gt;-Hashes_&lt;Time&gt;.txt</code> in the Working Directory. If that Name is
+     * taken, e.g. by a Folder with the same Name hashed within the same Second, a Counter gets appended. The Name gets
+     * claimed by creating its temporary File, so neither another Run nor another Process overwrites the Output File.
+     * 
+     * @param folderName
+     *            Name of the hashed Folder
+     * @param dateTime
+     *            Start of the Run
+     * @return the Output File, its temporary File exists and is empty
+     * @throws IOException
+     *             When the temporary File couldn't be created
+     */
+    private static File claimOutputFile(String folderName, String dateTime) throws IOException {
+        for (int counter = 1; ; counter++)  {
+            File outputFile = new File(counter == 1 ? String.format("%s-Hashes_%s.txt", folderName, dateTime)
+                    : String.format("%s-Hashes_%s_%d.txt", folderName, dateTime, counter));
+            if (outputFile.exists())  {
+                continue;
+            }
+            Path partFile = new File(outputFile.getName() + PART_SUFFIX).toPath();
+            try {
+                Files.createFile(partFile);
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            }
+            if (outputFile.exists())  {  // the Run which held the Name finished in between
+                Files.delete(partFile);
+                continue;
+            }
+            return outputFile;
+        }
+    }
+    
+    /**
+     * Creates the Cache for a Folder, which is kept next to the Output Files.
+     * 
+     * @param mainFolder
+     *            Folder to hash
+     * @return the Cache
+     * @see #getCacheFile(File)
+     */
+    private HashCache createCache(File mainFolder) {
+        return new HashCache(getCacheFile(mainFolder).toPath(),
+                mainFolder.toPath().toAbsolutePath().normalize() + File.pathSeparator + String.join(",", algorithms));
+    }
+    
+    /**
+     * Returns the Cache File of a Folder, e.g. <code>data-3f0a9c1e5b7d2468-Hashes.cache</code>. Named after the Folder and
+     * a Digest of its absolute Path, so Folders with the same Name don't share and overwrite one Cache.
+     * 
+     * @param mainFolder
+     *            Folder to hash
+     * @return the Cache File in the Working Directory
+     */
+    static File getCacheFile(File mainFolder) {
+        Path root = mainFolder.toPath().toAbsolutePath().normalize();
+        Path name = root.getFileName();
+        String digest = Hex.encode(createDigest("SHA-256").digest(root.toString().getBytes(StandardCharsets.UTF_8)));
+        return new File(String.format("%s-%s-Hashes.cache", name != null ? name : "root", digest.substring(0, 16)));
+    }
+    
+    /**
+     * Replaces a File by a completely written one, atomically if the File System supports it.
+     * 
+     * @param source
+     *            Completely written File under its temporary Name
+     * @param target
+     *            File to replace
+     * @throws IOException
+     *             When the File couldn't be renamed
+     */
+    static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Closes and deletes an incomplete Output File.
+     * 
+     * @param writer
+     *            Writer of the Output File
+     * @param partFile
+     *            Output File under its temporary Name
+     */
+    private static void discard(ManifestWriter writer, File partFile) {
+        try {
+            writer.discard();
+            Files.deleteIfExists(partFile.toPath());
+        } catch (IOException e) {
+            partFile.deleteOnExit();
+        }
+    }
+    
     /**
      * Computes a SHA-512 Hash for every file of the given folder path.
      * 
@@ -94,14 +898,224 @@ public class Hasher {
      * 
      * @param mainFolder
      *            Path as File to the starting Directory
-     * @return a Map with the File as the Key and the SHA-512 Hash as the Value
+     * @return a Map with the File as the Key and the SHA-512 Hash as the Value,
+     *         Files which couldn't be hashed are left out
+     * @see #getHashResultsOfFiles(File)
+     * @see #getDigestStore(File)
      */
     public Map<File, String> getHashesOfFiles(File mainFolder)  {
+        Map<File, String> hashes = new HashMap<>();
+        for (HashResult result : getHashResultsOfFiles(mainFolder).values())  {
+            if (result.isSuccessful())  {
+                hashes.put(result.getFile(), result.getHash());
+            }
+        }
+        return hashes;
+    }
+    
+    /**
+     * Computes a SHA-512 Hash for every file of the given folder path and keeps track of Files which couldn't be hashed.
+     * The Folder gets walked while the found Files are already being hashed.
+     * 
+     * @param mainFolder
+     *            Path as File to the starting Directory
+     * @return a Map with the File as the Key and the Result of hashing it as the Value
+     */
+    public Map<File, HashResult> getHashResultsOfFiles(File mainFolder)  {
+        Map<File, HashResult> results = new ConcurrentHashMap<>();
         if (!mainFolder.isDirectory())  {
-            return new HashMap<>();
+            return results;
+        }
+        
+        hashFiles(mainFolder, filter, null, listeners, result -> results.put(result.getFile(), result));
+        return results;
+    }
+    
+    /**
+     * Computes the Digest of the primary Algorithm for every File of the given Folder and keeps them in a compact Store.
+     * Needs a Fraction of the Memory of {@link #getHashesOfFiles(File)}, since neither a File Object nor a hexadecimal
+     * String is kept per File.
+     * 
+     * @param mainFolder
+     *            Path as File to the starting Directory
+     * @return the Store with the Digests, empty if the Path is not a Folder
+     */
+    public DigestStore getDigestStore(File mainFolder)  {
+        String algorithm = algorithms[0];
+        MessageDigest md = createDigest(algorithm);
+        int digestLength = md.getDigestLength() > 0 ? md.getDigestLength() : md.digest().length;
+        DigestStore store = new DigestStore(mainFolder.toPath(), algorithm, digestLength);
+        if (mainFolder.isDirectory())  {
+            hashFiles(mainFolder, filter, null, listeners, result ->  {
+                if (result.isSuccessful())  {
+                    store.add(result.getFile(), result.getDigest(0));
+                }  else  {
+                    store.addFailure();
+                }
+            });
+        }
+        store.trim();
+        return store;
+    }
+    
+    /**
+     * Hashes every File of the given Folder and passes the Results to the Consumer as soon as they are computed.
+     * 
+     * @param mainFolder
+     *            Path as File to the starting Directory
+     * @param filter
+     *            Selects the Files to hash and the Folders to enter
+     * @param cache
+     *            Cache to look up and store the Hashes, <code>null</code> to hash every File
+     * @param listener
+     *            Receives the Progress of the Run
+     * @param consumer
+     *            Receives the Results, gets called from several Threads
+     */
+    private void hashFiles(File mainFolder, HashFilter filter, HashCache cache, HashListener listener, Consumer<HashResult> consumer) {
+        int workers = getThreads();
+        ExecutorService pool = workers > 1 ? getExecutor() : null;
+        ReadScheduler scheduler = null;
+        if (workers > 1 && storeAwareReads)  {
+            int localReads = readsPerStore > 0 ? readsPerStore : workers;
+            scheduler = new ReadScheduler(localReads, remoteReadsPerStore, fileKeyOrder);
+            workers = Math.max(workers, Math.max(localReads, remoteReadsPerStore));  // Readers waiting for a Lane are cheap
+            pool = getReadExecutor();
+        }
+        HashPipeline pipeline = new HashPipeline((file, attrs, afterRead) -> getHashResultOfFile(file, attrs, afterRead, cache, listener),
+                pool, workers, listener, scheduler, filter);
+        long start = System.nanoTime();
+        listener.runStarted(mainFolder);
+        try {
+            pipeline.run(mainFolder.toPath(), consumer);
+        } finally {
+            listener.runFinished(System.nanoTime() - start);
         }
-        Collection<File> listFiles = FileUtils.listFiles(mainFolder, null, true);
-        return listFiles.stream().collect(Collectors.toMap(p -> p, p -> getHashOfFile(p)));
+    }
+    
+    /**
+     * Generates the Hash of a File found while walking a Folder. Uses the cached Hash if the File didn't change.
+     * 
+     * @param file
+     *            File to get the Hash from
+     * @param attrs
+     *            Attributes of the File found by the Walk
+     * @param afterRead
+     *            Gets called once the File got read while the Worker Pool still digests it, <code>null</code> to digest
+     *            the File while reading it
+     * @param cache
+     *            Cache to look up and store the Hash, <code>null</code> to always hash the File
+     * @param listener
+     *            Receives the Result and the Time spent on the File
+     * @return the Result containing either the Hash or the Error which occurred
+     */
+    private HashResult getHashResultOfFile(File file, BasicFileAttributes attrs, Runnable afterRead, HashCache cache, HashListener listener) {
+        long start = System.nanoTime();
+        String[] names = algorithms;
+        if (cache != null && !forceRehash)  {
+            String[] cachedHashes = cache.lookup(file, attrs);
+            if (cachedHashes != null && cachedHashes.length == names.length)  {
+                Map<String, String> hashes = new LinkedHashMap<>();
+                for (int i = 0; i < names.length; i++)  {
+                    hashes.put(names[i], cachedHashes[i]);
+                }
+                HashResult result = HashResult.success(file, hashes);
+                listener.fileHashed(result, 0, System.nanoTime() - start);
+                return result;
+            }
+        }
+        HashResult result = getHashResultOfFile(file, names, afterRead);
+        if (cache != null && result.isSuccessful())  {
+            cache.store(file, attrs, result.getHashes().values().toArray(new String[0]));
+        }
+        listener.fileHashed(result, result.isSuccessful() ? attrs.size() : 0, System.nanoTime() - start);
+        return result;
+    }
+    
+    /**
+     * Finds all Files of the given Folder which have the same Content. Files are grouped by their Size first,
+     * same-sized big Files are compared by a cheap partial Hash of their first and last Block and only the
+     * remaining Candidates get a full Hash of the primary Algorithm.
+     * 
+     * @param mainFolder
+     *            Path as File to the starting Directory
+     * @return the Groups of Files with the same Content by their Hash, biggest Files first.
+     *         Files which couldn't be read are left out
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     */
+    public Map<String, List<File>> getDuplicates(File mainFolder)  {
+        if (!mainFolder.isDirectory())  {
+            return new LinkedHashMap<>();
+        }
+        String[] primary = { algorithms[0] };
+        DuplicateFinder finder = new DuplicateFinder(file -> getHashResultOfFile(file, primary), getThreads() > 1 ? getExecutor() : null, filter);
+        return finder.find(mainFolder.toPath());
+    }
+    
+    /**
+     * Verifies the Folder named in an Output File of {@link #hash(String)} against the listed Hashes.
+     * 
+     * @param manifestFile
+     *            Output File listing the expected Hashes
+     * @return the mismatched, missing, unreadable and new Files
+     * @throws IOException
+     *             When the Output File couldn't be read
+     * @throws IllegalArgumentException
+     *             When the File is not an Output File or one of its Algorithms isn't supported
+     * @see #verify(File, File, boolean)
+     */
+    public VerificationResult verify(File manifestFile) throws IOException, IllegalArgumentException {
+        return verify(manifestFile, null, false);
+    }
+    
+    /**
+     * Verifies a Folder against an Output File of {@link #hash(String)}. Every listed File gets hashed again with
+     * the Algorithms of the Output File by the Worker Threads while the Output File is still being read,
+     * afterwards the Folder gets walked to find Files which aren't listed.
+     * 
+     * @param manifestFile
+     *            Output File listing the expected Hashes
+     * @param mainFolder
+     *            Folder to verify, e.g. a Copy of the hashed Folder, <code>null</code> for the Folder named in the Output File
+     * @param failFast
+     *            <code>true</code> to stop at the first mismatched, missing or unreadable File,
+     *            new Files aren't searched then
+     * @return the mismatched, missing, unreadable and new Files
+     * @throws IOException
+     *             When the Output File couldn't be read
+     * @throws IllegalArgumentException
+     *             When the File is not an Output File, one of its Algorithms isn't supported or the Folder doesn't exist
+     */
+    public VerificationResult verify(File manifestFile, File mainFolder, boolean failFast) throws IOException, IllegalArgumentException {
+        if (mainFolder != null && !mainFolder.isDirectory())  {
+            throw new IllegalArgumentException(String.format("Given Folder '%s' is not a folder, re-check that!", mainFolder));
+        }
+        int workers = getThreads();
+        ManifestVerifier verifier = new ManifestVerifier(this::getHashResultOfFile, workers > 1 ? getExecutor() : null, workers, filter);
+        return verifier.verify(manifestFile.toPath(), mainFolder != null ? mainFolder.toPath() : null, failFast);
+    }
+    
+    /**
+     * Compares two Output Files of {@link #hash(String)} or binary Manifests, e.g. of Yesterday and Today, without
+     * loading them into Memory. Both are merged in the Order of their Paths, so the Memory needed doesn't depend on their Size.
+     * Files with the same Path but another Digest are changed, a Path which only disappeared and one which only appeared
+     * with the same Digest are a Move. The Paths are compared relative to the scanned Folders, so a Replica can be compared as well.
+     * 
+     * @param oldManifest
+     *            Older Output File or binary Manifest
+     * @param newManifest
+     *            Newer Output File or binary Manifest
+     * @param consumer
+     *            Receives every Difference, the changed Paths first in the Order of their Paths
+     * @return the Amounts of the Differences
+     * @throws IOException
+     *             When an Output File couldn't be read
+     * @throws IllegalArgumentException
+     *             When a File is not an Output File or the primary Algorithms differ
+     */
+    public ManifestDiff diff(File oldManifest, File newManifest, Consumer<ManifestDiff.Difference> consumer) throws IOException, IllegalArgumentException {
+        return ManifestDiffer.diff(oldManifest.toPath(), newManifest.toPath(), consumer);
     }
     
     /**
@@ -123,20 +1137,266 @@ public class Hasher {
      *            File to get the Hash from
      * @return a SHA-512 Hash of given File or <code>null</code> if something
      *         went wrong
+     * @see #getHashResultOfFile(File)
+     */
+    public String getHashOfFile(File file) {
+        return getHashResultOfFile(file).getHash();
+    }
+    
+    /**
+     * Generates the Hashes of a File for every configured Algorithm in a single Pass. The File gets read with
+     * the configured {@link ReadMode} through reused Buffers, so the Memory needed stays the same regardless of the File Size.
+     * 
+     * @param file
+     *            File to get the Hashes from
+     * @return the Result containing either the Hashes or the Error which occurred
      * @see <a href=
      *      "https://stackoverflow.com/a/33085670">https://stackoverflow.com/a/33085670</a>
      */
-    public String getHashOfFile(File file) {
+    public HashResult getHashResultOfFile(File file) {
+        return getHashResultOfFile(file, algorithms);
+    }
+    
+    /**
+     * Generates the Hashes of a File for the given Algorithms in a single Pass.
+     * 
+     * @param file
+     *            File to get the Hashes from
+     * @param names
+     *            Names of the Algorithms
+     * @return the Result containing either the Hashes or the Error which occurred
+     */
+    private HashResult getHashResultOfFile(File file, String[] names) {
+        return getHashResultOfFile(file, names, null);
+    }
+    
+    /**
+     * Generates the Hashes of a File for the given Algorithms in a single Pass.
+     * 
+     * @param file
+     *            File to get the Hashes from
+     * @param names
+     *            Names of the Algorithms
+     * @param afterRead
+     *            Gets called once the File got read while the Worker Pool still digests it, <code>null</code> to digest
+     *            the File while reading it
+     * @return the Result containing either the Hashes or the Error which occurred
+     */
+    private HashResult getHashResultOfFile(File file, String[] names, Runnable afterRead) {
+        MessageDigest[] mds = getDigests(names);
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-512");
-            byte[] digest = md.digest(Files.readAllBytes(Paths.get(file.getAbsolutePath())));
-            StringBuilder sb = new StringBuilder();
-            for(int i=0; i< digest.length; i++){
-               sb.append(Integer.toString((digest[i] & 0xff) + 0x100, 16).substring(1));
+            if (afterRead != null)  {
+                reader.read(file.toPath(), mds, getExecutor(), afterRead);
+            }  else  {
+                reader.read(file.toPath(), mds);
             }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException | IOException e) {
-            return null;
+        } catch (IOException e) {
+            resetDigests(mds);
+            return HashResult.failure(file, e);
+        } catch (InvalidPathException e) {
+            resetDigests(mds);
+            return HashResult.failure(file, new IOException(e.getMessage(), e));
+        }
+        byte[][] raw = new byte[mds.length][];
+        for (int i = 0; i < mds.length; i++)  {
+            raw[i] = mds[i].digest();
+        }
+        return HashResult.success(file, names, raw);
+    }
+    
+    /**
+     * Hashes a File in Blocks of {@value ChunkedHasher#DEFAULT_BLOCK_SIZE} Bytes.
+     * 
+     * @param file
+     *            File to hash
+     * @return the Hashes of the Blocks and the Top Hash
+     * @throws IOException
+     *             When the File couldn't be read
+     * @see #getChunkedHash(File, int)
+     */
+    public ChunkedHash getChunkedHash(File file) throws IOException {
+        return getChunkedHash(file, ChunkedHasher.DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Hashes a File in fixed-size Blocks with the primary Algorithm. The Blocks are hashed in parallel by the Worker
+     * Threads, so a single huge File is hashed by every Worker. The Top Hash is the Hash of all Block Digests, so it
+     * differs from the Hash of {@link #getHashOfFile(File)}.
+     * 
+     * @param file
+     *            File to hash
+     * @param blockSize
+     *            Size of a Block in Bytes
+     * @return the Hashes of the Blocks and the Top Hash
+     * @throws IOException
+     *             When the File couldn't be read
+     * @throws IllegalArgumentException
+     *             When the Block Size is not positive or too small for the File
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     */
+    public ChunkedHash getChunkedHash(File file, int blockSize) throws IOException, IllegalArgumentException {
+        if (blockSize <= 0)  {
+            throw new IllegalArgumentException(String.format("Block Size must be positive but was %d!", blockSize));
+        }
+        return createChunkedHasher(algorithms[0]).hash(file, blockSize);
+    }
+    
+    /**
+     * Hashes every Block of a File again and returns the Blocks which don't match the given Hashes anymore. A File
+     * whose Size changed never matches: Blocks which got cut off are corrupt, and if the File grew, its last Block is.
+     * 
+     * @param file
+     *            File to check, e.g. a Copy of the hashed File
+     * @param expected
+     *            Hashes to check against
+     * @return the Indices of the corrupted Blocks in ascending Order
+     * @throws IOException
+     *             When the File couldn't be read
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     */
+    public List<Integer> findCorruptBlocks(File file, ChunkedHash expected) throws IOException {
+        int[] blocks = new int[expected.getBlockCount()];
+        Arrays.setAll(blocks, i -> i);
+        return createChunkedHasher(expected.getAlgorithm()).findCorruptBlocks(file, expected, blocks);
+    }
+    
+    /**
+     * Hashes a single Block of a File again and checks it against the given Hashes.
+     * 
+     * @param file
+     *            File to check, e.g. a Copy of the hashed File
+     * @param expected
+     *            Hashes to check against
+     * @param block
+     *            Index of the Block
+     * @return <code>true</code> if the Block still matches, <code>false</code> if it got cut off or, being the last Block, the File grew
+     * @throws IOException
+     *             When the Block couldn't be read
+     * @throws IndexOutOfBoundsException
+     *             When there is no Block with the Index
+     */
+    public boolean verifyBlock(File file, ChunkedHash expected, int block) throws IOException, IndexOutOfBoundsException {
+        if (block < 0 || block >= expected.getBlockCount())  {
+            throw new IndexOutOfBoundsException(String.format("Block %d is out of bounds for %d blocks!", block, expected.getBlockCount()));
+        }
+        return createChunkedHasher(expected.getAlgorithm()).findCorruptBlocks(file, expected, new int[] { block }).isEmpty();
+    }
+    
+    /**
+     * Creates a chunked Hasher which hashes the Blocks with the given Algorithm in the Worker Pool.
+     * 
+     * @param algorithm
+     *            Name of the Algorithm
+     * @return the chunked Hasher
+     */
+    private ChunkedHasher createChunkedHasher(String algorithm) {
+        return new ChunkedHasher(reader, getThreads() > 1 ? getExecutor() : null, () -> getBlockDigest(algorithm));
+    }
+    
+    /**
+     * Returns the Message Digest for Blocks of the current Thread. Gets re-created if the Algorithm changed.
+     * 
+     * @param algorithm
+     *            Name of the Algorithm
+     * @return the Message Digest
+     */
+    private MessageDigest getBlockDigest(String algorithm) {
+        MessageDigest md = blockDigests.get();
+        if (md == null || !md.getAlgorithm().equals(algorithm))  {
+            md = createDigest(algorithm);
+            blockDigests.set(md);
+        }
+        return md;
+    }
+    
+    /**
+     * Returns the Message Digests of the current Thread. Gets re-created if the Algorithms changed.
+     * 
+     * @param names
+     *            Names of the Algorithms
+     * @return the Message Digests in the Order of the Algorithms
+     */
+    private MessageDigest[] getDigests(String[] names) {
+        MessageDigest[] mds = digests.get();
+        boolean upToDate = mds != null && mds.length == names.length;
+        for (int i = 0; upToDate && i < names.length; i++)  {
+            upToDate = mds[i].getAlgorithm().equals(names[i]);
+        }
+        if (!upToDate)  {
+            mds = new MessageDigest[names.length];
+            for (int i = 0; i < names.length; i++)  {
+                mds[i] = createDigest(names[i]);
+            }
+            digests.set(mds);
+        }
+        return mds;
+    }
+    
+    /**
+     * Resets the given Message Digests so they can be reused.
+     * 
+     * @param mds
+     *            Message Digests to reset
+     */
+    private static void resetDigests(MessageDigest[] mds) {
+        for (MessageDigest md : mds)  {
+            md.reset();
+        }
+    }
+    
+    /**
+     * Returns the Worker Pool and creates it if necessary.
+     * 
+     * @return the Worker Pool
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null)  {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory factory = runnable ->  {
+                Thread thread = new Thread(runnable, "FileHasher-Worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);  // don't keep the JVM alive
+                return thread;
+            };
+            executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), factory);
+        }
+        return executor;
+    }
+    
+    /**
+     * Returns the Reader Pool for store-aware Runs and creates it if necessary. The Pool grows with the Amount of
+     * Readers a Run needs, so deep Queues of network Mounts don't take Threads away from the Worker Pool.
+     * 
+     * @return the Reader Pool
+     */
+    private synchronized ExecutorService getReadExecutor() {
+        if (readExecutor == null)  {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory factory = runnable ->  {
+                Thread thread = new Thread(runnable, "FileHasher-Reader-" + counter.incrementAndGet());
+                thread.setDaemon(true);  // don't keep the JVM alive
+                return thread;
+            };
+            readExecutor = Executors.newCachedThreadPool(factory);
+        }
+        return readExecutor;
+    }
+    
+    /**
+     * Creates a new Message Digest for the given Algorithm.
+     * 
+     * @param algorithm
+     *            Name of the Algorithm
+     * @return a new Message Digest
+     * @throws IllegalStateException
+     *             When the Algorithm isn't supported by the JVM
+     */
+    private static MessageDigest createDigest(String algorithm) throws IllegalStateException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(String.format("The Algorithm '%s' is not supported!", algorithm), e);
         }
     }
     
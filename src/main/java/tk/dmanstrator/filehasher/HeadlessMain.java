@@ -0,0 +1,248 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entry Point to hash Folders without the GUI. Unlike {@link Main} it doesn't extend the JavaFX Application, so
+ * neither JavaFX nor the Desktop are touched and it runs on a JVM without them. One Hasher serves every Job of a
+ * Run, so its Thread Pools and the warmed-up Code are reused instead of paying the Startup of a new JVM per Folder.
+ * <br />
+ * Every Job is answered with one Line: <code>OK&lt;TAB&gt;folder&lt;TAB&gt;output file</code> or
+ * <code>ERROR&lt;TAB&gt;folder&lt;TAB&gt;message</code>.
+ * 
+ * @author DManstrator
+ *
+ */
+public final class HeadlessMain {
+    
+    /**
+     * Starts the Answer of a hashed Folder.
+     */
+    static final String OK = "OK";
+    
+    /**
+     * Starts the Answer of a Folder which couldn't be hashed.
+     */
+    static final String ERROR = "ERROR";
+    
+    /**
+     * Separates the Parts of an Answer.
+     */
+    private static final char SEPARATOR = '\t';
+    
+    /**
+     * Counts the Connections to name their Threads.
+     */
+    private static final AtomicInteger CONNECTION_COUNTER = new AtomicInteger();
+    
+    private HeadlessMain() {
+    }
+    
+    /**
+     * Main Method. Hashes every given Folder and, with <code>--stdin</code> or <code>--port &lt;port&gt;</code>,
+     * afterwards every Folder read line by line from the Standard Input or from Connections to the local Port.
+     * <code>--cache</code>, <code>--sorted</code>, <code>--binary</code>, <code>--threads &lt;threads&gt;</code> and the
+     * Options of {@link HashFilter#removeOptions(List)} configure the shared Hasher.
+     * 
+     * @param args
+     *            Program Arguments
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.in, System.out));
+    }
+    
+    /**
+     * Runs the Jobs given by the Program Arguments.
+     * 
+     * @param args
+     *            Program Arguments
+     * @param in
+     *            Input to read Jobs from with <code>--stdin</code>
+     * @param out
+     *            Output the Answers are written to
+     * @return the Exit Code, <code>0</code> if every Folder was hashed, <code>1</code> if a Folder failed
+     *         and <code>-1</code> for invalid Arguments
+     */
+    static int run(String[] args, InputStream in, OutputStream out) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        Hasher hasher = new Hasher();
+        boolean readStdin;
+        int port = -1;
+        try {
+            hasher.setFilter(HashFilter.removeOptions(arguments));
+            hasher.setCacheEnabled(arguments.remove("--cache"));
+            hasher.setSortedOutput(arguments.remove("--sorted"));
+            hasher.setBinaryManifest(arguments.remove("--binary"));
+            readStdin = arguments.remove("--stdin");
+            Integer threads = removeNumber(arguments, "--threads");
+            if (threads != null)  {
+                hasher.setThreads(threads);
+            }
+            Integer portNumber = removeNumber(arguments, "--port");
+            if (portNumber != null)  {
+                port = portNumber;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        if (arguments.stream().anyMatch(argument -> argument.startsWith("--")) || (readStdin && port >= 0)
+                || (arguments.isEmpty() && !readStdin && port < 0))  {
+            System.err.println("Usage: [options] <folder>... | [options] [<folder>...] --stdin | [options] [<folder>...] --port <port>");
+            System.err.println("Options: --cache --sorted --binary --threads <threads> --include <pattern> --exclude <pattern>"
+                    + " --min-size <bytes> --max-size <bytes> --max-depth <depth> --skip-hidden --no-follow-links");
+            return -1;
+        }
+        
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), true);
+        try {
+            boolean failed = false;
+            for (String folder : arguments)  {
+                failed |= !answer(hasher, folder, writer);
+            }
+            if (readStdin)  {
+                failed |= !serve(hasher, new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), writer);
+            }  else if (port >= 0)  {
+                listen(hasher, port);
+            }
+            return failed ? 1 : 0;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        } finally {
+            hasher.shutdown();
+        }
+    }
+    
+    /**
+     * Hashes every Folder read line by line until the End of the Input. Empty Lines are skipped.
+     * 
+     * @param hasher
+     *            Hasher shared by all Jobs
+     * @param reader
+     *            Input of the Jobs
+     * @param writer
+     *            Output of the Answers
+     * @return <code>true</code> if every Folder was hashed
+     * @throws IOException
+     *             When the Input couldn't be read
+     */
+    private static boolean serve(Hasher hasher, BufferedReader reader, PrintWriter writer) throws IOException {
+        boolean successful = true;
+        String line;
+        while ((line = reader.readLine()) != null)  {
+            if (!line.trim().isEmpty())  {
+                successful &= answer(hasher, line.trim(), writer);
+            }
+        }
+        return successful;
+    }
+    
+    /**
+     * Accepts Connections to a Port of the Loopback Address until the Program gets terminated. Every Connection
+     * sends Folders line by line and gets the Answers on the same Connection, Folders are resolved against the
+     * Working Directory of this Program.
+     * 
+     * @param hasher
+     *            Hasher shared by all Jobs
+     * @param port
+     *            Port to listen on, <code>0</code> for any free Port
+     * @throws IOException
+     *             When the Port couldn't be opened
+     */
+    private static void listen(Hasher hasher, int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress()))  {
+            System.err.println(String.format("Listening on %s:%d", server.getInetAddress().getHostAddress(), server.getLocalPort()));
+            while (true)  {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() ->  {
+                    try (Socket client = socket)  {
+                        serve(hasher, new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8)),
+                                new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8), true));
+                    } catch (IOException e) {
+                        System.err.println(String.format("Connection closed: %s", e.getMessage()));
+                    }
+                }, "FileHasher-Connection-" + CONNECTION_COUNTER.incrementAndGet());
+                connection.setDaemon(true);  // don't keep the JVM alive
+                connection.start();
+            }
+        }
+    }
+    
+    /**
+     * Hashes a Folder and writes the Answer. The Jobs of concurrent Connections run one after another, each of them
+     * already uses every Thread of the Hasher.
+     * 
+     * @param hasher
+     *            Hasher shared by all Jobs
+     * @param folder
+     *            Folder to hash
+     * @param writer
+     *            Output of the Answer
+     * @return <code>true</code> if the Folder was hashed
+     */
+    private static boolean answer(Hasher hasher, String folder, PrintWriter writer) {
+        String answer;
+        boolean successful;
+        try {
+            String outputFile;
+            synchronized (hasher)  {
+                outputFile = hasher.hash(folder);
+            }
+            answer = OK + SEPARATOR + folder + SEPARATOR + outputFile;
+            successful = true;
+        } catch (FileNotFoundException | UnsupportedEncodingException | RuntimeException e) {  // one failed Job mustn't end the others
+            answer = ERROR + SEPARATOR + folder + SEPARATOR + (e.getMessage() != null ? e.getMessage() : e.toString());
+            successful = false;
+        }
+        synchronized (writer)  {
+            writer.println(answer);
+        }
+        return successful;
+    }
+    
+    /**
+     * Removes an Option with a numeric Value from the Program Arguments.
+     * 
+     * @param args
+     *            Program Arguments, the Option gets removed
+     * @param option
+     *            Name of the Option
+     * @return the Value or <code>null</code> if the Option isn't given
+     * @throws IllegalArgumentException
+     *             When the Value is missing or not a Number
+     */
+    private static Integer removeNumber(List<String> args, String option) throws IllegalArgumentException {
+        int index = args.indexOf(option);
+        if (index < 0)  {
+            return null;
+        }
+        if (index + 1 >= args.size())  {
+            throw new IllegalArgumentException(String.format("Option '%s' needs a value!", option));
+        }
+        String value = args.remove(index + 1);
+        args.remove(index);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Value '%s' of option '%s' is not a number!", value, option), e);
+        }
+    }
+    
+}
@@ -0,0 +1,135 @@
+package tk.dmanstrator.filehasher;
+
+import java.util.Arrays;
+
+/**
+ * Table-driven Conversion between Digests and their hexadecimal Representation. The Encoders write into
+ * given Targets, so encoding a Digest doesn't allocate anything besides the Target.
+ * 
+ * @author DManstrator
+ *
+ */
+final class Hex {
+    
+    /**
+     * Both lowercase hexadecimal Digits of every Byte Value, the Digits of a Byte start at twice its Value.
+     */
+    private static final char[] DIGITS = new char[512];
+    
+    /**
+     * Value of every hexadecimal Digit by its Character, <code>-1</code> for other Characters.
+     */
+    private static final byte[] VALUES = new byte[128];
+    
+    static {
+        char[] digits = "0123456789abcdef".toCharArray();
+        for (int i = 0; i < 256; i++)  {
+            DIGITS[2 * i] = digits[i >>> 4];
+            DIGITS[2 * i + 1] = digits[i & 0xF];
+        }
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < digits.length; i++)  {
+            VALUES[digits[i]] = (byte) i;
+            VALUES[Character.toUpperCase(digits[i])] = (byte) i;
+        }
+    }
+    
+    private Hex() {
+    }
+    
+    /**
+     * Converts a Digest to its hexadecimal Representation.
+     * 
+     * @param digest
+     *            Digest to convert
+     * @return the Digest as a lowercase hexadecimal String
+     */
+    static String encode(byte[] digest) {
+        char[] chars = new char[digest.length * 2];
+        encode(digest, 0, digest.length, chars, 0);
+        return new String(chars);
+    }
+    
+    /**
+     * Writes the hexadecimal Representation of a Part of an Array into a Char Array.
+     * 
+     * @param source
+     *            Array containing the Bytes
+     * @param offset
+     *            Index of the first Byte
+     * @param length
+     *            Amount of Bytes
+     * @param target
+     *            Receives two Characters per Byte
+     * @param targetOffset
+     *            Index of the first Character in the Target
+     */
+    static void encode(byte[] source, int offset, int length, char[] target, int targetOffset) {
+        for (int i = 0; i < length; i++)  {
+            int index = (source[offset + i] & 0xFF) << 1;
+            target[targetOffset++] = DIGITS[index];
+            target[targetOffset++] = DIGITS[index + 1];
+        }
+    }
+    
+    /**
+     * Appends the hexadecimal Representation of a Part of an Array to a Builder.
+     * 
+     * @param source
+     *            Array containing the Bytes
+     * @param offset
+     *            Index of the first Byte
+     * @param length
+     *            Amount of Bytes
+     * @param target
+     *            Receives two Characters per Byte
+     */
+    static void append(byte[] source, int offset, int length, StringBuilder target) {
+        target.ensureCapacity(target.length() + length * 2);
+        for (int i = 0; i < length; i++)  {
+            int index = (source[offset + i] & 0xFF) << 1;
+            target.append(DIGITS[index]).append(DIGITS[index + 1]);
+        }
+    }
+    
+    /**
+     * Converts a hexadecimal Representation back to the Digest.
+     * 
+     * @param hex
+     *            hexadecimal Representation, upper- or lowercase
+     * @return the Digest
+     * @throws IllegalArgumentException
+     *             When the String is not a hexadecimal Representation
+     */
+    static byte[] decode(CharSequence hex) throws IllegalArgumentException {
+        if (hex.length() % 2 != 0)  {
+            throw new IllegalArgumentException(String.format("'%s' has an odd length!", hex));
+        }
+        byte[] digest = new byte[hex.length() / 2];
+        for (int i = 0; i < digest.length; i++)  {
+            digest[i] = (byte) (value(hex, 2 * i) << 4 | value(hex, 2 * i + 1));
+        }
+        return digest;
+    }
+    
+    /**
+     * Returns the Value of a hexadecimal Digit.
+     * 
+     * @param hex
+     *            hexadecimal Representation
+     * @param index
+     *            Index of the Digit
+     * @return the Value of the Digit
+     * @throws IllegalArgumentException
+     *             When the Character is not a hexadecimal Digit
+     */
+    private static int value(CharSequence hex, int index) throws IllegalArgumentException {
+        char c = hex.charAt(index);
+        int value = c < VALUES.length ? VALUES[c] : -1;
+        if (value < 0)  {
+            throw new IllegalArgumentException(String.format("'%s' is not a hexadecimal digit!", c));
+        }
+        return value;
+    }
+    
+}
@@ -5,18 +5,32 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.image.Image;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 /**
  * Main File with GUI Support to execute the File Hasher.
@@ -26,6 +40,21 @@ import javafx.stage.Stage;
  */
 public class Main extends Application {
     
+    /**
+     * Seconds between two Progress Lines on the Command Line.
+     */
+    private static final int PROGRESS_INTERVAL = 5;
+    
+    /**
+     * Milliseconds between two Updates of the Progress Bar in the GUI.
+     */
+    private static final int PROGRESS_POLL_INTERVAL = 200;
+    
+    /**
+     * Hasher of the GUI, shared by all Runs so its Worker Threads are created once per Window.
+     */
+    private final Hasher hasher = new Hasher();
+    
     /**
      * Starts the GUI.
      */
@@ -89,28 +118,17 @@ public class Main extends Application {
         primaryStage.setMinHeight(115);
         primaryStage.show();
         
-        okayButton.setOnAction(action ->  {
-            Hasher hasher = new Hasher();
-            
+        // Shows the Output File or the Error of a finished Run
+        BiConsumer<String, String> showResult = (pathToOutputFile, returnValue) ->  {
             Button gotoButton = new Button("Open Folder");
             Button returnButton = new Button("Return");
-            
-            String pathToOutputFile = null;
-            String returnValue;
-            try {
-                pathToOutputFile = hasher.hash(pathLabel.getText());
-                returnValue = String.format("Successfully created %s as the Output File!", pathToOutputFile);
-            } catch (IllegalArgumentException | FileNotFoundException | UnsupportedEncodingException e) {
-                returnValue = e.getMessage();
-                gotoButton.setDisable(true);
-            }
+            gotoButton.setDisable(pathToOutputFile == null);
             
             Label userInformation = new Label(returnValue);
             userInformation.setWrapText(true);
             
-            final String outputPath = pathToOutputFile;
             gotoButton.setOnAction(gotoAction ->  {
-                String error = openFolderWithFile(outputPath);
+                String error = openFolderWithFile(pathToOutputFile);
                 if (error != null)  {
                     userInformation.setText(userInformation.getText() + System.lineSeparator() + error);
                     gotoButton.setDisable(true);
@@ -139,9 +157,72 @@ public class Main extends Application {
             primaryStage.setHeight(100);  // trick to use min width
 
             System.out.println(returnValue);
+        };
+        
+        okayButton.setOnAction(action ->  {
+            HashTask task;
+            try {
+                task = hasher.hashAsync(pathLabel.getText());
+            } catch (IllegalArgumentException e) {
+                showResult.accept(null, e.getMessage());
+                return;
+            }
+            
+            // The Run happens on its own Thread, the Progress gets polled so the Window stays responsive
+            Label progressInformation = new Label(String.format("Hashing %s ...", pathLabel.getText()));
+            progressInformation.setWrapText(true);
+            ProgressBar progressBar = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+            progressBar.setMaxWidth(Double.MAX_VALUE);
+            Label metricsInformation = new Label();
+            Button cancelButton = new Button("Cancel");
+            cancelButton.setOnAction(cancelAction ->  {
+                cancelButton.setDisable(true);
+                task.cancel(true);
+            });
+            
+            VBox progress = new VBox();
+            progress.setPadding(new Insets(10));
+            progress.setSpacing(5);
+            progress.getChildren().addAll(progressInformation, progressBar, metricsInformation, cancelButton);
+            progress.setMinSize(500, 130);
+            primaryStage.setScene(new Scene(progress));
+            primaryStage.setOnCloseRequest(closeRequest -> task.cancel(true));
+            
+            Timeline poller = new Timeline();
+            poller.getKeyFrames().add(new KeyFrame(Duration.millis(PROGRESS_POLL_INTERVAL), pollAction ->  {
+                progressBar.setProgress(task.getProgress());
+                metricsInformation.setText(task.getMetrics().toString());
+                if (!task.isDone())  {
+                    return;
+                }
+                poller.stop();
+                primaryStage.setOnCloseRequest(null);
+                if (task.isCancelled())  {
+                    showResult.accept(null, "Hashing got cancelled, no Output File was created!");
+                    return;
+                }
+                try {
+                    String pathToOutputFile = task.get();
+                    showResult.accept(pathToOutputFile, String.format("Successfully created %s as the Output File!", pathToOutputFile));
+                } catch (ExecutionException e) {
+                    showResult.accept(null, e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            poller.setCycleCount(Animation.INDEFINITE);
+            poller.play();
         });
     }
     
+    /**
+     * Stops the Worker Threads of the GUI's Hasher when the Window gets closed.
+     */
+    @Override
+    public void stop() {
+        hasher.shutdown();
+    }
+    
     /**
      * Opens the Folder to the given File.
      * 
@@ -180,28 +261,360 @@ public class Main extends Application {
         directoryChooser.setInitialDirectory(new File(System.getProperty("user.home")));
     }
 
+    /**
+     * Prints all Groups of Files with the same Content of the given Folder.
+     * 
+     * @param mainFolderName
+     *            Folder to search
+     * @return the Exit Code
+     */
+    private static int printDuplicates(String mainFolderName) {
+        File mainFolder = new File(mainFolderName);
+        if (!mainFolder.isDirectory())  {
+            System.err.println(String.format("Given Folder '%s' is not a folder, re-check that!", mainFolderName));
+            return -1;
+        }
+        Map<String, List<File>> duplicates = new Hasher().getDuplicates(mainFolder);
+        for (Map.Entry<String, List<File>> group : duplicates.entrySet())  {
+            System.out.println(group.getKey());
+            group.getValue().forEach(file -> System.out.println("    " + file.getPath()));
+        }
+        System.out.println(String.format("Found %d groups of duplicates.", duplicates.size()));
+        return 0;
+    }
+
+    /**
+     * Verifies a Folder against an Output File and prints every Problem.
+     * 
+     * @param args
+     *            Program Arguments after <code>--verify</code>: the Output File, optionally the Folder
+     *            and optionally <code>--fail-fast</code>
+     * @return the Exit Code, <code>0</code> if every listed File matched
+     */
+    private static int printVerification(List<String> args) {
+        boolean failFast = args.remove("--fail-fast");
+        if (args.isEmpty() || args.size() > 2)  {
+            System.err.println("Usage: --verify <output file> [folder] [--fail-fast]");
+            return -1;
+        }
+        File mainFolder = args.size() == 2 ? new File(args.get(1)) : null;
+        VerificationResult result;
+        try {
+            result = new Hasher().verify(new File(args.get(0)), mainFolder, failFast);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        result.getMismatched().forEach(file -> System.out.println("MISMATCH: " + file.getPath()));
+        result.getMissing().forEach(file -> System.out.println("MISSING: " + file.getPath()));
+        result.getUnreadable().forEach(file -> System.out.println("UNREADABLE: " + file.getPath()));
+        result.getAdded().forEach(file -> System.out.println("NEW: " + file.getPath()));
+        System.out.println(result);
+        return result.isSuccessful() ? 0 : 1;
+    }
+
+    /**
+     * Compares two Output Files and prints every Difference.
+     * 
+     * @param oldManifestName
+     *            Older Output File or binary Manifest
+     * @param newManifestName
+     *            Newer Output File or binary Manifest
+     * @return the Exit Code, <code>0</code> if both list the same Files with the same Content
+     */
+    private static int printManifestDiff(String oldManifestName, String newManifestName) {
+        ManifestDiff diff;
+        try {
+            diff = new Hasher().diff(new File(oldManifestName), new File(newManifestName), System.out::println);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        System.out.println(diff);
+        return diff.isIdentical() ? 0 : 1;
+    }
+
+    /**
+     * Compares two Folders by their Merkle Trees and prints every differing Path.
+     * 
+     * @param leftFolderName
+     *            First Folder
+     * @param rightFolderName
+     *            Second Folder, e.g. a Replica of the first one
+     * @return the Exit Code, <code>0</code> if both Folders have the same Content
+     */
+    private static int printTreeComparison(String leftFolderName, String rightFolderName) {
+        Hasher hasher = new Hasher();
+        MerkleTree left;
+        MerkleTree right;
+        try {
+            left = hasher.getMerkleTree(new File(leftFolderName));
+            right = hasher.getMerkleTree(new File(rightFolderName));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        System.out.println(String.format("%s: %s", leftFolderName, left.getRootHash()));
+        System.out.println(String.format("%s: %s", rightFolderName, right.getRootHash()));
+        List<MerkleTree.Difference> differences = left.compare(right);
+        differences.forEach(System.out::println);
+        System.out.println(String.format("Found %d differences.", differences.size()));
+        return differences.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Hashes a single File in Blocks and prints the Hash of every Block and the Top Hash.
+     * 
+     * @param fileName
+     *            File to hash
+     * @param blockSize
+     *            Size of a Block in Mebibytes, <code>null</code> for the Default
+     * @return the Exit Code
+     */
+    private static int printChunkedHash(String fileName, String blockSize) {
+        Hasher hasher = new Hasher();
+        int blockBytes = ChunkedHasher.DEFAULT_BLOCK_SIZE;
+        if (blockSize != null)  {
+            long maxMebibytes = Integer.MAX_VALUE / (1024 * 1024);
+            long mebibytes;
+            try {
+                mebibytes = Long.parseLong(blockSize);
+            } catch (NumberFormatException e) {
+                System.err.println(String.format("Block Size '%s' is not a number!", blockSize));
+                return -1;
+            }
+            if (mebibytes <= 0 || mebibytes > maxMebibytes)  {
+                System.err.println(String.format("Block Size must be between 1 and %d MiB but was %d MiB!", maxMebibytes, mebibytes));
+                return -1;
+            }
+            blockBytes = (int) (mebibytes * 1024 * 1024);
+        }
+        ChunkedHash hash;
+        try {
+            hash = hasher.getChunkedHash(new File(fileName), blockBytes);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        for (int i = 0; i < hash.getBlockCount(); i++)  {
+            System.out.println(String.format("Block %d: %s", i, hash.getBlockHash(i)));
+        }
+        System.out.println(String.format("Top: %s", hash.getTopHash()));
+        return 0;
+    }
+
+    /**
+     * Converts between an Output File, a binary Manifest and the Format of <code>sha512sum</code>.
+     * 
+     * @param option
+     *            <code>--to-binary</code>, <code>--to-text</code> or <code>--to-sha512sum</code>
+     * @param inputFileName
+     *            Output File or binary Manifest to convert, <code>--to-sha512sum</code> accepts both
+     * @param outputFileName
+     *            File to write
+     * @return the Exit Code
+     */
+    private static int convertManifest(String option, String inputFileName, String outputFileName) {
+        File input = new File(inputFileName);
+        File output = new File(outputFileName);
+        File tmpFile = null;
+        try {
+            if (option.equals("--to-binary"))  {
+                System.out.println(String.format("Wrote %d entries to %s.", BinaryManifest.fromText(input, output).size(), outputFileName));
+                return 0;
+            }
+            if (option.equals("--to-text"))  {
+                BinaryManifest.open(input).writeText(output);
+                return 0;
+            }
+            if (!BinaryManifest.isBinaryManifest(input))  {
+                tmpFile = File.createTempFile("file-hasher-convert", Hasher.BINARY_SUFFIX);
+                input = BinaryManifest.fromText(input, tmpFile).getFile();
+            }
+            System.out.println(String.format("Wrote %d checksums to %s.", BinaryManifest.open(input).writeSha512sum(output), outputFileName));
+            return 0;
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        } finally {
+            if (tmpFile != null && !tmpFile.delete())  {
+                tmpFile.deleteOnExit();  // still mapped on some Platforms
+            }
+        }
+    }
+
+    /**
+     * Looks up the Hash of a single Path in a binary Manifest.
+     * 
+     * @param manifestFileName
+     *            binary Manifest
+     * @param path
+     *            Path as written in the Output File, e.g. <code>folder1/Testfile.txt</code>
+     * @return the Exit Code, <code>1</code> if the Path is unknown
+     */
+    private static int printLookup(String manifestFileName, String path) {
+        BinaryManifest manifest;
+        try {
+            manifest = BinaryManifest.open(new File(manifestFileName));
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        int index = manifest.indexOf(path);
+        if (index == -1)  {
+            System.err.println(String.format("'%s' is not listed in %s!", path, manifestFileName));
+            return 1;
+        }
+        System.out.println(String.format("%s: %s", manifest.getPath(index),
+                manifest.isSuccessful(index) ? manifest.getHash(index) : "ERROR (" + manifest.getError(index) + ")"));
+        return 0;
+    }
+
+    /**
+     * Watches a Folder and keeps its Output File up to date until the Program gets terminated or the Folder gets deleted.
+     * Every hashed File is printed as soon as its Hash is known.
+     * 
+     * @param mainFolderName
+     *            Folder to watch
+     * @param outputFileName
+     *            Output File to keep up to date, <code>null</code> for the Default
+     * @return the Exit Code
+     */
+    private static int watchFromCommandLine(String mainFolderName, String outputFileName) {
+        Hasher hasher = new Hasher();
+        hasher.setCacheEnabled(true);
+        hasher.addListener(new HashListener() {
+            @Override
+            public void fileHashed(HashResult result, long bytesRead, long nanos) {
+                System.out.println(result);
+            }
+        });
+        ManifestWatcher watcher;
+        try {
+            watcher = outputFileName != null
+                    ? hasher.watch(mainFolderName, new File(outputFileName), ManifestWatcher.DEFAULT_DEBOUNCE, ManifestWatcher.DEFAULT_FLUSH_INTERVAL)
+                    : hasher.watch(mainFolderName);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(watcher::close, "FileHasher-Shutdown"));  // writes the Output File a last Time
+        System.err.println(String.format("Watching %s, the Output File is %s.", mainFolderName, watcher.getOutputFile().getAbsolutePath()));
+        try {
+            while (watcher.isRunning())  {
+                Thread.sleep(PROGRESS_POLL_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            watcher.close();
+        }
+        return watcher.getFlushError() == null ? 0 : 1;
+    }
+
+    /**
+     * Hashes a Folder without the GUI and prints the Progress every {@value #PROGRESS_INTERVAL} Seconds.
+     * 
+     * @param args
+     *            Program Arguments: the Folder, optionally followed by <code>--metrics &lt;json file&gt;</code> and Filter Options
+     * @return the Exit Code
+     * @see HashFilter#removeOptions(List)
+     */
+    private static int hashFromCommandLine(String[] args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        HashFilter filter;
+        try {
+            filter = HashFilter.removeOptions(arguments);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        File metricsFile = null;
+        if (arguments.size() == 3 && arguments.get(1).equals("--metrics"))  {
+            metricsFile = new File(arguments.get(2));
+        }  else if (arguments.size() != 1)  {
+            System.err.println("Usage: <folder> [--metrics <json file>] [--include <pattern>] [--exclude <pattern>] [--min-size <bytes>]"
+                    + " [--max-size <bytes>] [--max-depth <depth>] [--skip-hidden] [--no-follow-links]");
+            return -1;
+        }
+        
+        Hasher hasher = new Hasher();
+        hasher.setFilter(filter);
+        HashMetrics metrics = new HashMetrics();
+        hasher.addListener(metrics);
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable ->  {
+            Thread thread = new Thread(runnable, "FileHasher-Progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(() -> System.err.println(metrics), PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.SECONDS);
+        try {
+            String pathToOutputFile = hasher.hash(arguments.get(0));
+            progress.shutdownNow();
+            System.out.println(metrics);
+            String output = String.format("Successfully created %s as the Output File!", pathToOutputFile);
+            System.out.println(output);
+            if (metricsFile != null)  {
+                try {
+                    metrics.writeJson(metricsFile.toPath());
+                } catch (IOException e) {
+                    System.err.println(String.format("An error occured while writing the metrics file '%s'!", metricsFile.getAbsolutePath()));
+                }
+            }
+            String error = openFolderWithFile(pathToOutputFile);
+            if (error != null)  {
+                System.err.println(error);
+            }
+            return 0;
+        } catch (IllegalArgumentException | FileNotFoundException | UnsupportedEncodingException e) {
+            System.err.println(e.getMessage());
+            return -1;
+        } finally {
+            progress.shutdownNow();
+        }
+    }
+
     /**
      * Main Method. Checks for Program Arguments, if none given the GUI will be started.
+     * <code>--duplicates &lt;folder&gt;</code> prints the Files with the same Content instead of hashing the Folder.
+     * <code>--verify &lt;output file&gt; [folder] [--fail-fast]</code> checks a Folder against an Output File.
+     * <code>--chunked &lt;file&gt; [block size in MiB]</code> hashes a single File in parallel Blocks.
+     * <code>--compare &lt;folder&gt; &lt;folder&gt;</code> compares two Folders by their Merkle Trees.
+     * <code>--diff &lt;old output file&gt; &lt;new output file&gt;</code> compares two Output Files.
+     * <code>--to-binary|--to-text|--to-sha512sum &lt;input&gt; &lt;output&gt;</code> converts between the Formats of the Output File.
+     * <code>--lookup &lt;binary manifest&gt; &lt;path&gt;</code> prints the Hash of a single Path.
+     * <code>--watch &lt;folder&gt; [output file]</code> keeps the Output File of a Folder up to date while the Folder changes.
+     * <code>&lt;folder&gt; [--metrics &lt;json file&gt;]</code> hashes the Folder and exports the Metrics of the Run as JSON,
+     * Filter Options like <code>--exclude &lt;pattern&gt;</code> select the hashed Files.
      * 
      * @param args
      *            Program Arguments
      */
     public static void main(String[] args) {
+        if (args.length == 2 && args[0].equals("--duplicates"))  {
+            System.exit(printDuplicates(args[1]));
+        }
+        if ((args.length == 2 || args.length == 3) && args[0].equals("--chunked"))  {
+            System.exit(printChunkedHash(args[1], args.length == 3 ? args[2] : null));
+        }
+        if (args.length == 3 && args[0].equals("--compare"))  {
+            System.exit(printTreeComparison(args[1], args[2]));
+        }
+        if (args.length == 3 && Arrays.asList("--to-binary", "--to-text", "--to-sha512sum").contains(args[0]))  {
+            System.exit(convertManifest(args[0], args[1], args[2]));
+        }
+        if (args.length == 3 && args[0].equals("--diff"))  {
+            System.exit(printManifestDiff(args[1], args[2]));
+        }
+        if (args.length == 3 && args[0].equals("--lookup"))  {
+            System.exit(printLookup(args[1], args[2]));
+        }
+        if ((args.length == 2 || args.length == 3) && args[0].equals("--watch"))  {
+            System.exit(watchFromCommandLine(args[1], args.length == 3 ? args[2] : null));
+        }
+        if (args.length >= 2 && args[0].equals("--verify"))  {
+            System.exit(printVerification(new ArrayList<>(Arrays.asList(args).subList(1, args.length))));
+        }
         if (args.length != 0)  {
-            Hasher hasher = new Hasher();
-            try {
-                String pathToOutputFile = hasher.hash(args[0]);
-                String output = String.format("Successfully created %s as the Output File!", pathToOutputFile);
-                System.out.println(output);
-                String error = openFolderWithFile(pathToOutputFile);
-                if (error != null)  {
-                    System.err.println(error);
-                }
-                System.exit(0);
-            } catch (IllegalArgumentException | FileNotFoundException | UnsupportedEncodingException e) {
-                System.err.println(e.getMessage());
-                System.exit(-1);
-            }
+            System.exit(hashFromCommandLine(args));
         }
         
         Application.launch(args);
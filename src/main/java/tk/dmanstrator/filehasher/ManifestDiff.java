@@ -0,0 +1,215 @@
+package tk.dmanstrator.filehasher;
+
+/**
+ * Summary of comparing two Output Files of {@link Hasher#hash(String)}, e.g. of Yesterday and Today. The single
+ * Differences are streamed to a Consumer while comparing, so only the Amounts are kept here.
+ * 
+ * @author DManstrator
+ *
+ */
+public final class ManifestDiff {
+    
+    /**
+     * Amount of Files with the same Path and Content in both Output Files.
+     */
+    private final long unchanged;
+    
+    /**
+     * Amount of Files only the new Output File lists.
+     */
+    private final long added;
+    
+    /**
+     * Amount of Files only the old Output File lists.
+     */
+    private final long removed;
+    
+    /**
+     * Amount of Files with the same Path but different Content.
+     */
+    private final long changed;
+    
+    /**
+     * Amount of Files with the same Content under another Path.
+     */
+    private final long moved;
+    
+    /**
+     * Creates a new Summary.
+     * 
+     * @param unchanged
+     *            Amount of Files with the same Path and Content in both Output Files
+     * @param added
+     *            Amount of Files only the new Output File lists
+     * @param removed
+     *            Amount of Files only the old Output File lists
+     * @param changed
+     *            Amount of Files with the same Path but different Content
+     * @param moved
+     *            Amount of Files with the same Content under another Path
+     */
+    ManifestDiff(long unchanged, long added, long removed, long changed, long moved) {
+        this.unchanged = unchanged;
+        this.added = added;
+        this.removed = removed;
+        this.changed = changed;
+        this.moved = moved;
+    }
+    
+    /**
+     * Returns the Amount of Files with the same Path and Content in both Output Files.
+     * 
+     * @return the Amount of unchanged Files
+     */
+    public long getUnchanged() {
+        return unchanged;
+    }
+    
+    /**
+     * Returns the Amount of Files only the new Output File lists.
+     * 
+     * @return the Amount of added Files
+     */
+    public long getAdded() {
+        return added;
+    }
+    
+    /**
+     * Returns the Amount of Files only the old Output File lists.
+     * 
+     * @return the Amount of removed Files
+     */
+    public long getRemoved() {
+        return removed;
+    }
+    
+    /**
+     * Returns the Amount of Files with the same Path but different Content, including Files which couldn't be read in one of the Runs.
+     * 
+     * @return the Amount of changed Files
+     */
+    public long getChanged() {
+        return changed;
+    }
+    
+    /**
+     * Returns the Amount of Files with the same Content under another Path.
+     * 
+     * @return the Amount of moved Files
+     */
+    public long getMoved() {
+        return moved;
+    }
+    
+    /**
+     * Checks if both Output Files list the same Files with the same Content.
+     * 
+     * @return <code>true</code> if there are no Differences
+     */
+    public boolean isIdentical() {
+        return added == 0 && removed == 0 && changed == 0 && moved == 0;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%d unchanged, %d added, %d removed, %d changed, %d moved", unchanged, added, removed, changed, moved);
+    }
+    
+    /**
+     * Kind of a Difference between two Output Files.
+     */
+    public enum Change {
+        
+        /**
+         * Only the new Output File lists the Path.
+         */
+        ADDED,
+        
+        /**
+         * Only the old Output File lists the Path.
+         */
+        REMOVED,
+        
+        /**
+         * Both Output Files list the Path with different Content, or one of them couldn't read it.
+         */
+        CHANGED,
+        
+        /**
+         * The old Path is gone and a new Path with the same Content appeared.
+         */
+        MOVED
+        
+    }
+    
+    /**
+     * Path which differs between two Output Files.
+     */
+    public static final class Difference {
+        
+        /**
+         * Kind of the Difference.
+         */
+        private final Change change;
+        
+        /**
+         * Path relative to the scanned Folder, separated by <code>/</code>.
+         */
+        private final String path;
+        
+        /**
+         * Previous Path of a moved File, <code>null</code> for other Differences.
+         */
+        private final String oldPath;
+        
+        /**
+         * Creates a new Difference.
+         * 
+         * @param change
+         *            Kind of the Difference
+         * @param path
+         *            Path relative to the scanned Folder
+         * @param oldPath
+         *            Previous Path of a moved File, <code>null</code> for other Differences
+         */
+        Difference(Change change, String path, String oldPath) {
+            this.change = change;
+            this.path = path;
+            this.oldPath = oldPath;
+        }
+        
+        /**
+         * Returns the Kind of the Difference.
+         * 
+         * @return the Kind
+         */
+        public Change getChange() {
+            return change;
+        }
+        
+        /**
+         * Returns the Path relative to the scanned Folder, the new one for a moved File.
+         * 
+         * @return the Path separated by <code>/</code>
+         */
+        public String getPath() {
+            return path;
+        }
+        
+        /**
+         * Returns the previous Path of a moved File.
+         * 
+         * @return the previous Path separated by <code>/</code> or <code>null</code> if the File didn't move
+         */
+        public String getOldPath() {
+            return oldPath;
+        }
+        
+        @Override
+        public String toString() {
+            return change == Change.MOVED ? String.format("%s: %s -> %s", change, oldPath, path) : change + ": " + path;
+        }
+        
+    }
+    
+}
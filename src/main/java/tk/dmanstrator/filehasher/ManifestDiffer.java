@@ -0,0 +1,353 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import tk.dmanstrator.filehasher.ManifestDiff.Change;
+import tk.dmanstrator.filehasher.ManifestDiff.Difference;
+
+/**
+ * Compares two Output Files with a streaming Merge-Join, so the Memory needed doesn't depend on their Size. Both Inputs
+ * are read in the Order of their Paths, text Output Files get sorted with an {@link ExternalSorter} first while binary
+ * Manifests are sorted already. Paths only one Side lists are sorted by their Digest in a second Pass, where equal Digests
+ * of a removed and an added Path are joined into a Move.
+ * 
+ * @author DManstrator
+ *
+ */
+final class ManifestDiffer {
+    
+    private ManifestDiffer() {
+    }
+    
+    /**
+     * Compares two Output Files. Changed Paths are reported in the Order of their Paths, afterwards the added, removed
+     * and moved Paths in the Order of their Digests.
+     * 
+     * @param oldManifest
+     *            Older Output File or binary Manifest
+     * @param newManifest
+     *            Newer Output File or binary Manifest
+     * @param consumer
+     *            Receives every Difference
+     * @return the Amounts of the Differences
+     * @throws IOException
+     *             When an Input couldn't be read or a Line is malformed
+     * @throws IllegalArgumentException
+     *             When an Input is no Output File or the primary Algorithms differ
+     */
+    static ManifestDiff diff(Path oldManifest, Path newManifest, Consumer<Difference> consumer) throws IOException, IllegalArgumentException {
+        try (Source oldSource = Source.open(oldManifest);
+                Source newSource = Source.open(newManifest);
+                ExternalSorter removedFiles = new ExternalSorter();
+                ExternalSorter addedFiles = new ExternalSorter())  {
+            if (!oldSource.algorithm.equals(newSource.algorithm))  {
+                throw new IllegalArgumentException(String.format("Can't compare %s hashes with %s hashes!", oldSource.algorithm, newSource.algorithm));
+            }
+            long unchanged = 0;
+            long changed = 0;
+            long added = 0;
+            long removed = 0;
+            long moved = 0;
+            
+            // first Pass: joined by Path, Paths only one Side lists are kept for the second Pass
+            ManifestReader.Entry oldEntry = oldSource.next();
+            ManifestReader.Entry newEntry = newSource.next();
+            while (oldEntry != null || newEntry != null)  {
+                int order = oldEntry == null ? 1 : newEntry == null ? -1 : comparePaths(oldEntry.getPath(), newEntry.getPath());
+                if (order < 0)  {
+                    if (oldEntry.isSuccessful())  {
+                        removedFiles.add(oldEntry.getHashes()[0] + '\0' + getSortKey(oldEntry.getPath()), oldEntry.getHashes()[0] + ' ' + oldEntry.getPath());
+                    }  else  {  // can't be matched by its Digest
+                        consumer.accept(new Difference(Change.REMOVED, toUnixPath(oldEntry.getPath()), null));
+                        removed++;
+                    }
+                    oldEntry = oldSource.next();
+                }  else if (order > 0)  {
+                    if (newEntry.isSuccessful())  {
+                        addedFiles.add(newEntry.getHashes()[0] + '\0' + getSortKey(newEntry.getPath()), newEntry.getHashes()[0] + ' ' + newEntry.getPath());
+                    }  else  {
+                        consumer.accept(new Difference(Change.ADDED, toUnixPath(newEntry.getPath()), null));
+                        added++;
+                    }
+                    newEntry = newSource.next();
+                }  else  {
+                    if (oldEntry.isSuccessful() && newEntry.isSuccessful() && oldEntry.getHashes()[0].equals(newEntry.getHashes()[0]))  {
+                        unchanged++;
+                    }  else  {
+                        consumer.accept(new Difference(Change.CHANGED, toUnixPath(newEntry.getPath()), null));
+                        changed++;
+                    }
+                    oldEntry = oldSource.next();
+                    newEntry = newSource.next();
+                }
+            }
+            
+            // second Pass: joined by Digest, a removed and an added Path with the same Digest are a Move
+            try (ExternalSorter.Cursor removedCursor = removedFiles.open();
+                    ExternalSorter.Cursor addedCursor = addedFiles.open())  {
+                String removedLine = removedCursor.next();
+                String addedLine = addedCursor.next();
+                while (removedLine != null || addedLine != null)  {
+                    int order = removedLine == null ? 1 : addedLine == null ? -1
+                            : getDigest(removedLine).compareTo(getDigest(addedLine));
+                    if (order < 0)  {
+                        consumer.accept(new Difference(Change.REMOVED, toUnixPath(getPath(removedLine)), null));
+                        removed++;
+                        removedLine = removedCursor.next();
+                    }  else if (order > 0)  {
+                        consumer.accept(new Difference(Change.ADDED, toUnixPath(getPath(addedLine)), null));
+                        added++;
+                        addedLine = addedCursor.next();
+                    }  else  {
+                        consumer.accept(new Difference(Change.MOVED, toUnixPath(getPath(addedLine)), toUnixPath(getPath(removedLine))));
+                        moved++;
+                        removedLine = removedCursor.next();
+                        addedLine = addedCursor.next();
+                    }
+                }
+            }
+            return new ManifestDiff(unchanged, added, removed, changed, moved);
+        }
+    }
+    
+    /**
+     * Compares two Paths by their Code Points, which is the Order of their UTF-8 Bytes and therefore the Order of a binary Manifest.
+     * 
+     * @param left
+     *            First Path
+     * @param right
+     *            Second Path
+     * @return a negative Number, zero or a positive Number if the first Path is lower, equal or greater than the second one
+     */
+    static int comparePaths(String left, String right) {
+        int i = 0;
+        int j = 0;
+        while (i < left.length() && j < right.length())  {
+            int leftCodePoint = left.codePointAt(i);
+            int rightCodePoint = right.codePointAt(j);
+            if (leftCodePoint != rightCodePoint)  {
+                return Integer.compare(leftCodePoint, rightCodePoint);
+            }
+            i += Character.charCount(leftCodePoint);
+            j += Character.charCount(rightCodePoint);
+        }
+        return Integer.compare(left.length() - i, right.length() - j);
+    }
+    
+    /**
+     * Returns a Key which sorts like {@link #comparePaths(String, String)} with the natural Order of Strings.
+     * 
+     * @param path
+     *            Path to sort
+     * @return the Latin-1 View of the UTF-8 Bytes of the Path
+     */
+    private static String getSortKey(String path) {
+        return new String(path.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Returns the Digest of a Line kept for the second Pass.
+     * 
+     * @param line
+     *            Line consisting of the Digest and the Path
+     * @return the hexadecimal Digest
+     */
+    private static String getDigest(String line) {
+        return line.substring(0, line.indexOf(' '));
+    }
+    
+    /**
+     * Returns the Path of a Line kept for the second Pass.
+     * 
+     * @param line
+     *            Line consisting of the Digest and the Path
+     * @return the Path relative to the scanned Folder
+     */
+    private static String getPath(String line) {
+        return line.substring(line.indexOf(' ') + 1);
+    }
+    
+    /**
+     * Converts a Path to the Form of the reported Differences.
+     * 
+     * @param path
+     *            Path with the Separator of the Platform
+     * @return the Path separated by <code>/</code>
+     */
+    private static String toUnixPath(String path) {
+        return path.replace(File.separatorChar, '/');
+    }
+    
+    /**
+     * Entries of an Output File in the Order of their Paths, relative to the scanned Folder and with the primary Hash only.
+     */
+    private abstract static class Source implements AutoCloseable {
+        
+        /**
+         * Primary Algorithm of the Output File.
+         */
+        private final String algorithm;
+        
+        /**
+         * Creates a new Source.
+         * 
+         * @param algorithm
+         *            Primary Algorithm of the Output File
+         */
+        private Source(String algorithm) {
+            this.algorithm = algorithm;
+        }
+        
+        /**
+         * Opens an Output File or a binary Manifest.
+         * 
+         * @param manifest
+         *            File to open
+         * @return the Source
+         * @throws IOException
+         *             When the File couldn't be read
+         * @throws IllegalArgumentException
+         *             When the File is no Output File
+         */
+        private static Source open(Path manifest) throws IOException, IllegalArgumentException {
+            File file = manifest.toFile();
+            return BinaryManifest.isBinaryManifest(file) ? new BinarySource(BinaryManifest.open(file)) : new TextSource(manifest);
+        }
+        
+        /**
+         * Returns the next Entry.
+         * 
+         * @return the next Entry or <code>null</code> if all Entries are read
+         * @throws IOException
+         *             When the Output File couldn't be read
+         */
+        abstract ManifestReader.Entry next() throws IOException;
+        
+        @Override
+        public void close() throws IOException {
+            // nothing to release by default
+        }
+        
+    }
+    
+    /**
+     * Text Output File, sorted by an {@link ExternalSorter} when it is opened.
+     */
+    private static final class TextSource extends Source {
+        
+        /**
+         * Holds the sorted Entries.
+         */
+        private final ExternalSorter sorter = new ExternalSorter();
+        
+        /**
+         * Reads the sorted Entries.
+         */
+        private final ExternalSorter.Cursor cursor;
+        
+        /**
+         * Reads and sorts an Output File.
+         * 
+         * @param manifest
+         *            Output File to read
+         * @throws IOException
+         *             When the Output File couldn't be read
+         * @throws IllegalArgumentException
+         *             When the File is no Output File
+         */
+        private TextSource(Path manifest) throws IOException, IllegalArgumentException {
+            this(new ManifestReader(manifest));
+        }
+        
+        /**
+         * Sorts the Entries of an opened Output File.
+         * 
+         * @param reader
+         *            Reader of the Output File, gets closed
+         * @throws IOException
+         *             When the Output File couldn't be read
+         */
+        private TextSource(ManifestReader reader) throws IOException {
+            super(reader.getAlgorithms().get(0));
+            try (ManifestReader input = reader)  {
+                String rootName = ManifestReader.getRootName(input.getMainFolderName());
+                ManifestReader.Entry entry;
+                while ((entry = input.next()) != null)  {
+                    String path = ManifestReader.relativize(rootName, entry.getPath());
+                    String value = entry.isSuccessful() ? entry.getHashes()[0] : ManifestWriter.ERROR_PREFIX + entry.getError() + ')';
+                    sorter.add(getSortKey(path), path + ManifestWriter.SEPARATOR + value);
+                }
+                this.cursor = sorter.open();
+            } catch (IOException | RuntimeException e) {
+                sorter.close();
+                throw e;
+            }
+        }
+        
+        @Override
+        ManifestReader.Entry next() throws IOException {
+            String line = cursor.next();
+            return line != null ? ManifestReader.parse(line) : null;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                cursor.close();
+            } finally {
+                sorter.close();
+            }
+        }
+        
+    }
+    
+    /**
+     * Binary Manifest, whose Records are sorted already.
+     */
+    private static final class BinarySource extends Source {
+        
+        /**
+         * The binary Manifest.
+         */
+        private final BinaryManifest manifest;
+        
+        /**
+         * Name of the scanned Folder every Path starts with.
+         */
+        private final String rootName;
+        
+        /**
+         * Index of the next Record.
+         */
+        private int index = 0;
+        
+        /**
+         * Creates a new Source.
+         * 
+         * @param manifest
+         *            The binary Manifest
+         */
+        private BinarySource(BinaryManifest manifest) {
+            super(manifest.getAlgorithms().get(0));
+            this.manifest = manifest;
+            this.rootName = ManifestReader.getRootName(manifest.getMainFolderName());
+        }
+        
+        @Override
+        ManifestReader.Entry next() {
+            if (index >= manifest.size())  {
+                return null;
+            }
+            int current = index++;
+            String path = ManifestReader.relativize(rootName, manifest.getPath(current));
+            return manifest.isSuccessful(current) ? new ManifestReader.Entry(path, new String[] { manifest.getHash(current) }, null)
+                    : new ManifestReader.Entry(path, null, manifest.getError(current));
+        }
+        
+    }
+    
+}
@@ -0,0 +1,264 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads an Output File written by {@link Hasher#hash(String)} Line by Line, so even huge Output Files
+ * never have to be kept in Memory as a whole.
+ * 
+ * @author DManstrator
+ *
+ */
+final class ManifestReader implements AutoCloseable {
+    
+    /**
+     * Underlying Reader.
+     */
+    private final BufferedReader reader;
+    
+    /**
+     * Scanned Folder as written in the Header.
+     */
+    private final String mainFolderName;
+    
+    /**
+     * Algorithms the Hashes were computed with.
+     */
+    private final List<String> algorithms;
+    
+    /**
+     * Line read ahead while parsing the Header, <code>null</code> if there is none.
+     */
+    private String pendingLine;
+    
+    /**
+     * Opens an Output File and reads its Header.
+     * 
+     * @param manifestFile
+     *            Output File to read
+     * @throws IOException
+     *             When the Output File couldn't be read
+     * @throws IllegalArgumentException
+     *             When the File is not an Output File of the Hasher
+     */
+    ManifestReader(Path manifestFile) throws IOException, IllegalArgumentException {
+        this.reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8);
+        try {
+            String header = reader.readLine();
+            if (header != null && header.startsWith("\uFEFF"))  {  // Byte Order Mark of Editors on Windows
+                header = header.substring(1);
+            }
+            if (header == null || !header.startsWith(ManifestWriter.HEADER_PREFIX))  {
+                throw new IllegalArgumentException(String.format("Given File '%s' is not an output file of the File-Hasher, re-check that!",
+                        manifestFile));
+            }
+            this.mainFolderName = header.substring(ManifestWriter.HEADER_PREFIX.length());
+            
+            String line = reader.readLine();
+            if (line != null && line.startsWith(ManifestWriter.ALGORITHMS_PREFIX))  {
+                this.algorithms = Collections.unmodifiableList(Arrays.asList(
+                        line.substring(ManifestWriter.ALGORITHMS_PREFIX.length()).split(", ")));
+                line = reader.readLine();
+            }  else  {
+                this.algorithms = Collections.singletonList(Hasher.DEFAULT_ALGORITHM);
+            }
+            this.pendingLine = line;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Returns the scanned Folder as written in the Header.
+     * 
+     * @return the scanned Folder
+     */
+    String getMainFolderName() {
+        return mainFolderName;
+    }
+    
+    /**
+     * Returns the Algorithms the Hashes were computed with.
+     * 
+     * @return the Names of the Algorithms in the Order of the Hashes of every Entry
+     */
+    List<String> getAlgorithms() {
+        return algorithms;
+    }
+    
+    /**
+     * Reads the next Entry.
+     * 
+     * @return the next Entry or <code>null</code> if the End of the File is reached
+     * @throws IOException
+     *             When the Output File couldn't be read
+     */
+    Entry next() throws IOException {
+        String line;
+        do {
+            line = pendingLine != null ? pendingLine : reader.readLine();
+            pendingLine = null;
+            if (line == null)  {
+                return null;
+            }
+        } while (line.isEmpty());
+        return parse(line);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    /**
+     * Parses a single Line of an Output File.
+     * 
+     * @param line
+     *            Line to parse
+     * @return the parsed Entry
+     * @throws IOException
+     *             When the Line is malformed
+     */
+    static Entry parse(String line) throws IOException {
+        String errorMarker = ManifestWriter.SEPARATOR + ManifestWriter.ERROR_PREFIX;
+        int errorIndex = line.indexOf(errorMarker);
+        if (errorIndex != -1 && line.endsWith(")"))  {
+            return new Entry(line.substring(0, errorIndex), null,
+                    line.substring(errorIndex + errorMarker.length(), line.length() - 1));
+        }
+        int index = line.lastIndexOf(ManifestWriter.SEPARATOR);
+        if (index == -1)  {
+            throw new IOException(String.format("Malformed line '%s'!", line));
+        }
+        String[] hashes = line.substring(index + ManifestWriter.SEPARATOR.length()).split(" ");
+        return new Entry(line.substring(0, index), hashes, null);
+    }
+    
+    /**
+     * Resolves the Path of an Entry against the given Folder. The Path of an Entry starts with the Name
+     * of the scanned Folder, e.g. <code>folder1/Testfile.txt</code>.
+     * 
+     * @param root
+     *            Folder the Entries are located in, e.g. the scanned Folder or a Copy of it
+     * @param path
+     *            Path of an Entry
+     * @return the File the Entry describes
+     */
+    Path resolve(Path root, String path) {
+        return root.resolve(relativize(getRootName(mainFolderName), path));
+    }
+    
+    /**
+     * Returns the Name of the scanned Folder every Path of an Entry starts with.
+     * 
+     * @param mainFolderName
+     *            Scanned Folder as written in the Header
+     * @return the Name of the Folder, <code>null</code> for a Root Directory
+     */
+    static String getRootName(String mainFolderName) {
+        Path rootName = Paths.get(mainFolderName).toAbsolutePath().normalize().getFileName();
+        return rootName != null ? rootName.toString() : null;
+    }
+    
+    /**
+     * Removes the Name of the scanned Folder from the Path of an Entry.
+     * 
+     * @param rootName
+     *            Name of the scanned Folder as returned by {@link #getRootName(String)}
+     * @param path
+     *            Path of an Entry, e.g. <code>folder1/Testfile.txt</code>
+     * @return the Path relative to the scanned Folder, e.g. <code>Testfile.txt</code>
+     */
+    static String relativize(String rootName, String path) {
+        if (rootName != null && path.startsWith(rootName) && path.length() > rootName.length()
+                && (path.charAt(rootName.length()) == '/' || path.charAt(rootName.length()) == File.separatorChar))  {
+            return path.substring(rootName.length() + 1);
+        }
+        return path;
+    }
+    
+    /**
+     * Single Line of an Output File.
+     */
+    static final class Entry {
+        
+        /**
+         * Path of the File starting with the Name of the scanned Folder.
+         */
+        private final String path;
+        
+        /**
+         * Hashes in the Order of the Algorithms, <code>null</code> if the File couldn't be hashed.
+         */
+        private final String[] hashes;
+        
+        /**
+         * Error Message, <code>null</code> if the File got hashed.
+         */
+        private final String error;
+        
+        /**
+         * Creates a new Entry.
+         * 
+         * @param path
+         *            Path of the File starting with the Name of the scanned Folder
+         * @param hashes
+         *            Hashes in the Order of the Algorithms, <code>null</code> if the File couldn't be hashed
+         * @param error
+         *            Error Message, <code>null</code> if the File got hashed
+         */
+        Entry(String path, String[] hashes, String error) {
+            this.path = path;
+            this.hashes = hashes;
+            this.error = error;
+        }
+        
+        /**
+         * Returns the Path of the File.
+         * 
+         * @return the Path starting with the Name of the scanned Folder
+         */
+        String getPath() {
+            return path;
+        }
+        
+        /**
+         * Returns the Hashes of the File.
+         * 
+         * @return the Hashes in the Order of the Algorithms, <code>null</code> if the File couldn't be hashed
+         */
+        String[] getHashes() {
+            return hashes;
+        }
+        
+        /**
+         * Returns the Error Message.
+         * 
+         * @return the Error Message, <code>null</code> if the File got hashed
+         */
+        String getError() {
+            return error;
+        }
+        
+        /**
+         * Checks if the File got hashed.
+         * 
+         * @return <code>true</code> if the Entry contains Hashes
+         */
+        boolean isSuccessful() {
+            return hashes != null;
+        }
+        
+    }
+    
+}
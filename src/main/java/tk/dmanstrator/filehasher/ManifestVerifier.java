@@ -0,0 +1,276 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * Verifies a Folder against an Output File of {@link Hasher#hash(String)}. The Output File gets streamed
+ * and every listed File is re-hashed by the Workers while the File is still being read, afterwards the
+ * Folder gets walked to find Files which aren't listed by merging the sorted Paths of both.
+ * 
+ * @author DManstrator
+ *
+ */
+final class ManifestVerifier {
+    
+    /**
+     * Maximum Amount of listed Files per Worker waiting to be verified.
+     */
+    private static final int PENDING_PER_WORKER = 64;
+    
+    /**
+     * Computes the Result for a single File with the given Algorithms.
+     */
+    private final BiFunction<File, String[], HashResult> hashFunction;
+    
+    /**
+     * Pool the Files get verified in, <code>null</code> to verify them on the calling Thread.
+     */
+    private final ExecutorService pool;
+    
+    /**
+     * Amount of Workers verifying Files at the same Time.
+     */
+    private final int workers;
+    
+    /**
+     * Selects the Files reported as added and the Folders to search for them.
+     */
+    private final HashFilter filter;
+    
+    /**
+     * Creates a new Verifier.
+     * 
+     * @param hashFunction
+     *            Computes the Result for a single File with the given Algorithms
+     * @param pool
+     *            Pool the Files get verified in, <code>null</code> to verify them on the calling Thread
+     * @param workers
+     *            Amount of Workers verifying Files at the same Time
+     * @param filter
+     *            Selects the Files reported as added and the Folders to search for them
+     */
+    ManifestVerifier(BiFunction<File, String[], HashResult> hashFunction, ExecutorService pool, int workers, HashFilter filter) {
+        this.hashFunction = hashFunction;
+        this.pool = pool;
+        this.workers = workers;
+        this.filter = filter;
+    }
+    
+    /**
+     * Verifies a Folder against an Output File.
+     * 
+     * @param manifestFile
+     *            Output File listing the expected Hashes
+     * @param root
+     *            Folder to verify, <code>null</code> for the Folder named in the Output File
+     * @param failFast
+     *            <code>true</code> to stop at the first mismatched, missing or unreadable File
+     * @return the Result of the Verification
+     * @throws IOException
+     *             When the Output File couldn't be read
+     * @throws IllegalArgumentException
+     *             When the File is not an Output File or one of its Algorithms isn't supported
+     * @throws IllegalStateException
+     *             When a Worker failed unexpectedly
+     */
+    VerificationResult verify(Path manifestFile, Path root, boolean failFast)
+            throws IOException, IllegalArgumentException, IllegalStateException {
+        List<File> mismatched = Collections.synchronizedList(new ArrayList<>());
+        List<File> missing = Collections.synchronizedList(new ArrayList<>());
+        List<File> unreadable = Collections.synchronizedList(new ArrayList<>());
+        List<File> added = new ArrayList<>();
+        AtomicLong matched = new AtomicLong();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        
+        // the listed Paths are sorted on Disk, so the Memory needed doesn't grow with the Output File
+        try (ManifestReader reader = new ManifestReader(manifestFile);
+                ExternalSorter listed = new ExternalSorter())  {
+            String[] algorithms = reader.getAlgorithms().toArray(new String[0]);
+            for (String algorithm : algorithms)  {
+                try {
+                    MessageDigest.getInstance(algorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalArgumentException(String.format("The Algorithm '%s' is not supported!", algorithm), e);
+                }
+            }
+            Path folder = (root != null ? root : new File(reader.getMainFolderName()).toPath()).toAbsolutePath().normalize();
+            
+            int permits = pool != null ? workers * PENDING_PER_WORKER : 1;
+            Semaphore pending = new Semaphore(permits);
+            ManifestReader.Entry entry;
+            try {
+                while (!stop.get() && (entry = reader.next()) != null)  {
+                    Path file = reader.resolve(folder, entry.getPath()).normalize();
+                    String relative = folder.relativize(file).toString();
+                    listed.add(relative, relative);
+                    if (!entry.isSuccessful())  {  // couldn't be hashed back then, so there is nothing to compare with
+                        continue;
+                    }
+                    String[] expected = entry.getHashes();
+                    Runnable check = () ->  {
+                        try {
+                            if (!stop.get())  {
+                                HashResult result = hashFunction.apply(file.toFile(), algorithms);
+                                List<File> problems = classify(result, expected, mismatched, missing, unreadable);
+                                if (problems == null)  {
+                                    matched.incrementAndGet();
+                                }  else if (failFast)  {
+                                    stop.set(true);
+                                }
+                            }
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                            stop.set(true);
+                        } finally {
+                            pending.release();
+                        }
+                    };
+                    pending.acquire();
+                    if (pool != null)  {
+                        pool.execute(check);
+                    }  else  {
+                        check.run();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop.set(true);
+            } finally {
+                pending.acquireUninterruptibly(permits);  // wait for the running Checks
+            }
+            if (failure.get() != null)  {
+                throw new IllegalStateException("A Worker failed unexpectedly!", failure.get());
+            }
+            
+            if (!stop.get())  {
+                findAdded(folder, manifestFile.toAbsolutePath().normalize(), listed, added);
+            }
+        }
+        return new VerificationResult(matched.get(), mismatched, missing, unreadable, added, stop.get());
+    }
+    
+    /**
+     * Walks the Folder and finds the Files which aren't listed. The found Paths get sorted like the listed ones and
+     * both are merged, so neither the listed nor the found Paths have to be kept in Memory.
+     * 
+     * @param folder
+     *            Verified Folder, absolute and normalized
+     * @param manifest
+     *            Output File, which isn't reported if it lies in the Folder
+     * @param listed
+     *            Paths of the listed Files relative to the Folder
+     * @param added
+     *            Receives the Files which aren't listed
+     * @throws IOException
+     *             When the Paths couldn't be sorted
+     */
+    private void findAdded(Path folder, Path manifest, ExternalSorter listed, List<File> added) throws IOException {
+        AtomicReference<IOException> sortError = new AtomicReference<>();
+        try (ExternalSorter found = new ExternalSorter())  {
+            HashPipeline.walk(folder, filter, (file, attrs) ->  {
+                Path path = file.toPath().toAbsolutePath().normalize();
+                if (!path.equals(manifest))  {
+                    String relative = folder.relativize(path).toString();
+                    try {
+                        found.add(relative, relative);
+                    } catch (IOException e) {
+                        sortError.set(e);
+                        return false;
+                    }
+                }
+                return true;
+            }, result ->  {});
+            if (sortError.get() != null)  {
+                throw sortError.get();
+            }
+            
+            try (ExternalSorter.Cursor listedCursor = listed.open();
+                    ExternalSorter.Cursor foundCursor = found.open())  {
+                String listedPath = listedCursor.next();
+                String foundPath = foundCursor.next();
+                while (foundPath != null)  {
+                    int order = listedPath == null ? 1 : listedPath.compareTo(foundPath);
+                    if (order < 0)  {
+                        listedPath = listedCursor.next();
+                    }  else  {
+                        if (order > 0)  {
+                            added.add(folder.resolve(foundPath).toFile());
+                        }
+                        foundPath = foundCursor.next();
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compares a Result with the expected Hashes and adds the File to the matching List of Problems.
+     * 
+     * @param result
+     *            Result of hashing the File again
+     * @param expected
+     *            Hashes listed in the Output File
+     * @param mismatched
+     *            Receives the File if its Hashes differ
+     * @param missing
+     *            Receives the File if it doesn't exist anymore
+     * @param unreadable
+     *            Receives the File if it couldn't be read
+     * @return the List the File got added to or <code>null</code> if the File matched
+     */
+    private static List<File> classify(HashResult result, String[] expected, List<File> mismatched,
+            List<File> missing, List<File> unreadable) {
+        List<File> target;
+        if (!result.isSuccessful())  {
+            target = result.getError() instanceof NoSuchFileException ? missing : unreadable;
+        }  else if (!matches(result, expected))  {
+            target = mismatched;
+        }  else  {
+            return null;
+        }
+        target.add(result.getFile());
+        return target;
+    }
+    
+    /**
+     * Checks whether the computed Hashes equal the expected ones.
+     * 
+     * @param result
+     *            Successful Result of hashing the File again
+     * @param expected
+     *            Hashes listed in the Output File
+     * @return <code>true</code> if every Hash is equal
+     */
+    private static boolean matches(HashResult result, String[] expected) {
+        if (result.getAlgorithmCount() != expected.length)  {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++)  {
+            try {
+                if (!Arrays.equals(result.getDigest(i), Hex.decode(expected[i])))  {
+                    return false;
+                }
+            } catch (IllegalArgumentException e) {  // not a Hash at all
+                return false;
+            }
+        }
+        return true;
+    }
+    
+}
@@ -0,0 +1,722 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Keeps the Output File of a Folder up to date while the Folder changes. Every Folder of the Tree is registered
+ * with a {@link WatchService}, created and modified Files get hashed again once no further Event arrived for them
+ * within the Debounce Time and deleted Files are dropped. The Output File is rewritten periodically under a temporary
+ * Name and renamed, so Readers never see a half-written Output File. If Events got lost, the Tree is rescanned and
+ * only the Files whose Size or Modification Time changed get hashed again.
+ * 
+ * @author DManstrator
+ *
+ */
+public final class ManifestWatcher implements AutoCloseable {
+    
+    /**
+     * Default Time in Milliseconds without further Events before a changed File gets hashed.
+     */
+    public static final long DEFAULT_DEBOUNCE = 500;
+    
+    /**
+     * Default Time in Milliseconds between two Writes of the Output File.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 5000;
+    
+    /**
+     * Counts the created Watchers to name their Threads.
+     */
+    private static final AtomicInteger WATCHER_COUNTER = new AtomicInteger();
+    
+    /**
+     * Maximum Amount of Files handed to the Pool per Worker at once.
+     */
+    private static final int FILES_PER_WORKER = 64;
+    
+    /**
+     * Watched Folder as given by the User.
+     */
+    private final String mainFolderName;
+    
+    /**
+     * Watched Folder, every watched Path starts with it.
+     */
+    private final Path root;
+    
+    /**
+     * Absolute Path of the watched Folder to find the Entry of a File.
+     */
+    private final Path absoluteRoot;
+    
+    /**
+     * Output File which gets rewritten periodically.
+     */
+    private final File outputFile;
+    
+    /**
+     * Algorithms of the Hashes in the Output File.
+     */
+    private final List<String> algorithms;
+    
+    /**
+     * Computes the Result for a single File from the File and its current Attributes.
+     */
+    private final BiFunction<File, BasicFileAttributes, HashResult> hashFunction;
+    
+    /**
+     * Pool to compute the Hashes in, <code>null</code> to compute them on the Thread of the Watcher.
+     */
+    private final ExecutorService pool;
+    
+    /**
+     * Amount of Workers of the Pool.
+     */
+    private final int workers;
+    
+    /**
+     * Cache which gets saved with every Write of the Output File, <code>null</code> without a Cache.
+     */
+    private final HashCache cache;
+    
+    /**
+     * Selects the watched Files and the Folders to register.
+     */
+    private final HashFilter filter;
+    
+    /**
+     * Time in Nanoseconds without further Events before a changed File gets hashed.
+     */
+    private final long debounceNanos;
+    
+    /**
+     * Time in Nanoseconds between two Writes of the Output File.
+     */
+    private final long flushNanos;
+    
+    /**
+     * Receives the Events of the registered Folders.
+     */
+    private final WatchService watchService;
+    
+    /**
+     * Registered Folders by their Watch Key.
+     */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    
+    /**
+     * Current Entries by their Path relative to the watched Folder, ordered like the Lines of the Output File.
+     */
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    
+    /**
+     * Changed Files with the Time in Nanoseconds they get hashed at, only used by the Thread of the Watcher.
+     */
+    private final Map<Path, Long> pending = new LinkedHashMap<>();
+    
+    /**
+     * Whether the Entries changed since the last Write of the Output File.
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    
+    /**
+     * Guards the Writes of the Output File.
+     */
+    private final Object flushLock = new Object();
+    
+    /**
+     * Thread running the Watcher.
+     */
+    private final Thread thread;
+    
+    /**
+     * Whether the Watcher got closed or the watched Folder got deleted.
+     */
+    private volatile boolean closed = false;
+    
+    /**
+     * Amount of Writes of the Output File.
+     */
+    private volatile int flushCount = 0;
+    
+    /**
+     * Amount of Scans of the whole Tree, including the initial one.
+     */
+    private volatile int scanCount = 0;
+    
+    /**
+     * Error of the last failed Write of the Output File, <code>null</code> if the last Write succeeded.
+     */
+    private volatile IOException flushError;
+    
+    /**
+     * Creates a new Watcher, {@link #start()} registers the Folders and starts watching.
+     * 
+     * @param mainFolderName
+     *            Folder to watch
+     * @param outputFile
+     *            Output File to keep up to date
+     * @param algorithms
+     *            Algorithms of the Hashes
+     * @param hashFunction
+     *            Computes the Result for a single File from the File and its current Attributes
+     * @param pool
+     *            Pool to compute the Hashes in, <code>null</code> to compute them on the Thread of the Watcher
+     * @param workers
+     *            Amount of Workers of the Pool
+     * @param cache
+     *            Cache which gets saved with every Write of the Output File, <code>null</code> without a Cache
+     * @param filter
+     *            Selects the watched Files and the Folders to register
+     * @param debounce
+     *            Time in Milliseconds without further Events before a changed File gets hashed
+     * @param flushInterval
+     *            Time in Milliseconds between two Writes of the Output File
+     * @throws IOException
+     *             When the Watch Service couldn't be created
+     */
+    ManifestWatcher(String mainFolderName, File outputFile, List<String> algorithms, BiFunction<File, BasicFileAttributes, HashResult> hashFunction,
+            ExecutorService pool, int workers, HashCache cache, HashFilter filter, long debounce, long flushInterval) throws IOException {
+        this.mainFolderName = mainFolderName;
+        this.root = new File(mainFolderName).toPath();
+        this.absoluteRoot = root.toAbsolutePath().normalize();
+        this.outputFile = outputFile;
+        this.algorithms = algorithms;
+        this.hashFunction = hashFunction;
+        this.pool = pool;
+        this.workers = Math.max(workers, 1);
+        this.cache = cache;
+        this.filter = filter;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounce);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        this.watchService = root.getFileSystem().newWatchService();
+        this.thread = new Thread(this::watch, "FileHasher-Watcher-" + WATCHER_COUNTER.incrementAndGet());
+        thread.setDaemon(true);  // don't keep the JVM alive
+    }
+    
+    /**
+     * Starts watching on a new Thread. The Tree gets scanned and hashed first.
+     */
+    void start() {
+        thread.start();
+    }
+    
+    /**
+     * Returns the watched Folder.
+     * 
+     * @return the watched Folder
+     */
+    public File getMainFolder() {
+        return root.toFile();
+    }
+    
+    /**
+     * Returns the Output File which is kept up to date.
+     * 
+     * @return the Output File
+     */
+    public File getOutputFile() {
+        return outputFile;
+    }
+    
+    /**
+     * Returns the current Result of a File.
+     * 
+     * @param file
+     *            File below the watched Folder
+     * @return the Result or <code>null</code> if the File is unknown or not hashed yet
+     */
+    public HashResult getResult(File file) {
+        Entry entry = entries.get(getKey(file.toPath()));
+        return entry != null ? entry.result : null;
+    }
+    
+    /**
+     * Returns the current Hash of a File with the first Algorithm.
+     * 
+     * @param file
+     *            File below the watched Folder
+     * @return the Hash or <code>null</code> if the File is unknown, not hashed yet or couldn't be hashed
+     */
+    public String getHash(File file) {
+        HashResult result = getResult(file);
+        return result != null ? result.getHash() : null;
+    }
+    
+    /**
+     * Returns the Amount of known Files.
+     * 
+     * @return the Amount of Files, including the ones which couldn't be hashed
+     */
+    public int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Returns how often the Output File got written.
+     * 
+     * @return the Amount of Writes
+     */
+    public int getFlushCount() {
+        return flushCount;
+    }
+    
+    /**
+     * Returns how often the whole Tree got scanned, which happens once on Start and whenever Events got lost.
+     * 
+     * @return the Amount of Scans
+     */
+    public int getScanCount() {
+        return scanCount;
+    }
+    
+    /**
+     * Returns the Error of the last Write of the Output File. A failed Write is retried with the next Interval.
+     * 
+     * @return the Error or <code>null</code> if the last Write succeeded
+     */
+    public IOException getFlushError() {
+        return flushError;
+    }
+    
+    /**
+     * Checks if the Watcher is still running.
+     * 
+     * @return <code>true</code> until the Watcher got closed or the watched Folder got deleted
+     */
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+    
+    /**
+     * Writes the current Entries to the Output File now. The Output File is written under a temporary Name and renamed afterwards.
+     * 
+     * @throws IOException
+     *             When the Output File couldn't be written
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock)  {
+            dirty.set(false);
+            File partFile = new File(outputFile.getPath() + Hasher.PART_SUFFIX);
+            try {
+                try (ManifestWriter writer = new ManifestWriter(partFile, mainFolderName, algorithms, false))  {
+                    for (Entry entry : entries.values())  {
+                        writer.write(entry.result);
+                    }
+                }
+                Hasher.replace(partFile.toPath(), outputFile.toPath());
+                if (cache != null)  {
+                    cache.save();
+                }
+            } catch (IOException e) {
+                dirty.set(true);
+                Files.deleteIfExists(partFile.toPath());
+                throw e;
+            }
+            flushCount++;
+        }
+    }
+    
+    /**
+     * Stops watching, waits until the running Hashes are done and writes the Output File a last Time.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            thread.interrupt();
+        }
+        if (Thread.currentThread() != thread)  {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                thread.interrupt();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Main Loop of the Watcher. Collects the Events, hashes the Files whose Debounce Time is over and writes the Output File periodically.
+     */
+    private void watch() {
+        try {
+            scan(root, System.nanoTime(), true);
+            long nextFlush = System.nanoTime();
+            while (!closed)  {
+                hashDue();
+                long now = System.nanoTime();
+                if (now - nextFlush >= 0)  {
+                    flushIfDirty();
+                    nextFlush = now + flushNanos;
+                }
+                long wait = nextFlush - now;
+                for (long due : pending.values())  {
+                    wait = Math.min(wait, due - now);
+                }
+                WatchKey key = watchService.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                boolean overflow = false;
+                while (key != null)  {
+                    overflow |= process(key);
+                    key = watchService.poll();
+                }
+                if (overflow)  {  // Events got lost, compare the Tree with the Entries
+                    scan(root, System.nanoTime(), true);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed while waiting for Events
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closed = true;
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // nothing left to watch anyway
+            }
+            if (!Thread.currentThread().isInterrupted())  {
+                flushIfDirty();
+            }
+        }
+    }
+    
+    /**
+     * Handles the Events of a registered Folder.
+     * 
+     * @param key
+     *            Watch Key of the Folder
+     * @return <code>true</code> if Events got lost
+     */
+    private boolean process(WatchKey key) {
+        Path directory = directories.get(key);
+        boolean overflow = false;
+        long due = System.nanoTime() + debounceNanos;
+        for (WatchEvent<?> event : key.pollEvents())  {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW)  {
+                overflow = true;
+                continue;
+            }
+            if (directory == null)  {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (filter.isIgnored(path))  {  // e.g. the Output File being rewritten
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE)  {
+                remove(path);
+            }  else if (Files.isDirectory(path))  {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)  {  // its Files were created before it got registered
+                    scan(path, due, false);
+                }
+            }  else  {
+                pending.put(path, due);  // moves the Time to hash the File back with every Event
+            }
+        }
+        if (!key.reset())  {  // Folder got deleted
+            directories.remove(key);
+            if (directory != null)  {
+                remove(directory);
+                if (directory.equals(root))  {
+                    closed = true;
+                }
+            }
+        }
+        return overflow;
+    }
+    
+    /**
+     * Walks a Folder, registers its Folders and marks every new or changed File to be hashed. Folders the Filter rejects
+     * are neither entered nor registered.
+     * 
+     * @param start
+     *            Folder to walk
+     * @param due
+     *            Time in Nanoseconds the found Files get hashed at
+     * @param dropMissing
+     *            <code>true</code> to drop the Entries of the Files which weren't found
+     */
+    private void scan(Path start, long due, boolean dropMissing) {
+        Set<String> found = new HashSet<>();
+        try {
+            Files.walkFileTree(start, filter.getVisitOptions(), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!filter.acceptsDirectory(root, dir))  {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isDirectory() || attrs.isOther() || !filter.acceptsFile(root, file, attrs))  {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String key = getKey(file);
+                    found.add(key);
+                    Entry entry = entries.get(key);
+                    if (entry == null || !entry.matches(attrs))  {
+                        pending.put(file, due);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    String key = getKey(file);
+                    found.add(key);
+                    put(key, new Entry(HashResult.failure(file.toFile(), exc), null));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            put(getKey(start), new Entry(HashResult.failure(start.toFile(), e), null));
+        }
+        if (dropMissing)  {
+            scanCount++;
+            if (entries.keySet().retainAll(found))  {
+                dirty.set(true);
+            }
+        }
+    }
+    
+    /**
+     * Hashes every File whose Debounce Time is over.
+     * 
+     * @throws InterruptedException
+     *             When the Thread got interrupted while waiting for the Workers
+     * @throws IllegalStateException
+     *             When a Worker failed unexpectedly
+     */
+    private void hashDue() throws InterruptedException, IllegalStateException {
+        long now = System.nanoTime();
+        List<Path> due = new ArrayList<>();
+        for (Iterator<Map.Entry<Path, Long>> iterator = pending.entrySet().iterator(); iterator.hasNext(); )  {
+            Map.Entry<Path, Long> next = iterator.next();
+            if (now - next.getValue() >= 0)  {
+                due.add(next.getKey());
+                iterator.remove();
+            }
+        }
+        if (pool == null)  {
+            for (Path path : due)  {
+                if (closed)  {
+                    return;
+                }
+                update(path);
+            }
+            return;
+        }
+        // handed over in Batches, so a Scan of a huge Tree doesn't queue a Task per File at once
+        int batchSize = workers * FILES_PER_WORKER;
+        for (int start = 0; start < due.size() && !closed; start += batchSize)  {
+            List<Future<?>> futures = new ArrayList<>(batchSize);
+            for (Path path : due.subList(start, Math.min(start + batchSize, due.size())))  {
+                futures.add(pool.submit(() -> update(path)));
+            }
+            try {
+                for (Future<?> future : futures)  {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw e;
+            } catch (ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw new IllegalStateException("A Worker failed unexpectedly!", e.getCause());
+            }
+        }
+    }
+    
+    /**
+     * Hashes a changed File again or drops its Entry if it is gone or the Filter rejects it now, e.g. because it grew too big.
+     * 
+     * @param path
+     *            Changed File
+     */
+    private void update(Path path) {
+        String key = getKey(path);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, filter.getLinkOptions());
+        } catch (NoSuchFileException e) {
+            drop(key, path);
+            return;
+        } catch (IOException e) {
+            put(key, new Entry(HashResult.failure(path.toFile(), e), null));
+            return;
+        }
+        if (attrs.isDirectory() || attrs.isOther())  {
+            return;
+        }
+        if (!filter.acceptsFile(root, path, attrs))  {
+            drop(key, path);
+            return;
+        }
+        put(key, new Entry(hashFunction.apply(path.toFile(), attrs), attrs));
+    }
+    
+    /**
+     * Drops the Entry of a deleted File or the Entries of a deleted Folder, from the Entries and from the Cache.
+     * 
+     * @param path
+     *            Deleted File or Folder
+     */
+    private void remove(Path path) {
+        String key = getKey(path);
+        boolean removed = entries.remove(key) != null;
+        pending.remove(path);
+        ConcurrentNavigableMap<String, Entry> children = key.isEmpty() ? entries  // the watched Folder itself
+                : entries.subMap(key + File.separatorChar, key + (char) (File.separatorChar + 1));
+        if (!children.isEmpty())  {
+            children.clear();
+            removed = true;
+        }
+        pending.keySet().removeIf(file -> file.startsWith(path));
+        if (cache != null)  {
+            cache.evict(path.toFile());
+        }
+        if (removed)  {
+            dirty.set(true);
+        }
+    }
+    
+    /**
+     * Drops the Entry of a single File which is gone or not selected anymore, from the Entries and from the Cache.
+     * 
+     * @param key
+     *            Path of the File relative to the watched Folder
+     * @param path
+     *            The File
+     */
+    private void drop(String key, Path path) {
+        if (cache != null)  {
+            cache.evict(path.toFile());
+        }
+        if (entries.remove(key) != null)  {
+            dirty.set(true);
+        }
+    }
+    
+    /**
+     * Stores the Entry of a File.
+     * 
+     * @param key
+     *            Path of the File relative to the watched Folder
+     * @param entry
+     *            New Entry of the File
+     */
+    private void put(String key, Entry entry) {
+        entries.put(key, entry);
+        dirty.set(true);
+    }
+    
+    /**
+     * Writes the Output File if an Entry changed since the last Write. A failed Write is kept for {@link #getFlushError()}.
+     */
+    private void flushIfDirty() {
+        if (!dirty.get())  {
+            return;
+        }
+        try {
+            flush();
+            flushError = null;
+        } catch (IOException e) {
+            flushError = e;
+        }
+    }
+    
+    /**
+     * Returns the Key of a File in the Entries.
+     * 
+     * @param path
+     *            File below the watched Folder
+     * @return the Path of the File relative to the watched Folder
+     */
+    private String getKey(Path path) {
+        return absoluteRoot.relativize(path.toAbsolutePath().normalize()).toString();
+    }
+    
+    /**
+     * Current Result of a File with the Attributes it got hashed with.
+     */
+    private static final class Entry {
+        
+        /**
+         * Result of the File.
+         */
+        private final HashResult result;
+        
+        /**
+         * Size of the File when it got hashed, <code>-1</code> if it couldn't be read.
+         */
+        private final long size;
+        
+        /**
+         * Modification Time of the File in Milliseconds when it got hashed.
+         */
+        private final long modificationTime;
+        
+        /**
+         * Creates a new Entry.
+         * 
+         * @param result
+         *            Result of the File
+         * @param attrs
+         *            Attributes of the File when it got hashed, <code>null</code> if they couldn't be read
+         */
+        private Entry(HashResult result, BasicFileAttributes attrs) {
+            this.result = result;
+            this.size = attrs != null ? attrs.size() : -1;
+            this.modificationTime = attrs != null ? attrs.lastModifiedTime().toMillis() : 0;
+        }
+        
+        /**
+         * Checks if the File is unchanged since it got hashed. Failed Results never match, so they get retried.
+         * 
+         * @param attrs
+         *            Current Attributes of the File
+         * @return <code>true</code> if the Size and the Modification Time are the same
+         */
+        private boolean matches(BasicFileAttributes attrs) {
+            return result.isSuccessful() && size == attrs.size() && modificationTime == attrs.lastModifiedTime().toMillis();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,205 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes the Output File of {@link Hasher#hash(String)} incrementally. Every Result gets written as soon
+ * as it is available, so the Output never has to be kept in Memory as a whole. In sorted Mode the Lines
+ * are ordered by their Path with an {@link ExternalSorter}, which keeps the Memory bounded as well.
+ * 
+ * @author DManstrator
+ *
+ */
+final class ManifestWriter implements AutoCloseable {
+    
+    /**
+     * Prefix of the Header Line containing the scanned Path.
+     */
+    static final String HEADER_PREFIX = "Path to scan: ";
+    
+    /**
+     * Prefix of the optional Header Line listing the Algorithms. Only written if other Algorithms
+     * than {@link Hasher#DEFAULT_ALGORITHM} are used, a Line then contains one Hash per Algorithm.
+     */
+    static final String ALGORITHMS_PREFIX = "Algorithms: ";
+    
+    /**
+     * Separates the Path of a File from its Hash.
+     */
+    static final String SEPARATOR = ": ";
+    
+    /**
+     * Marks a File which couldn't be hashed.
+     */
+    static final String ERROR_PREFIX = "ERROR (";
+    
+    /**
+     * Underlying buffered UTF-8 Writer.
+     */
+    private final Writer writer;
+    
+    /**
+     * Scanned Folder.
+     */
+    private final Path root;
+    
+    /**
+     * Name of the scanned Folder every written Path starts with.
+     */
+    private final String rootName;
+    
+    /**
+     * Sorts the Lines if the sorted Mode is active, else <code>null</code>.
+     */
+    private final ExternalSorter sorter;
+    
+    /**
+     * Reused to build every Line, so the Hashes are encoded straight into it.
+     */
+    private final StringBuilder lineBuilder = new StringBuilder();
+    
+    /**
+     * Reused to pass every unsorted Line to the Writer.
+     */
+    private char[] lineChars = new char[256];
+    
+    /**
+     * Whether the Output File is closed, further Results are rejected then.
+     */
+    private boolean closed = false;
+    
+    /**
+     * Creates the Output File and writes the Header.
+     * 
+     * @param outputFile
+     *            File to write
+     * @param mainFolderName
+     *            Scanned Folder as given by the User
+     * @param algorithms
+     *            Algorithms the Hashes are computed with
+     * @param sorted
+     *            <code>true</code> to write the Lines ordered by Path
+     * @throws IOException
+     *             When the Output File couldn't be created
+     */
+    ManifestWriter(File outputFile, String mainFolderName, List<String> algorithms, boolean sorted) throws IOException {
+        this.root = new File(mainFolderName).toPath();
+        Path fileName = root.toAbsolutePath().normalize().getFileName();
+        this.rootName = fileName != null ? fileName.toString() : "";
+        this.sorter = sorted ? new ExternalSorter() : null;
+        this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(outputFile.toPath()), StandardCharsets.UTF_8));
+        writer.write(HEADER_PREFIX + mainFolderName);
+        if (algorithms.size() != 1 || !algorithms.get(0).equals(Hasher.DEFAULT_ALGORITHM))  {
+            writeLine(ALGORITHMS_PREFIX + String.join(", ", algorithms));
+        }
+    }
+    
+    /**
+     * Writes the Result of a File. Can be called from several Threads.
+     * 
+     * @param result
+     *            Result to write
+     * @throws IOException
+     *             When the Line couldn't be written
+     */
+    synchronized void write(HashResult result) throws IOException {
+        if (closed)  {
+            throw new IOException("The output file is already closed!");
+        }
+        String path = getRelativeName(result.getFile());
+        lineBuilder.setLength(0);
+        lineBuilder.append(path).append(SEPARATOR);
+        if (result.isSuccessful())  {
+            result.appendHashes(lineBuilder);
+        }  else  {
+            lineBuilder.append(ERROR_PREFIX).append(result.getErrorMessage()).append(')');
+        }
+        if (sorter != null)  {
+            sorter.add(path, lineBuilder.toString());
+        }  else  {  // copied into a reused Array, so no String gets created per Line
+            if (lineChars.length < lineBuilder.length())  {
+                lineChars = new char[Math.max(lineBuilder.length(), lineChars.length * 2)];
+            }
+            lineBuilder.getChars(0, lineBuilder.length(), lineChars, 0);
+            writer.write(System.lineSeparator());
+            writer.write(lineChars, 0, lineBuilder.length());
+        }
+    }
+    
+    /**
+     * Writes the remaining sorted Lines and closes the Output File.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)  {
+            return;
+        }
+        closed = true;
+        try {
+            if (sorter != null)  {
+                try {
+                    sorter.merge(this::writeLine);
+                } finally {
+                    sorter.close();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+    
+    /**
+     * Closes the Output File without writing the remaining sorted Lines, e.g. because the Run got cancelled
+     * and the Output File gets deleted anyway.
+     * 
+     * @throws IOException
+     *             When the Output File couldn't be closed
+     */
+    synchronized void discard() throws IOException {
+        if (closed)  {
+            return;
+        }
+        closed = true;
+        try {
+            if (sorter != null)  {
+                sorter.close();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+    
+    /**
+     * Writes a Line behind the previous one.
+     * 
+     * @param line
+     *            Line to write
+     * @throws IOException
+     *             When the Line couldn't be written
+     */
+    private void writeLine(String line) throws IOException {
+        writer.write(System.lineSeparator());
+        writer.write(line);
+    }
+    
+    /**
+     * Returns the Path of a File relative to the Parent of the scanned Folder, e.g. <code>folder1/Testfile.txt</code>.
+     * 
+     * @param file
+     *            File below the scanned Folder
+     * @return the relative Path of the File
+     */
+    private String getRelativeName(File file) {
+        Path relative = root.relativize(file.toPath());
+        return rootName.isEmpty() ? relative.toString() : rootName + File.separator + relative;
+    }
+    
+}
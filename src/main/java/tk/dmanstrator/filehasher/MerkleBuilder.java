@@ -0,0 +1,328 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import tk.dmanstrator.filehasher.MerkleTree.Node;
+
+/**
+ * Builds the {@link MerkleTree} of a Folder. The Files get hashed by the Workers while the Folder is still
+ * being walked, the Digests of the Folders are computed from the Digests of their Children afterwards.
+ * Computing a Folder Digest only hashes the Names and Digests of its Children, so with a Cache which serves
+ * unchanged Files only the changed Files get read again.
+ * 
+ * @author DManstrator
+ *
+ */
+final class MerkleBuilder {
+    
+    /**
+     * Marks a File in the Input of a Folder Digest.
+     */
+    private static final byte FILE_MARKER = 'F';
+    
+    /**
+     * Marks a Folder in the Input of a Folder Digest.
+     */
+    private static final byte DIRECTORY_MARKER = 'D';
+    
+    /**
+     * Marks an unreadable Entry in the Input of a Folder Digest. Without a Name it marks a Folder which couldn't be
+     * listed completely.
+     */
+    private static final byte ERROR_MARKER = 'E';
+    
+    /**
+     * Computes the Result for a single File from the File and its Attributes found by the Walk.
+     */
+    private final BiFunction<File, BasicFileAttributes, HashResult> hashFunction;
+    
+    /**
+     * Pool to compute the Hashes in, <code>null</code> to compute them on the calling Thread.
+     */
+    private final ExecutorService pool;
+    
+    /**
+     * Creates the Digests of the Folders.
+     */
+    private final Supplier<MessageDigest> digestFactory;
+    
+    /**
+     * Selects the Files and Folders which are Part of the Tree.
+     */
+    private final HashFilter filter;
+    
+    /**
+     * Creates a new Builder.
+     * 
+     * @param hashFunction
+     *            Computes the Result for a single File, the first Digest is used
+     * @param pool
+     *            Pool to compute the Hashes in, <code>null</code> to compute them on the calling Thread
+     * @param digestFactory
+     *            Creates the Digests of the Folders with the same Algorithm as the Files
+     * @param filter
+     *            Selects the Files and Folders which are Part of the Tree
+     */
+    MerkleBuilder(BiFunction<File, BasicFileAttributes, HashResult> hashFunction, ExecutorService pool, Supplier<MessageDigest> digestFactory,
+            HashFilter filter) {
+        this.hashFunction = hashFunction;
+        this.pool = pool;
+        this.digestFactory = digestFactory;
+        this.filter = filter;
+    }
+    
+    /**
+     * Builds the Tree of a Folder.
+     * 
+     * @param root
+     *            Folder to hash
+     * @return the Tree
+     * @throws CancellationException
+     *             When the calling Thread got interrupted
+     * @throws IllegalStateException
+     *             When a Worker failed unexpectedly
+     */
+    MerkleTree build(Path root) throws CancellationException, IllegalStateException {
+        Deque<List<Pending>> open = new ArrayDeque<>();
+        List<Pending> top = new ArrayList<>(1);
+        Semaphore capacity = new Semaphore(HashPipeline.QUEUE_CAPACITY);
+        open.push(top);
+        try {
+            Files.walkFileTree(root, filter.getVisitOptions(), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!filter.acceptsDirectory(root, dir))  {  // pruned, so it isn't Part of its Parent's Digest either
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    open.push(new ArrayList<>());
+                    return checkInterrupted();
+                }
+                
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isDirectory() || attrs.isOther() || !filter.acceptsFile(root, file, attrs))  {  // e.g. Pipes would block the Reader forever
+                        return FileVisitResult.CONTINUE;
+                    }
+                    File target = file.toFile();
+                    Future<HashResult> result;
+                    if (pool != null)  {
+                        try {
+                            capacity.acquire();  // like the Queue of the HashPipeline, so a huge Tree doesn't flood the Pool
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return FileVisitResult.TERMINATE;
+                        }
+                        result = pool.submit(() ->  {
+                            try {
+                                return hashFunction.apply(target, attrs);
+                            } finally {
+                                capacity.release();
+                            }
+                        });
+                    }  else  {
+                        result = CompletableFuture.completedFuture(hashFunction.apply(target, attrs));
+                    }
+                    open.peek().add(new Pending(name(file), null, result, attrs.size(), null));
+                    return checkInterrupted();
+                }
+                
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    open.peek().add(new Pending(name(file), null, null, 0, exc));
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    List<Pending> children = open.pop();
+                    open.peek().add(new Pending(name(dir), children, null, 0, exc));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            top.add(new Pending(name(root), null, null, 0, e));
+        }
+        if (Thread.currentThread().isInterrupted())  {
+            cancel(top);
+            throw new CancellationException(String.format("Building the tree of '%s' got cancelled!", root));
+        }
+        if (top.isEmpty())  {  // the Walk stopped within the Root, e.g. because it vanished
+            return new MerkleTree(digestFactory.get().getAlgorithm(), new Node(name(root), true, null, 0, null, null));
+        }
+        try {
+            return new MerkleTree(digestFactory.get().getAlgorithm(), resolve(top.get(0), digestFactory.get()));
+        } catch (InterruptedException e) {
+            cancel(top);
+            Thread.currentThread().interrupt();
+            throw new CancellationException(String.format("Building the tree of '%s' got cancelled!", root));
+        }
+    }
+    
+    /**
+     * Turns a pending Entry into a Node. Waits for the Hashes of the Files and computes the Digests of the Folders.
+     * 
+     * @param pending
+     *            Entry found by the Walk
+     * @param md
+     *            Digest to compute the Folder Digests with, reset after every Folder
+     * @return the Node
+     * @throws InterruptedException
+     *             When the calling Thread got interrupted while waiting for a Hash
+     * @throws IllegalStateException
+     *             When a Worker failed unexpectedly
+     */
+    private static Node resolve(Pending pending, MessageDigest md) throws InterruptedException, IllegalStateException {
+        if (pending.children == null)  {
+            if (pending.result == null)  {
+                return new Node(pending.name, false, null, 0, null, pending.error);
+            }
+            HashResult result;
+            try {
+                result = pending.result.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A Worker failed unexpectedly!", e.getCause());
+            }
+            return result.isSuccessful() ? new Node(pending.name, false, result.getDigest(0), pending.size, null, null)
+                    : new Node(pending.name, false, null, 0, null, result.getError());
+        }
+        
+        Node[] children = new Node[pending.children.size()];
+        for (int i = 0; i < children.length; i++)  {
+            children[i] = resolve(pending.children.get(i), md);
+        }
+        pending.children.clear();  // the Nodes replace the pending Entries
+        Arrays.sort(children, Comparator.comparing(Node::getName));
+        
+        long size = 0;
+        for (Node child : children)  {
+            byte[] digest = child.getDigest();
+            md.update(digest == null ? ERROR_MARKER : child.isDirectory() ? DIRECTORY_MARKER : FILE_MARKER);
+            md.update(child.getName().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            if (digest != null)  {
+                md.update(digest);
+            }
+            size += child.getSize();
+        }
+        if (pending.error != null)  {  // not every Child got listed, so the Folder mustn't match a complete one
+            md.update(ERROR_MARKER);
+            md.update((byte) 0);
+        }
+        return new Node(pending.name, true, md.digest(), size, children, pending.error);
+    }
+    
+    /**
+     * Cancels the Hashes of all pending Files.
+     * 
+     * @param pending
+     *            Entries found by the Walk
+     */
+    private static void cancel(List<Pending> pending) {
+        for (Pending entry : pending)  {
+            if (entry.result != null)  {
+                entry.result.cancel(true);
+            }
+            if (entry.children != null)  {
+                cancel(entry.children);
+            }
+        }
+    }
+    
+    /**
+     * Stops the Walk if the calling Thread got interrupted.
+     * 
+     * @return whether the Walk continues
+     */
+    private static FileVisitResult checkInterrupted() {
+        return Thread.currentThread().isInterrupted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+    }
+    
+    /**
+     * Returns the Name of a File or Folder.
+     * 
+     * @param path
+     *            Path of the File or Folder
+     * @return the Name, the whole Path for a File System Root
+     */
+    private static String name(Path path) {
+        Path name = path.toAbsolutePath().normalize().getFileName();
+        return name != null ? name.toString() : path.toString();
+    }
+    
+    /**
+     * File or Folder found by the Walk whose Node isn't built yet.
+     */
+    private static final class Pending {
+        
+        /**
+         * Name of the File or Folder.
+         */
+        private final String name;
+        
+        /**
+         * Pending Children of a Folder, <code>null</code> for a File.
+         */
+        private final List<Pending> children;
+        
+        /**
+         * Pending Result of a File, <code>null</code> for a Folder or an unreadable File.
+         */
+        private final Future<HashResult> result;
+        
+        /**
+         * Size of a File.
+         */
+        private final long size;
+        
+        /**
+         * Error which occurred while walking, <code>null</code> if none occurred.
+         */
+        private final IOException error;
+        
+        /**
+         * Creates a new pending Entry.
+         * 
+         * @param name
+         *            Name of the File or Folder
+         * @param children
+         *            Pending Children of a Folder, <code>null</code> for a File
+         * @param result
+         *            Pending Result of a File, <code>null</code> for a Folder or an unreadable File
+         * @param size
+         *            Size of a File
+         * @param error
+         *            Error which occurred while walking, <code>null</code> if none occurred
+         */
+        private Pending(String name, List<Pending> children, Future<HashResult> result, long size, IOException error) {
+            this.name = name;
+            this.children = children;
+            this.result = result;
+            this.size = size;
+            this.error = error;
+        }
+        
+    }
+    
+}
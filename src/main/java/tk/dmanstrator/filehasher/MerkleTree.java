@@ -0,0 +1,391 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Digests of a Folder as a Merkle Tree. Every File has the Digest of its Content, every Folder has the Digest
+ * of the sorted Names and Digests of its Children, so the Digest of the Root changes whenever anything below it changes.
+ * Two Trees are compared by descending only into Folders whose Digests differ.
+ * 
+ * @author DManstrator
+ *
+ * @see Hasher#getMerkleTree(java.io.File)
+ */
+public final class MerkleTree {
+    
+    /**
+     * Algorithm the Digests were computed with.
+     */
+    private final String algorithm;
+    
+    /**
+     * Node of the hashed Folder.
+     */
+    private final Node root;
+    
+    /**
+     * Creates a new Tree.
+     * 
+     * @param algorithm
+     *            Algorithm the Digests were computed with
+     * @param root
+     *            Node of the hashed Folder
+     */
+    MerkleTree(String algorithm, Node root) {
+        this.algorithm = algorithm;
+        this.root = root;
+    }
+    
+    /**
+     * Returns the Algorithm the Digests were computed with.
+     * 
+     * @return the Name of the Algorithm
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+    
+    /**
+     * Returns the Node of the hashed Folder.
+     * 
+     * @return the Root Node
+     */
+    public Node getRoot() {
+        return root;
+    }
+    
+    /**
+     * Returns the Digest of the hashed Folder as a hexadecimal String.
+     * 
+     * @return the Root Hash
+     */
+    public String getRootHash() {
+        return root.getHash();
+    }
+    
+    /**
+     * Finds the Node of a Path.
+     * 
+     * @param relativePath
+     *            Path relative to the hashed Folder, separated by <code>/</code>
+     * @return the Node or <code>null</code> if the Path isn't part of the Tree
+     */
+    public Node find(String relativePath) {
+        Node node = root;
+        for (String name : relativePath.split("/"))  {
+            if (!name.isEmpty())  {
+                node = node != null ? node.getChild(name) : null;
+            }
+        }
+        return node;
+    }
+    
+    /**
+     * Compares this Tree with another one. Folders with the same Digest are skipped as a whole.
+     * 
+     * @param other
+     *            Tree to compare with, e.g. of a Replica
+     * @return the Differences ordered by Path, <code>ADDED</code> means only the other Tree contains the Path
+     * @throws IllegalArgumentException
+     *             When the Trees were computed with different Algorithms
+     */
+    public List<Difference> compare(MerkleTree other) throws IllegalArgumentException {
+        if (!algorithm.equals(other.algorithm))  {
+            throw new IllegalArgumentException(String.format("Can't compare a %s tree with a %s tree!", algorithm, other.algorithm));
+        }
+        List<Difference> differences = new ArrayList<>();
+        compare("", root, other.root, differences);
+        return Collections.unmodifiableList(differences);
+    }
+    
+    /**
+     * Compares two Nodes and descends into Folders whose Digests differ.
+     * 
+     * @param path
+     *            Path of the Nodes relative to the Roots, empty for the Roots
+     * @param left
+     *            Node of this Tree
+     * @param right
+     *            Node of the other Tree
+     * @param differences
+     *            Receives the Differences
+     */
+    private static void compare(String path, Node left, Node right, List<Difference> differences) {
+        if (left.isDirectory() == right.isDirectory() && left.digest != null && Arrays.equals(left.digest, right.digest))  {
+            return;
+        }
+        if (!left.isDirectory() || !right.isDirectory())  {
+            differences.add(new Difference(path, Change.CHANGED));
+            return;
+        }
+        // Children are sorted by Name, so both Lists are merged in one Pass
+        Node[] leftChildren = left.children;
+        Node[] rightChildren = right.children;
+        int i = 0;
+        int j = 0;
+        while (i < leftChildren.length || j < rightChildren.length)  {
+            int order = i == leftChildren.length ? 1 : j == rightChildren.length ? -1
+                    : leftChildren[i].name.compareTo(rightChildren[j].name);
+            if (order < 0)  {
+                differences.add(new Difference(child(path, leftChildren[i++].name), Change.REMOVED));
+            }  else if (order > 0)  {
+                differences.add(new Difference(child(path, rightChildren[j++].name), Change.ADDED));
+            }  else  {
+                compare(child(path, leftChildren[i].name), leftChildren[i++], rightChildren[j++], differences);
+            }
+        }
+    }
+    
+    /**
+     * Builds the Path of a Child.
+     * 
+     * @param path
+     *            Path of the Parent, empty for the Root
+     * @param name
+     *            Name of the Child
+     * @return the Path of the Child
+     */
+    private static String child(String path, String name) {
+        return path.isEmpty() ? name : path + "/" + name;
+    }
+    
+    /**
+     * Kind of a Difference between two Trees.
+     */
+    public enum Change {
+        
+        /**
+         * Only the other Tree contains the Path.
+         */
+        ADDED,
+        
+        /**
+         * Only this Tree contains the Path.
+         */
+        REMOVED,
+        
+        /**
+         * Both Trees contain the Path with different Content, or one of them couldn't be read.
+         */
+        CHANGED
+        
+    }
+    
+    /**
+     * Path which differs between two Trees.
+     */
+    public static final class Difference {
+        
+        /**
+         * Path relative to the Roots, separated by <code>/</code>.
+         */
+        private final String path;
+        
+        /**
+         * Kind of the Difference.
+         */
+        private final Change change;
+        
+        /**
+         * Creates a new Difference.
+         * 
+         * @param path
+         *            Path relative to the Roots
+         * @param change
+         *            Kind of the Difference
+         */
+        private Difference(String path, Change change) {
+            this.path = path;
+            this.change = change;
+        }
+        
+        /**
+         * Returns the Path relative to the Roots.
+         * 
+         * @return the Path separated by <code>/</code>, empty for the Roots themselves
+         */
+        public String getPath() {
+            return path;
+        }
+        
+        /**
+         * Returns the Kind of the Difference.
+         * 
+         * @return the Kind
+         */
+        public Change getChange() {
+            return change;
+        }
+        
+        @Override
+        public String toString() {
+            return change + ": " + path;
+        }
+        
+    }
+    
+    /**
+     * File or Folder of a Tree.
+     */
+    public static final class Node {
+        
+        /**
+         * No Children of a File.
+         */
+        private static final Node[] NO_CHILDREN = new Node[0];
+        
+        /**
+         * Name of the File or Folder.
+         */
+        private final String name;
+        
+        /**
+         * Whether the Node is a Folder.
+         */
+        private final boolean directory;
+        
+        /**
+         * Digest of the Content or the Children, <code>null</code> if the File couldn't be read.
+         */
+        private final byte[] digest;
+        
+        /**
+         * Size of the File or of all Files below the Folder in Bytes.
+         */
+        private final long size;
+        
+        /**
+         * Children sorted by Name, empty for Files.
+         */
+        private final Node[] children;
+        
+        /**
+         * Error which occurred while reading, <code>null</code> if none occurred.
+         */
+        private final IOException error;
+        
+        /**
+         * Creates a new Node.
+         * 
+         * @param name
+         *            Name of the File or Folder
+         * @param directory
+         *            Whether the Node is a Folder
+         * @param digest
+         *            Digest of the Content or the Children, <code>null</code> if the File couldn't be read
+         * @param size
+         *            Size of the File or of all Files below the Folder
+         * @param children
+         *            Children sorted by Name, <code>null</code> for Files
+         * @param error
+         *            Error which occurred while reading, <code>null</code> if none occurred
+         */
+        Node(String name, boolean directory, byte[] digest, long size, Node[] children, IOException error) {
+            this.name = name;
+            this.directory = directory;
+            this.digest = digest;
+            this.size = size;
+            this.children = children != null ? children : NO_CHILDREN;
+            this.error = error;
+        }
+        
+        /**
+         * Returns the Name of the File or Folder.
+         * 
+         * @return the Name
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Checks whether the Node is a Folder.
+         * 
+         * @return <code>true</code> for a Folder
+         */
+        public boolean isDirectory() {
+            return directory;
+        }
+        
+        /**
+         * Returns the Digest as a hexadecimal String.
+         * 
+         * @return the Hash or <code>null</code> if the File couldn't be read
+         */
+        public String getHash() {
+            return digest != null ? Hex.encode(digest) : null;
+        }
+        
+        /**
+         * Returns the raw Digest.
+         * 
+         * @return a Copy of the Digest or <code>null</code> if the File couldn't be read
+         */
+        public byte[] getDigest() {
+            return digest != null ? digest.clone() : null;
+        }
+        
+        /**
+         * Returns the Size of the File or of all Files below the Folder.
+         * 
+         * @return the Size in Bytes
+         */
+        public long getSize() {
+            return size;
+        }
+        
+        /**
+         * Returns the Children.
+         * 
+         * @return the Children sorted by Name, empty for Files
+         */
+        public List<Node> getChildren() {
+            return Collections.unmodifiableList(Arrays.asList(children));
+        }
+        
+        /**
+         * Finds a Child by its Name.
+         * 
+         * @param name
+         *            Name of the Child
+         * @return the Child or <code>null</code> if there is none with the Name
+         */
+        public Node getChild(String name) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high)  {
+                int middle = (low + high) >>> 1;
+                int order = children[middle].name.compareTo(name);
+                if (order == 0)  {
+                    return children[middle];
+                }
+                if (order < 0)  {
+                    low = middle + 1;
+                }  else  {
+                    high = middle - 1;
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * Returns the Error which occurred while reading.
+         * 
+         * @return the Error or <code>null</code> if none occurred
+         */
+        public IOException getError() {
+            return error;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s%s: %s", name, directory ? "/" : "", digest != null ? getHash() : "ERROR (" + error + ")");
+        }
+        
+    }
+    
+}
@@ -0,0 +1,33 @@
+package tk.dmanstrator.filehasher;
+
+/**
+ * Strategies to read the Content of a File into a Message Digest.
+ * 
+ * @author DManstrator
+ *
+ */
+public enum ReadMode {
+    
+    /**
+     * Streams the File through a reused Heap Buffer.
+     */
+    STREAM,
+    
+    /**
+     * Reads the File with a File Channel into a reused Direct Buffer, which avoids
+     * copying the Data from the Kernel into the Heap.
+     */
+    DIRECT,
+    
+    /**
+     * Maps the File Window by Window into Memory and feeds the mapped Regions to the Digest.
+     */
+    MAPPED,
+    
+    /**
+     * Chooses the Strategy per File by its Size: small Files are read {@link #DIRECT direct},
+     * big Files are {@link #MAPPED mapped}.
+     */
+    AUTO;
+    
+}
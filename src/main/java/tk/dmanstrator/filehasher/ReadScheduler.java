@@ -0,0 +1,479 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands the found Files to the Workers while limiting the concurrent Reads per File Store. Every File Store gets its
+ * own Lane with its own Queue and Limit: spinning Disks are read one File at a Time, network Mounts allow more
+ * concurrent Reads than local Disks. A Worker always takes a File from a Lane which has a free Read, so the Workers
+ * stay busy with other File Stores instead of waiting for a saturated one.
+ * 
+ * @author DManstrator
+ *
+ */
+final class ReadScheduler {
+    
+    /**
+     * Concurrent Reads of a spinning Disk, more would only add Seeks.
+     */
+    static final int ROTATIONAL_READS = 1;
+    
+    /**
+     * Types of File Stores with a high Latency per Read.
+     */
+    private static final Set<String> REMOTE_TYPES = new HashSet<>(Arrays.asList("nfs", "nfs4", "cifs", "smb", "smbfs", "smb2",
+            "smb3", "afs", "ncpfs", "9p", "davfs", "fuse.sshfs", "sshfs", "fuse.rclone", "webdav"));
+    
+    /**
+     * Maximum concurrent Reads of a local File Store.
+     */
+    private final int localReads;
+    
+    /**
+     * Maximum concurrent Reads of a network Mount.
+     */
+    private final int remoteReads;
+    
+    /**
+     * Whether the Files of a Directory are read in the Order of their File Keys (e.g. Inodes) instead of the biggest first.
+     */
+    private final boolean fileKeyOrder;
+    
+    /**
+     * Guards the Lanes.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    
+    /**
+     * Signalled when a File got added, a Read finished or the Walk is done.
+     */
+    private final Condition changed = lock.newCondition();
+    
+    /**
+     * Lanes by the Key of their File Store, see {@link #getStoreKey(File, BasicFileAttributes)}.
+     */
+    private final Map<Object, Lane> lanesByKey = new HashMap<>();
+    
+    /**
+     * Lanes by their File Store, so Keys of the same File Store share a Lane.
+     */
+    private final Map<FileStore, Lane> lanesByStore = new HashMap<>();
+    
+    /**
+     * All Lanes in the Order they got created.
+     */
+    private final List<Lane> lanes = new ArrayList<>();
+    
+    /**
+     * Lane the next Search for a File starts at, so no Lane starves.
+     */
+    private int nextLane = 0;
+    
+    /**
+     * Directory of the last added File.
+     */
+    private File lastDirectory;
+    
+    /**
+     * Sequence Number of the Directory of the last added File.
+     */
+    private long directorySequence = 0;
+    
+    /**
+     * Sequence Number of the last added File.
+     */
+    private long fileSequence = 0;
+    
+    /**
+     * Whether the Walk is done, so no more Files get added.
+     */
+    private boolean finished = false;
+    
+    /**
+     * Creates a new Scheduler.
+     * 
+     * @param localReads
+     *            Maximum concurrent Reads of a local File Store
+     * @param remoteReads
+     *            Maximum concurrent Reads of a network Mount
+     * @param fileKeyOrder
+     *            Whether the Files of a Directory are read in the Order of their File Keys instead of the biggest first
+     */
+    ReadScheduler(int localReads, int remoteReads, boolean fileKeyOrder) {
+        this.localReads = localReads;
+        this.remoteReads = remoteReads;
+        this.fileKeyOrder = fileKeyOrder;
+    }
+    
+    /**
+     * Adds a found File.
+     * 
+     * @param file
+     *            Found File
+     * @param attrs
+     *            Attributes of the File
+     */
+    void add(File file, BasicFileAttributes attrs) {
+        Object key = getStoreKey(file, attrs);
+        lock.lock();
+        Lane lane;
+        try {
+            lane = lanesByKey.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if (lane == null)  {
+            lane = getLane(key, file);
+        }
+        lock.lock();
+        try {
+            File directory = file.getParentFile();
+            if (directory == null ? lastDirectory != null : !directory.equals(lastDirectory))  {
+                lastDirectory = directory;
+                directorySequence++;
+            }
+            lane.queue.add(new Read(file, attrs, lane, directorySequence, fileSequence++, getInode(attrs)));
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Marks the End of the Walk. Waiting Workers get released once every Lane is empty.
+     */
+    void finish() {
+        lock.lock();
+        try {
+            finished = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Takes the next File from a Lane with a free Read. Blocks until there is one.
+     * 
+     * @return the File to read, <code>null</code> if the Walk is done and every Lane is empty
+     * @throws InterruptedException
+     *             When the Worker got interrupted while waiting
+     */
+    Read take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true)  {
+                boolean pending = false;
+                for (int i = 0; i < lanes.size(); i++)  {
+                    Lane lane = lanes.get((nextLane + i) % lanes.size());
+                    pending |= !lane.queue.isEmpty();
+                    if (!lane.queue.isEmpty() && lane.active < lane.limit)  {
+                        lane.active++;
+                        nextLane = (nextLane + i + 1) % lanes.size();
+                        return lane.queue.poll();
+                    }
+                }
+                if (finished && !pending)  {
+                    changed.signalAll();
+                    return null;
+                }
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Frees the Read of a File as soon as the File got read, it doesn't have to be hashed yet. Further Calls for the
+     * same File have no Effect.
+     * 
+     * @param read
+     *            File which got read
+     */
+    void done(Read read) {
+        lock.lock();
+        try {
+            if (!read.done)  {
+                read.done = true;
+                read.lane.active--;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Finds or creates the Lane of the File Store of a File. The File Store gets looked up without the Lock held,
+     * since that can block, e.g. on a network Mount, and the Workers must not wait for it.
+     * 
+     * @param key
+     *            Key of the File Store, see {@link #getStoreKey(File, BasicFileAttributes)}
+     * @param file
+     *            File to find the Lane for
+     * @return the Lane
+     */
+    private Lane getLane(Object key, File file) {
+        FileStore store;
+        try {
+            store = Files.getFileStore(file.toPath());
+        } catch (IOException | RuntimeException e) {
+            store = null;
+        }
+        int limit;
+        if (store != null && REMOTE_TYPES.contains(store.type().toLowerCase(Locale.ROOT)))  {
+            limit = remoteReads;
+        }  else if (store != null && isRotational(store))  {
+            limit = ROTATIONAL_READS;
+        }  else  {
+            limit = localReads;
+        }
+        
+        lock.lock();
+        try {
+            Lane lane = lanesByKey.get(key);
+            if (lane == null && store != null)  {
+                lane = lanesByStore.get(store);
+            }
+            if (lane == null)  {
+                Comparator<Read> order = fileKeyOrder
+                        ? Comparator.comparingLong((Read read) -> read.directory).thenComparingLong(read -> read.inode).thenComparingLong(read -> read.sequence)
+                        : Comparator.comparingLong((Read read) -> read.attrs.size()).reversed().thenComparingLong(read -> read.sequence);
+                lane = new Lane(limit, order);
+                lanes.add(lane);
+                if (store != null)  {
+                    lanesByStore.put(store, lane);
+                }
+            }
+            lanesByKey.put(key, lane);
+            return lane;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns a cheap Key for the File Store of a File, so the File Store only has to be looked up once per Key.
+     * 
+     * @param file
+     *            File to get the Key for
+     * @param attrs
+     *            Attributes of the File
+     * @return the Device of the File Key if available (e.g. <code>dev=803</code>), else the Directory of the File
+     */
+    private static Object getStoreKey(File file, BasicFileAttributes attrs) {
+        Object fileKey = attrs.fileKey();
+        if (fileKey != null)  {
+            String device = getField(fileKey.toString(), "dev=");
+            if (device != null)  {
+                return device;
+            }
+        }
+        File directory = file.getParentFile();
+        return directory != null ? directory : file;
+    }
+    
+    /**
+     * Returns the Inode of a File for ordering the Reads within a Directory.
+     * 
+     * @param attrs
+     *            Attributes of the File
+     * @return the Inode or <code>0</code> if the File Key doesn't contain one
+     */
+    private static long getInode(BasicFileAttributes attrs) {
+        Object fileKey = attrs.fileKey();
+        String inode = fileKey != null ? getField(fileKey.toString(), "ino=") : null;
+        try {
+            return inode != null ? Long.parseLong(inode) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Extracts a Field from the String Representation of a File Key, e.g. <code>(dev=803,ino=1234)</code>.
+     * 
+     * @param fileKey
+     *            String Representation of a File Key
+     * @param prefix
+     *            Prefix of the Field
+     * @return the Value of the Field or <code>null</code> if the File Key doesn't contain it
+     */
+    private static String getField(String fileKey, String prefix) {
+        int start = fileKey.indexOf(prefix);
+        if (start == -1)  {
+            return null;
+        }
+        start += prefix.length();
+        int end = start;
+        while (end < fileKey.length() && Character.isLetterOrDigit(fileKey.charAt(end)))  {
+            end++;
+        }
+        return end > start ? fileKey.substring(start, end) : null;
+    }
+    
+    /**
+     * Checks whether a File Store is a spinning Disk. Only known on Linux, other File Stores count as not rotational.
+     * 
+     * @param store
+     *            File Store to check
+     * @return <code>true</code> if the Kernel reports the Device as rotational
+     */
+    private static boolean isRotational(FileStore store) {
+        String name = store.name();
+        if (!name.startsWith("/dev/"))  {
+            return false;
+        }
+        try {
+            Path device = Paths.get("/sys/class/block", Paths.get(name).toRealPath().getFileName().toString());
+            Path flag = device.resolve("queue").resolve("rotational");
+            if (!Files.isRegularFile(flag))  {  // a Partition, the Flag belongs to its Disk
+                flag = device.toRealPath().getParent().resolve("queue").resolve("rotational");
+            }
+            return Files.isRegularFile(flag) && new String(Files.readAllBytes(flag), StandardCharsets.US_ASCII).trim().equals("1");
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Queue and Read Limit of a File Store.
+     */
+    private static final class Lane {
+        
+        /**
+         * Maximum concurrent Reads.
+         */
+        private final int limit;
+        
+        /**
+         * Files waiting to be read.
+         */
+        private final PriorityQueue<Read> queue;
+        
+        /**
+         * Reads going on.
+         */
+        private int active = 0;
+        
+        /**
+         * Creates a new Lane.
+         * 
+         * @param limit
+         *            Maximum concurrent Reads
+         * @param order
+         *            Order the Files are read in
+         */
+        private Lane(int limit, Comparator<Read> order) {
+            this.limit = limit;
+            this.queue = new PriorityQueue<>(order);
+        }
+        
+    }
+    
+    /**
+     * File waiting in a Lane to be read.
+     */
+    static final class Read {
+        
+        /**
+         * File to read.
+         */
+        private final File file;
+        
+        /**
+         * Attributes of the File found by the Walk.
+         */
+        private final BasicFileAttributes attrs;
+        
+        /**
+         * Lane the File belongs to.
+         */
+        private final Lane lane;
+        
+        /**
+         * Sequence Number of the Directory of the File.
+         */
+        private final long directory;
+        
+        /**
+         * Sequence Number of the File.
+         */
+        private final long sequence;
+        
+        /**
+         * Inode of the File, <code>0</code> if unknown.
+         */
+        private final long inode;
+        
+        /**
+         * Whether the Read got freed. Guarded by the Lock of the Scheduler.
+         */
+        private boolean done = false;
+        
+        /**
+         * Creates a new waiting File.
+         * 
+         * @param file
+         *            File to read
+         * @param attrs
+         *            Attributes of the File found by the Walk
+         * @param lane
+         *            Lane the File belongs to
+         * @param directory
+         *            Sequence Number of the Directory of the File
+         * @param sequence
+         *            Sequence Number of the File
+         * @param inode
+         *            Inode of the File, <code>0</code> if unknown
+         */
+        private Read(File file, BasicFileAttributes attrs, Lane lane, long directory, long sequence, long inode) {
+            this.file = file;
+            this.attrs = attrs;
+            this.lane = lane;
+            this.directory = directory;
+            this.sequence = sequence;
+            this.inode = inode;
+        }
+        
+        /**
+         * Returns the File to read.
+         * 
+         * @return the File
+         */
+        File getFile() {
+            return file;
+        }
+        
+        /**
+         * Returns the Attributes of the File found by the Walk.
+         * 
+         * @return the Attributes
+         */
+        BasicFileAttributes getAttrs() {
+            return attrs;
+        }
+        
+    }
+    
+}
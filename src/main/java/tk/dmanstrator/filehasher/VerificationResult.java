@@ -0,0 +1,153 @@
+package tk.dmanstrator.filehasher;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of verifying a Folder against an Output File of {@link Hasher#hash(String)}.
+ * 
+ * @author DManstrator
+ *
+ */
+public final class VerificationResult {
+    
+    /**
+     * Amount of Files which matched their listed Hashes.
+     */
+    private final long matched;
+    
+    /**
+     * Files whose Content doesn't match the listed Hashes anymore.
+     */
+    private final List<File> mismatched;
+    
+    /**
+     * Listed Files which don't exist anymore.
+     */
+    private final List<File> missing;
+    
+    /**
+     * Listed Files which couldn't be read.
+     */
+    private final List<File> unreadable;
+    
+    /**
+     * Files which exist but aren't listed.
+     */
+    private final List<File> added;
+    
+    /**
+     * Whether the Verification stopped at the first Problem.
+     */
+    private final boolean aborted;
+    
+    /**
+     * Creates a new Result. The Lists get sorted.
+     * 
+     * @param matched
+     *            Amount of Files which matched their listed Hashes
+     * @param mismatched
+     *            Files whose Content doesn't match the listed Hashes anymore
+     * @param missing
+     *            Listed Files which don't exist anymore
+     * @param unreadable
+     *            Listed Files which couldn't be read
+     * @param added
+     *            Files which exist but aren't listed
+     * @param aborted
+     *            Whether the Verification stopped at the first Problem
+     */
+    VerificationResult(long matched, List<File> mismatched, List<File> missing, List<File> unreadable, List<File> added, boolean aborted) {
+        this.matched = matched;
+        this.mismatched = sorted(mismatched);
+        this.missing = sorted(missing);
+        this.unreadable = sorted(unreadable);
+        this.added = sorted(added);
+        this.aborted = aborted;
+    }
+    
+    /**
+     * Returns the Amount of Files which matched their listed Hashes.
+     * 
+     * @return the Amount of matching Files
+     */
+    public long getMatched() {
+        return matched;
+    }
+    
+    /**
+     * Returns the Files whose Content doesn't match the listed Hashes anymore.
+     * 
+     * @return the mismatched Files
+     */
+    public List<File> getMismatched() {
+        return mismatched;
+    }
+    
+    /**
+     * Returns the listed Files which don't exist anymore.
+     * 
+     * @return the missing Files
+     */
+    public List<File> getMissing() {
+        return missing;
+    }
+    
+    /**
+     * Returns the listed Files which couldn't be read.
+     * 
+     * @return the unreadable Files
+     */
+    public List<File> getUnreadable() {
+        return unreadable;
+    }
+    
+    /**
+     * Returns the Files which exist but aren't listed.
+     * 
+     * @return the new Files
+     */
+    public List<File> getAdded() {
+        return added;
+    }
+    
+    /**
+     * Checks whether the Verification stopped at the first Problem. The Lists are incomplete then.
+     * 
+     * @return <code>true</code> if the Verification stopped early
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+    
+    /**
+     * Checks whether every listed File still exists and matches its Hashes. New Files don't count as a Problem.
+     * 
+     * @return <code>true</code> if no File is mismatched, missing or unreadable
+     */
+    public boolean isSuccessful() {
+        return mismatched.isEmpty() && missing.isEmpty() && unreadable.isEmpty();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%d matched, %d mismatched, %d missing, %d unreadable, %d new%s", matched, mismatched.size(),
+                missing.size(), unreadable.size(), added.size(), aborted ? " (aborted at the first problem)" : "");
+    }
+    
+    /**
+     * Creates a sorted, unmodifiable Copy of a List.
+     * 
+     * @param files
+     *            List to copy
+     * @return the sorted Copy
+     */
+    private static List<File> sorted(List<File> files) {
+        List<File> copy = new ArrayList<>(files);
+        Collections.sort(copy);
+        return Collections.unmodifiableList(copy);
+    }
+    
+}
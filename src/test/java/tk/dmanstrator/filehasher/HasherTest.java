@@ -1,10 +1,22 @@
 package tk.dmanstrator.filehasher;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -61,8 +73,9 @@ public class HasherTest {
     @Test
     public void testHashingFoldersRun() throws IllegalArgumentException, FileNotFoundException, UnsupportedEncodingException  {
         Hasher hasher = new Hasher();
-        String hash = hasher.hash("src\\test\\resources\\folder1");
+        String hash = hasher.hash("src\\test\\resources\\folder1".replace('\\', File.separatorChar));  // Backslashes only work on Windows
         Assert.assertNotNull(hash);
+        new File(hash).delete();  // every Run gets its own Output File
     }
     
     /**
@@ -75,7 +88,7 @@ public class HasherTest {
         for (Map.Entry<File, String> entry : hashesOfFiles.entrySet())  {
             boolean found = false;
             for (Map.Entry<String, String> hashEntry : HASHES.entrySet())  {
-                if (entry.getKey().equals(new File(hashEntry.getKey())))  {
+                if (entry.getKey().equals(new File(hashEntry.getKey().replace('\\', File.separatorChar))))  {
                     found = true;
                     Assert.assertEquals(entry.getValue(), hashEntry.getValue());
                     break;
@@ -95,7 +108,7 @@ public class HasherTest {
         for (Map.Entry<File, String> entry : hashesOfFiles.entrySet())  {
             boolean found = false;
             for (Map.Entry<String, String> hashEntry : HASHES.entrySet())  {
-                if (entry.getKey().equals(new File(hashEntry.getKey())))  {
+                if (entry.getKey().equals(new File(hashEntry.getKey().replace('\\', File.separatorChar))))  {
                     found = true;
                     Assert.assertEquals(entry.getValue(), hashEntry.getValue());
                     break;
@@ -127,6 +140,709 @@ public class HasherTest {
                 hashOfFile);
     }
     
+    /**
+     * Checks if the hash stays the same when the file is streamed through a tiny buffer.
+     */
+    @Test
+    public void testHashingFileSmallBuffer()  {
+        Hasher hasher = new Hasher();
+        hasher.setBufferSize(3);
+        String hashOfFile = hasher.getHashOfFile("src/test/resources/folder1/Testfile.txt");
+        Assert.assertEquals("861844d6704e8573fec34d967e20bcfef3d424cf48be04e6dc08f2bd58c729743371015ead891cc3cf1c9d34b49264b510751b1ff9e537937bc46b5d6ff4ecc8",
+                hashOfFile);
+    }
+    
+    /**
+     * Checks if a missing file results in an error result instead of a hash.
+     */
+    @Test
+    public void testHashingFileMissing()  {
+        Hasher hasher = new Hasher();
+        HashResult result = hasher.getHashResultOfFile(new File("not/valid/file.txt"));
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertNull(result.getHash());
+        Assert.assertNotNull(result.getError());
+    }
+    
+    /**
+     * Checks if hashing with multiple threads computes the same hashes as hashing sequentially.
+     */
+    @Test
+    public void testHashingFoldersParallel()  {
+        Hasher sequential = new Hasher();
+        sequential.setThreads(1);
+        Hasher parallel = new Hasher();
+        parallel.setThreads(4);
+        Map<File, String> expected = sequential.getHashesOfFiles("src/test/resources");
+        Map<File, String> actual = parallel.getHashesOfFiles("src/test/resources");
+        Assert.assertEquals(4, actual.size());
+        Assert.assertEquals(expected, actual);
+    }
+    
+    /**
+     * Checks if every read mode computes the same hash.
+     */
+    @Test
+    public void testHashingFileReadModes()  {
+        Hasher hasher = new Hasher();
+        hasher.setBufferSize(5);
+        for (ReadMode mode : ReadMode.values())  {
+            hasher.setReadMode(mode);
+            hasher.setMappingThreshold(mode == ReadMode.AUTO ? 10 : 0);
+            String hashOfFile = hasher.getHashOfFile("src/test/resources/folder2/Testfile with mluts.txt");
+            Assert.assertEquals(mode.name(), "c966988e7254a05ae05bb921a2955899dc47c209120b26faf96a6701cd884b258a3eb6bd5c035ed4e3e3865a84719332a05c458dad2da655a46ca29fa6d2dbc9",
+                    hashOfFile);
+        }
+    }
+    
+    /**
+     * Tests if the sorted output file contains the header and the lines ordered by path.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testHashingFoldersSortedOutput() throws IOException  {
+        Hasher hasher = new Hasher();
+        hasher.setSortedOutput(true);
+        File outputFile = new File(hasher.hash("src/test/resources/folder1"));
+        try {
+            List<String> lines = Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8);
+            Assert.assertEquals(3, lines.size());
+            Assert.assertEquals("Path to scan: src/test/resources/folder1", lines.get(0));
+            Assert.assertTrue(lines.get(1).startsWith("folder1" + File.separator + "Another-Testfile.txt: f11a72665f07e477"));
+            Assert.assertTrue(lines.get(2).startsWith("folder1" + File.separator + "Testfile.txt: 861844d6704e8573"));
+        } finally {
+            Files.delete(outputFile.toPath());
+        }
+    }
+    
+    /**
+     * Tests if a run served from the cache creates the same output as the run which filled the cache.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testHashingFoldersCached() throws IOException  {
+        Hasher hasher = new Hasher();
+        hasher.setSortedOutput(true);
+        hasher.setCacheEnabled(true);
+        File cacheFile = Hasher.getCacheFile(new File("src/test/resources/folder2"));
+        Assert.assertNotEquals(cacheFile, Hasher.getCacheFile(new File("src/test/resources/other/folder2")));
+        File firstOutput = new File(hasher.hash("src/test/resources/folder2"));
+        try {
+            Assert.assertTrue(cacheFile.isFile());
+            List<String> expected = Files.readAllLines(firstOutput.toPath(), StandardCharsets.UTF_8);
+            Files.delete(firstOutput.toPath());
+            
+            File secondOutput = new File(hasher.hash("src/test/resources/folder2"));
+            List<String> actual = Files.readAllLines(secondOutput.toPath(), StandardCharsets.UTF_8);
+            Files.delete(secondOutput.toPath());
+            Assert.assertEquals(expected, actual);
+        } finally {
+            Files.deleteIfExists(firstOutput.toPath());
+            Files.deleteIfExists(cacheFile.toPath());
+        }
+    }
+    
+    /**
+     * Checks if several algorithms are computed in one pass and the first one stays the primary hash.
+     */
+    @Test
+    public void testHashingFileMultipleAlgorithms()  {
+        Hasher hasher = new Hasher();
+        hasher.setAlgorithms("SHA-512", "SHA-256", "MD5");
+        HashResult result = hasher.getHashResultOfFile(new File("src/test/resources/folder1/Testfile.txt"));
+        Assert.assertEquals("861844d6704e8573fec34d967e20bcfef3d424cf48be04e6dc08f2bd58c729743371015ead891cc3cf1c9d34b49264b510751b1ff9e537937bc46b5d6ff4ecc8",
+                result.getHash());
+        Assert.assertEquals("7f83b1657ff1fc53b92dc18148a1d65dfc2d4b1fa3d677284addd200126d9069", result.getHash("SHA-256"));
+        Assert.assertEquals("ed076287532e86365e841e92bfc50d8c", result.getHash("MD5"));
+    }
+    
+    /**
+     * Tests if an unknown algorithm is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAlgorithm()  {
+        Hasher hasher = new Hasher();
+        hasher.setAlgorithms("NOT-AN-ALGORITHM");
+    }
+    
+    /**
+     * Checks if files with the same content in different folders are found as duplicates.
+     */
+    @Test
+    public void testDuplicates()  {
+        Hasher hasher = new Hasher();
+        Map<String, List<File>> duplicates = hasher.getDuplicates(new File("src/test/resources"));
+        Assert.assertEquals(1, duplicates.size());
+        List<File> group = duplicates.get("861844d6704e8573fec34d967e20bcfef3d424cf48be04e6dc08f2bd58c729743371015ead891cc3cf1c9d34b49264b510751b1ff9e537937bc46b5d6ff4ecc8");
+        Assert.assertNotNull(group);
+        Assert.assertEquals(2, group.size());
+        Assert.assertTrue(group.contains(new File("src/test/resources/folder1/Testfile.txt")));
+        Assert.assertTrue(group.contains(new File("src/test/resources/folder2/Test File.txt")));
+    }
+    
+    /**
+     * Tests if an interrupted search for duplicates gets cancelled instead of returning no duplicates.
+     */
+    @Test
+    public void testDuplicatesCancelled()  {
+        Hasher hasher = new Hasher();
+        hasher.setThreads(2);
+        Thread.currentThread().interrupt();
+        try {
+            hasher.getDuplicates(new File("src/test/resources"));
+            Assert.fail("Search wasn't cancelled!");
+        } catch (CancellationException e) {
+            // expected
+        } finally {
+            Thread.interrupted();
+            hasher.shutdown();
+        }
+    }
+    
+    /**
+     * Tests if a folder verifies against its own output file but not against a different folder.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testVerify() throws IOException  {
+        Hasher hasher = new Hasher();
+        File output = new File(hasher.hash("src/test/resources/folder1"));
+        try {
+            VerificationResult result = hasher.verify(output);
+            Assert.assertTrue(result.toString(), result.isSuccessful());
+            Assert.assertTrue(result.getMatched() > 0);
+            Assert.assertTrue(result.getAdded().isEmpty());
+            
+            VerificationResult other = hasher.verify(output, new File("src/test/resources/folder2"), false);
+            Assert.assertFalse(other.isSuccessful());
+            Assert.assertFalse(other.getMissing().isEmpty());
+            Assert.assertEquals(2, other.getAdded().size());
+            Assert.assertTrue(other.getAdded().contains(new File("src/test/resources/folder2/Test File.txt").getAbsoluteFile()));
+        } finally {
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+    
+    /**
+     * Tests if the metrics count every hashed file and its bytes.
+     */
+    @Test
+    public void testMetrics()  {
+        Hasher hasher = new Hasher();
+        HashMetrics metrics = new HashMetrics();
+        hasher.addListener(metrics);
+        Map<File, HashResult> results = hasher.getHashResultsOfFiles(new File("src/test/resources/folder1"));
+        long bytes = results.keySet().stream().mapToLong(File::length).sum();
+        Assert.assertTrue(metrics.isFinished());
+        Assert.assertEquals(results.size(), metrics.getFilesFound());
+        Assert.assertEquals(results.size(), metrics.getFilesHashed() + metrics.getFilesFailed());
+        Assert.assertEquals(bytes, metrics.getBytesRead());
+        Assert.assertTrue(metrics.getWalkNanos() >= 0);
+        Assert.assertTrue(metrics.toJson().contains("\"filesFound\": " + results.size()));
+    }
+    
+    /**
+     * Tests if an asynchronous run creates the same output file as a synchronous one.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testHashingAsync() throws Exception  {
+        Hasher hasher = new Hasher();
+        HashTask task = hasher.hashAsync("src/test/resources/folder1");
+        File output = new File(task.get());
+        try {
+            Assert.assertTrue(task.isDone());
+            Assert.assertEquals(1, task.getProgress(), 0);
+            Assert.assertEquals(2, task.getMetrics().getFilesHashed());
+            Assert.assertTrue(output.isFile());
+            Assert.assertFalse(new File(output.getName() + Hasher.PART_SUFFIX).exists());
+        } finally {
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+    
+    /**
+     * Tests if a cancelled run leaves no output file behind.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testHashingCancelled() throws IOException  {
+        Hasher hasher = new Hasher();
+        Thread.currentThread().interrupt();
+        try {
+            hasher.hash("src/test/resources/folder2");
+            Assert.fail("Run wasn't cancelled!");
+        } catch (CancellationException e) {
+            // expected
+        } finally {
+            Thread.interrupted();
+        }
+        File[] leftovers = new File(".").listFiles((dir, name) -> name.startsWith("folder2-Hashes_"));
+        Assert.assertEquals(0, leftovers.length);
+    }
+    
+    /**
+     * Tests if the compact digest store holds the same hashes as the map of hashes.
+     */
+    @Test
+    public void testDigestStore()  {
+        Hasher hasher = new Hasher();
+        File folder = new File("src/test/resources/folder1");
+        DigestStore store = hasher.getDigestStore(folder);
+        Map<File, String> hashes = hasher.getHashesOfFiles(folder);
+        Assert.assertEquals(hashes.size(), store.size());
+        Assert.assertEquals(64, store.getDigestLength());
+        for (Map.Entry<File, String> entry : hashes.entrySet())  {
+            Assert.assertEquals(entry.getValue(), store.getHash(entry.getKey()));
+            int index = store.indexOf(entry.getKey().getName());
+            Assert.assertEquals(entry.getKey(), store.getFile(index));
+        }
+        Assert.assertEquals(-1, store.indexOf("not/valid/path"));
+    }
+    
+    /**
+     * Tests if merkle trees of equal folders match and only the differing paths of other folders are reported.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testMerkleTree() throws IOException  {
+        Hasher hasher = new Hasher();
+        MerkleTree tree = hasher.getMerkleTree(new File("src/test/resources/folder1"));
+        Assert.assertEquals("861844d6704e8573fec34d967e20bcfef3d424cf48be04e6dc08f2bd58c729743371015ead891cc3cf1c9d34b49264b510751b1ff9e537937bc46b5d6ff4ecc8",
+                tree.find("Testfile.txt").getHash());
+        Assert.assertEquals(tree.getRootHash(), hasher.getMerkleTree(new File("src/test/resources/folder1")).getRootHash());
+        Assert.assertTrue(tree.compare(hasher.getMerkleTree(new File("src/test/resources/folder1"))).isEmpty());
+        
+        MerkleTree other = hasher.getMerkleTree(new File("src/test/resources/folder2"));
+        Assert.assertNotEquals(tree.getRootHash(), other.getRootHash());
+        List<MerkleTree.Difference> differences = tree.compare(other);
+        Assert.assertEquals(4, differences.size());
+        Assert.assertEquals(MerkleTree.Change.REMOVED, differences.get(0).getChange());
+        Assert.assertEquals("Another-Testfile.txt", differences.get(0).getPath());
+    }
+    
+    /**
+     * Tests if chunked hashing finds a single corrupted block.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testChunkedHash() throws IOException  {
+        Hasher hasher = new Hasher();
+        hasher.setThreads(2);
+        File file = File.createTempFile("chunked", ".bin");
+        try {
+            byte[] content = new byte[10_000];
+            for (int i = 0; i < content.length; i++)  {
+                content[i] = (byte) i;
+            }
+            Files.write(file.toPath(), content);
+            ChunkedHash hash = hasher.getChunkedHash(file, 1024);
+            Assert.assertEquals(10, hash.getBlockCount());
+            Assert.assertEquals(hash.getTopHash(), hasher.getChunkedHash(file, 1024).getTopHash());
+            Assert.assertTrue(hasher.findCorruptBlocks(file, hash).isEmpty());
+            
+            content[5000] ^= 1;
+            Files.write(file.toPath(), content);
+            Assert.assertEquals(Collections.singletonList(4), hasher.findCorruptBlocks(file, hash));
+            Assert.assertFalse(hasher.verifyBlock(file, hash, 4));
+            Assert.assertTrue(hasher.verifyBlock(file, hash, 9));
+            
+            content[5000] ^= 1;
+            Files.write(file.toPath(), Arrays.copyOf(content, content.length + 1));  // appended Data
+            Assert.assertEquals(Collections.singletonList(9), hasher.findCorruptBlocks(file, hash));
+            Assert.assertFalse(hasher.verifyBlock(file, hash, 9));
+            Files.write(file.toPath(), Arrays.copyOf(content, 8000));  // cut off Data
+            Assert.assertEquals(Arrays.asList(7, 8, 9), hasher.findCorruptBlocks(file, hash));
+            Assert.assertTrue(hasher.verifyBlock(file, hash, 6));
+        } finally {
+            hasher.shutdown();
+            Files.delete(file.toPath());
+        }
+    }
+    
+    /**
+     * Tests if store-aware reads in file key order compute the same hashes as the default pipeline, also when every
+     * read file is handed to the workers in many buffers.
+     */
+    @Test
+    public void testStoreAwareReads()  {
+        Hasher hasher = new Hasher();
+        Map<File, String> expected = hasher.getHashesOfFiles(new File("src/test/resources"));
+        hasher.setThreads(2);
+        hasher.setStoreAwareReads(true);
+        hasher.setReadsPerStore(1);
+        hasher.setRemoteReadsPerStore(3);
+        hasher.setFileKeyOrder(true);
+        try {
+            Assert.assertEquals(expected, hasher.getHashesOfFiles(new File("src/test/resources")));
+            hasher.setBufferSize(5);  // the Readers hand many Buffers per File to the Workers
+            for (ReadMode mode : ReadMode.values())  {
+                hasher.setReadMode(mode);
+                Assert.assertEquals(mode.name(), expected, hasher.getHashesOfFiles(new File("src/test/resources")));
+            }
+        } finally {
+            hasher.shutdown();
+        }
+    }
+    
+    /**
+     * Tests if a watched folder picks up created, modified and deleted files and writes them to its output file.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testWatch() throws Exception  {
+        Hasher hasher = new Hasher();
+        File folder = Files.createTempDirectory("watched").toFile();
+        File output = new File(folder.getParentFile(), folder.getName() + "-Hashes_watched.txt");
+        File file = new File(folder, "incoming.txt");
+        try (ManifestWatcher watcher = hasher.watch(folder.getPath(), output, 50, 100))  {
+            Files.write(file.toPath(), "first".getBytes(StandardCharsets.UTF_8));
+            awaitHash(watcher, file, hasher.getHashOfFile(file));
+            Files.write(file.toPath(), "second".getBytes(StandardCharsets.UTF_8));
+            awaitHash(watcher, file, hasher.getHashOfFile(file));
+            
+            File subFolder = new File(folder, "sub");
+            File nested = new File(subFolder, "nested.txt");
+            Assert.assertTrue(subFolder.mkdir());
+            Files.write(nested.toPath(), "nested".getBytes(StandardCharsets.UTF_8));
+            awaitHash(watcher, nested, hasher.getHashOfFile(nested));
+            Files.delete(nested.toPath());
+            awaitHash(watcher, nested, null);
+        }
+        try {
+            Assert.assertTrue(output.isFile());
+            Assert.assertTrue(hasher.verify(output, folder, false).isSuccessful());
+        } finally {
+            Files.deleteIfExists(output.toPath());
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(new File(folder, "sub").toPath());
+            Files.deleteIfExists(folder.toPath());
+        }
+    }
+    
+    /**
+     * Tests if a watcher writing its output file into the watched folder neither lists it nor keeps rewriting it,
+     * and if deleted files get evicted from the cache.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testWatchOutputInsideFolder() throws Exception  {
+        Hasher hasher = new Hasher();
+        hasher.setCacheEnabled(true);
+        File folder = Files.createTempDirectory("watched").toFile();
+        File output = new File(folder, "inside-Hashes_watched.txt");
+        File cacheFile = Hasher.getCacheFile(folder);
+        File kept = new File(folder, "kept.txt");
+        File deleted = new File(folder, "deleted.txt");
+        try {
+            try (ManifestWatcher watcher = hasher.watch(folder.getPath(), output, 50, 100))  {
+                Files.write(kept.toPath(), "kept".getBytes(StandardCharsets.UTF_8));
+                Files.write(deleted.toPath(), "deleted".getBytes(StandardCharsets.UTF_8));
+                awaitHash(watcher, kept, hasher.getHashOfFile(kept));
+                awaitHash(watcher, deleted, hasher.getHashOfFile(deleted));
+                Files.delete(deleted.toPath());
+                awaitHash(watcher, deleted, null);
+                
+                long deadline = System.currentTimeMillis() + 30_000;
+                while (!output.isFile() || watcher.getFlushCount() == 0)  {
+                    Assert.assertTrue("Watcher didn't write " + output, System.currentTimeMillis() < deadline);
+                    Thread.sleep(20);
+                }
+                Thread.sleep(300);  // Events of the last Write arrive
+                int flushCount = watcher.getFlushCount();
+                Thread.sleep(500);
+                Assert.assertEquals(flushCount, watcher.getFlushCount());
+                Assert.assertNull(watcher.getHash(output));
+                Assert.assertEquals(1, watcher.size());
+            }
+            String cache = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+            Assert.assertTrue(cache.contains(kept.getName()));
+            Assert.assertFalse(cache.contains(deleted.getName()));
+        } finally {
+            Files.deleteIfExists(output.toPath());
+            Files.deleteIfExists(kept.toPath());
+            Files.deleteIfExists(deleted.toPath());
+            Files.deleteIfExists(cacheFile.toPath());
+            Files.deleteIfExists(folder.toPath());
+        }
+    }
+    
+    /**
+     * Waits until a watched file has the expected hash.
+     * 
+     * @param watcher
+     *            Watcher of the file
+     * @param file
+     *            Watched file
+     * @param expected
+     *            Expected hash, <code>null</code> if the file should be dropped
+     * @throws InterruptedException
+     */
+    private static void awaitHash(ManifestWatcher watcher, File file, String expected) throws InterruptedException  {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!Objects.equals(expected, watcher.getHash(file)))  {
+            Assert.assertTrue("Watcher didn't pick up " + file, System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+    
+    /**
+     * Tests if a binary manifest finds every hash of the output file and converts back to the same lines.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testBinaryManifest() throws IOException  {
+        Hasher hasher = new Hasher();
+        hasher.setBinaryManifest(true);
+        File output = new File(hasher.hash("src/test/resources"));
+        File binary = new File(output.getName().replace(".txt", ".fhm"));
+        File text = File.createTempFile("manifest", ".txt");
+        File checksums = File.createTempFile("manifest", ".sha512");
+        try {
+            BinaryManifest manifest = BinaryManifest.open(binary);
+            Map<File, String> hashes = hasher.getHashesOfFiles("src/test/resources");
+            Assert.assertEquals(hashes.size(), manifest.size());
+            for (Map.Entry<File, String> entry : hashes.entrySet())  {
+                String path = "resources/" + new File("src/test/resources").toPath().relativize(entry.getKey().toPath()).toString().replace(File.separatorChar, '/');
+                Assert.assertEquals(path, entry.getValue(), manifest.getHash(path));
+            }
+            Assert.assertEquals(-1, manifest.indexOf("resources/unknown.txt"));
+            
+            manifest.writeText(text);
+            List<String> expected = new ArrayList<>(Files.readAllLines(output.toPath(), StandardCharsets.UTF_8));
+            List<String> actual = new ArrayList<>(Files.readAllLines(text.toPath(), StandardCharsets.UTF_8));
+            Assert.assertEquals(expected.remove(0), actual.remove(0));
+            Collections.sort(expected);
+            Collections.sort(actual);
+            Assert.assertEquals(expected, actual);
+            
+            Assert.assertEquals(hashes.size(), manifest.writeSha512sum(checksums));
+            String firstLine = Files.readAllLines(checksums.toPath(), StandardCharsets.UTF_8).get(0);
+            Assert.assertEquals(manifest.getHash(0) + "  " + manifest.getPath(0).replace(File.separatorChar, '/'), firstLine);
+        } finally {
+            Files.deleteIfExists(output.toPath());
+            Files.deleteIfExists(binary.toPath());
+            Files.deleteIfExists(text.toPath());
+            Files.deleteIfExists(checksums.toPath());
+        }
+    }
+    
+    /**
+     * Tests if the diff of two output files finds changed, moved, added and removed files, for text and binary manifests.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testManifestDiff() throws IOException  {
+        Hasher hasher = new Hasher();
+        File folder = Files.createTempDirectory("diffed").toFile();
+        File oldManifest = File.createTempFile("old", ".txt");
+        File newManifest = null;
+        File binaryManifest = File.createTempFile("new", ".fhm");
+        try {
+            Files.write(new File(folder, "changed.txt").toPath(), "before".getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(folder, "moved.txt").toPath(), "moved".getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(folder, "removed.txt").toPath(), "removed".getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(folder, "same.txt").toPath(), "same".getBytes(StandardCharsets.UTF_8));
+            Files.move(new File(hasher.hash(folder.getPath())).toPath(), oldManifest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            
+            Files.write(new File(folder, "changed.txt").toPath(), "after".getBytes(StandardCharsets.UTF_8));
+            Assert.assertTrue(new File(folder, "sub").mkdir());
+            Files.move(new File(folder, "moved.txt").toPath(), new File(folder, "sub/renamed.txt").toPath());
+            Files.delete(new File(folder, "removed.txt").toPath());
+            Files.write(new File(folder, "added.txt").toPath(), "added".getBytes(StandardCharsets.UTF_8));
+            newManifest = new File(hasher.hash(folder.getPath()));
+            
+            List<String> differences = new ArrayList<>();
+            ManifestDiff diff = hasher.diff(oldManifest, newManifest, difference -> differences.add(difference.toString()));
+            Assert.assertEquals(1, diff.getUnchanged());
+            Assert.assertEquals(1, diff.getChanged());
+            Assert.assertEquals(1, diff.getMoved());
+            Assert.assertEquals(1, diff.getAdded());
+            Assert.assertEquals(1, diff.getRemoved());
+            Assert.assertFalse(diff.isIdentical());
+            Assert.assertTrue(differences.contains("CHANGED: changed.txt"));
+            Assert.assertTrue(differences.contains("MOVED: moved.txt -> sub/renamed.txt"));
+            Assert.assertTrue(differences.contains("ADDED: added.txt"));
+            Assert.assertTrue(differences.contains("REMOVED: removed.txt"));
+            
+            BinaryManifest.fromText(newManifest, binaryManifest);
+            List<String> binaryDifferences = new ArrayList<>();
+            hasher.diff(oldManifest, binaryManifest, difference -> binaryDifferences.add(difference.toString()));
+            Assert.assertEquals(differences, binaryDifferences);
+            Assert.assertTrue(hasher.diff(binaryManifest, newManifest, difference -> Assert.fail(difference.toString())).isIdentical());
+        } finally {
+            Files.deleteIfExists(oldManifest.toPath());
+            if (newManifest != null)  {
+                Files.deleteIfExists(newManifest.toPath());
+            }
+            Files.deleteIfExists(binaryManifest.toPath());
+            for (String name : new String[] { "changed.txt", "same.txt", "added.txt", "moved.txt", "removed.txt", "sub/renamed.txt", "sub" })  {
+                Files.deleteIfExists(new File(folder, name).toPath());
+            }
+            Files.deleteIfExists(folder.toPath());
+        }
+    }
+    
+    /**
+     * Tests if the filter prunes excluded folders and selects files by pattern, depth and size.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testFilter() throws IOException  {
+        String resources = "src/test/resources".replace('/', File.separatorChar);
+        File folder1 = new File(resources, "folder1");
+        Hasher hasher = new Hasher();
+        HashFilter filter = new HashFilter();
+        filter.addExclude("folder2");
+        hasher.setFilter(filter);
+        Map<File, String> hashesOfFiles = hasher.getHashesOfFiles(resources);
+        Assert.assertEquals(2, hashesOfFiles.size());
+        hashesOfFiles.keySet().forEach(file -> Assert.assertEquals(folder1, file.getParentFile()));
+        
+        filter.addInclude("regex:Another-.*");
+        Assert.assertEquals(2, hasher.getHashesOfFiles(resources).size());  // the Hasher keeps its own Copy
+        hasher.setFilter(filter);
+        Assert.assertEquals(Collections.singleton(new File(folder1, "Another-Testfile.txt")), hasher.getHashesOfFiles(resources).keySet());
+        
+        filter = new HashFilter();
+        filter.addExclude("*.txt");
+        hasher.setFilter(filter);
+        Assert.assertTrue(hasher.getHashesOfFiles(resources).isEmpty());
+        
+        filter = new HashFilter();
+        filter.setMaxDepth(1);
+        hasher.setFilter(filter);
+        Assert.assertTrue(hasher.getHashesOfFiles(resources).isEmpty());
+        filter.setMaxDepth(2);
+        hasher.setFilter(filter);
+        Assert.assertEquals(HASHES.size(), hasher.getHashesOfFiles(resources).size());
+        
+        filter.setSizeRange(Long.MAX_VALUE, Long.MAX_VALUE);
+        hasher.setFilter(filter);
+        Assert.assertTrue(hasher.getHashesOfFiles(resources).isEmpty());
+        
+        hasher.setFilter(null);
+        Assert.assertEquals(HASHES.size(), hasher.getHashesOfFiles(resources).size());
+        
+        File folder = Files.createTempDirectory("filtered").toFile();
+        File kept = new File(folder, "kept.txt");
+        File skipped = new File(folder, "skipped.tmp");
+        try {
+            Files.write(kept.toPath(), "kept".getBytes(StandardCharsets.UTF_8));
+            Files.write(skipped.toPath(), "skipped".getBytes(StandardCharsets.UTF_8));
+            filter = new HashFilter();
+            filter.addExclude("*.tmp");
+            hasher.setFilter(filter);
+            List<MerkleTree.Node> children = hasher.getMerkleTree(folder).getRoot().getChildren();
+            Assert.assertEquals(1, children.size());
+            Assert.assertEquals(kept.getName(), children.get(0).getName());
+        } finally {
+            Files.deleteIfExists(kept.toPath());
+            Files.deleteIfExists(skipped.toPath());
+            Files.deleteIfExists(folder.toPath());
+        }
+    }
+    
+    /**
+     * Tests if the headless entry point hashes every given and every read folder with one hasher and reports failures.
+     * Both folders have the same name, so each answer must name its own output file.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testHeadlessBatch() throws IOException  {
+        File base = Files.createTempDirectory("headless").toFile();
+        File first = new File(base, "one" + File.separator + "data");
+        File second = new File(base, "two" + File.separator + "data");
+        Assert.assertTrue(first.mkdirs() && second.mkdirs());
+        Files.write(new File(first, "first.txt").toPath(), "first".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(first, "Another-first.txt").toPath(), "excluded".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(second, "second.txt").toPath(), "second".getBytes(StandardCharsets.UTF_8));
+        ByteArrayInputStream in = new ByteArrayInputStream((second.getPath() + "\n\nnot/valid/path\n").getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exitCode = HeadlessMain.run(new String[] { "--exclude", "Another-*", first.getPath(), "--stdin" }, in, out);
+        String[] answers = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\\R");
+        try {
+            Assert.assertEquals(1, exitCode);
+            Assert.assertEquals(3, answers.length);
+            String[][] expected = { { first.getPath(), "first.txt", "second.txt" }, { second.getPath(), "second.txt", "first.txt" } };
+            for (int i = 0; i < 2; i++)  {
+                String[] parts = answers[i].split("\t");
+                String[] job = expected[i];
+                Assert.assertEquals(HeadlessMain.OK, parts[0]);
+                Assert.assertEquals(job[0], parts[1]);
+                List<String> lines = Files.readAllLines(new File(parts[2]).toPath(), StandardCharsets.UTF_8);
+                Assert.assertTrue(lines.get(0).endsWith(job[0]));
+                Assert.assertTrue(lines.stream().anyMatch(line -> line.contains(job[1])));
+                Assert.assertFalse(lines.stream().anyMatch(line -> line.contains(job[2]) || line.contains("Another-")));
+            }
+            Assert.assertNotEquals(answers[0].split("\t")[2], answers[1].split("\t")[2]);
+            Assert.assertTrue(answers[2].startsWith(HeadlessMain.ERROR + "\tnot/valid/path\t"));
+            Assert.assertEquals(-1, HeadlessMain.run(new String[0], in, out));
+        } finally {
+            for (String answer : answers)  {
+                String[] parts = answer.split("\t");
+                if (parts[0].equals(HeadlessMain.OK))  {
+                    Files.deleteIfExists(new File(parts[2]).toPath());
+                }
+            }
+            for (File folder : new File[] { first, second })  {
+                for (File file : folder.listFiles())  {
+                    Files.delete(file.toPath());
+                }
+                Files.delete(folder.toPath());
+                Files.delete(folder.getParentFile().toPath());
+            }
+            Files.delete(base.toPath());
+        }
+    }
+    
+    /**
+     * Tests if hashing the current directory leaves out the output file, its temporary file and the cache, which are written into it.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testHashingCurrentDirectory() throws IOException  {
+        Hasher hasher = new Hasher();
+        HashFilter filter = new HashFilter();
+        filter.setMaxDepth(1);  // the Files of the Project Root are enough, the Output File is written there
+        hasher.setFilter(filter);
+        hasher.setCacheEnabled(true);
+        File firstOutput = new File(hasher.hash("."));
+        File cacheFile = Hasher.getCacheFile(new File("."));
+        Assert.assertEquals(Hasher.getCacheFile(new File("").getAbsoluteFile()), cacheFile);
+        File output = null;
+        try {
+            output = new File(hasher.hash("."));  // now the Cache File exists during the Walk
+            String outputName = output.getName();
+            List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+            Assert.assertFalse(lines.isEmpty());
+            Assert.assertFalse(lines.stream().anyMatch(line -> line.contains(outputName) || line.contains(cacheFile.getName())));
+            VerificationResult result = hasher.verify(output, new File("."), false);
+            Assert.assertTrue(result.getMissing().isEmpty());
+            Assert.assertTrue(result.getMismatched().isEmpty());
+        } finally {
+            Files.deleteIfExists(firstOutput.toPath());
+            if (output != null)  {
+                Files.deleteIfExists(output.toPath());
+            }
+            Files.deleteIfExists(cacheFile.toPath());
+        }
+    }
+    
     /**
      * Checks if an invalid folder path returns an empty map.
      */